@@ -21,9 +21,20 @@ import com.oltpbenchmark.types.State;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
-
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The global state of a benchmark run, shared by all workloads.
+ * <p>
+ * Transitions are compare-and-set operations that only apply from the states
+ * they are valid in, so a worker that starts a cold query cannot overwrite the
+ * DONE state the main thread set in the meantime. Every transition is
+ * republished to the {@link Epoch} of each registered workload.
+ */
 public final class BenchmarkState {
 
     private static final Logger LOG = LoggerFactory.getLogger(BenchmarkState.class);
@@ -31,7 +42,8 @@ public final class BenchmarkState {
     private final long testStartNs;
     private final CountDownLatch startBarrier;
     private final AtomicInteger notDoneCount;
-    private volatile State state = State.WARMUP;
+    private final AtomicReference<State> state = new AtomicReference<>(State.WARMUP);
+    private final List<WorkloadState> workloads = new CopyOnWriteArrayList<>();
 
     /**
      * @param numThreads number of threads involved in the test: including the
@@ -45,15 +57,65 @@ public final class BenchmarkState {
         testStartNs = System.nanoTime();
     }
 
-    // Protected by this
-
     public long getTestStartNs() {
         return testStartNs;
     }
 
     public State getState() {
-        synchronized (this) {
-            return state;
+        return state.get();
+    }
+
+    /**
+     * Makes the workload see state transitions in its epoch
+     */
+    void register(WorkloadState workload) {
+        workloads.add(workload);
+        workload.publishState();
+    }
+
+    /**
+     * Moves to {@code next} if the current state is one of {@code from}
+     *
+     * @return false if the state was not one of them
+     */
+    private boolean transition(State next, State... from) {
+        State current;
+        do {
+            current = state.get();
+            if (!contains(from, current)) {
+                return false;
+            }
+        } while (!state.compareAndSet(current, next));
+        publish();
+        return true;
+    }
+
+    /**
+     * Moves to {@code next} unless the run has already exited
+     */
+    private void force(State next) {
+        State current;
+        do {
+            current = state.get();
+            if (current == State.EXIT) {
+                return;
+            }
+        } while (!state.compareAndSet(current, next));
+        publish();
+    }
+
+    private static boolean contains(State[] states, State state) {
+        for (State s : states) {
+            if (s == state) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void publish() {
+        for (WorkloadState workload : workloads) {
+            workload.publishState();
         }
     }
 
@@ -73,33 +135,33 @@ public final class BenchmarkState {
     }
 
     public void startMeasure() {
-        state = State.MEASURE;
+        transition(State.MEASURE, State.WARMUP);
     }
 
     public void startColdQuery() {
-        state = State.COLD_QUERY;
+        transition(State.COLD_QUERY, State.WARMUP, State.MEASURE);
     }
 
     public void startHotQuery() {
-        state = State.MEASURE;
+        transition(State.MEASURE, State.COLD_QUERY);
     }
 
     public void signalLatencyComplete() {
-        state = State.LATENCY_COMPLETE;
+        transition(State.LATENCY_COMPLETE, State.MEASURE, State.COLD_QUERY);
     }
 
     public void ackLatencyComplete() {
-        state = State.MEASURE;
+        transition(State.MEASURE, State.LATENCY_COMPLETE);
     }
 
     public void signalError() {
         // A thread died, decrement the count and set error state
         notDoneCount.decrementAndGet();
-        state = State.ERROR;
+        force(State.ERROR);
     }
 
     public void startCoolDown() {
-        state = State.DONE;
+        force(State.DONE);
 
         // The master thread must also signal that it is done
         signalDone();
@@ -118,7 +180,8 @@ public final class BenchmarkState {
         if (current == 0) {
             // We are the last thread to notice that we are done: wake any
             // blocked workers
-            this.state = State.EXIT;
+            state.set(State.EXIT);
+            publish();
         }
         return current;
     }
@@ -19,10 +19,14 @@
 package com.oltpbenchmark;
 
 import com.oltpbenchmark.api.BenchmarkModule;
+import com.oltpbenchmark.api.RetryBackoff;
+import com.oltpbenchmark.api.RetryPolicy;
 import com.oltpbenchmark.api.TransactionType;
 import com.oltpbenchmark.api.TransactionTypes;
 import com.oltpbenchmark.api.Worker;
+import com.oltpbenchmark.types.ArrivalScheduling;
 import com.oltpbenchmark.types.DatabaseType;
+import com.oltpbenchmark.types.WorkerExecutor;
 import com.oltpbenchmark.util.*;
 import org.apache.commons.cli.*;
 import org.apache.commons.collections4.map.ListOrderedMap;
@@ -41,6 +45,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.*;
 
@@ -125,16 +130,39 @@ public class DBWorkload {
             wrkld.setRandomSeed(xmlConfig.getInt("randomSeed", -1));
             wrkld.setBatchSize(xmlConfig.getInt("batchsize", 128));
             wrkld.setMaxRetries(xmlConfig.getInt("retries", 3));
+            try {
+                wrkld.setRetryPolicy(RetryPolicy.forName(xmlConfig.getString("retry/policy", null), wrkld.getDatabaseType()));
+                wrkld.setRetryBackoff(new RetryBackoff(xmlConfig.getInt("retry/backoff", 0), xmlConfig.getInt("retry/maxBackoff", 1000)));
+            } catch (RuntimeException e) {
+                LOG.error("Invalid retry configuration: {}", e.getMessage());
+                System.exit(-1);
+            }
             wrkld.setNewConnectionPerTxn(xmlConfig.getBoolean("newConnectionPerTxn", false));
+            wrkld.setConnectionPoolSize(xmlConfig.getInt("connectionPool/size", 0));
+            wrkld.setConnectionValidationTimeout(xmlConfig.getInt("connectionPool/validationTimeout", 0));
+            wrkld.setConnectionMaxLifetime(xmlConfig.getInt("connectionPool/maxLifetime", 0));
+            wrkld.setRetainLatencySamples(xmlConfig.getBoolean("retainLatencySamples", true));
+            wrkld.setLatencySpillDirectory(xmlConfig.getString("latencySpillDirectory", null));
+            wrkld.setStatementCache(xmlConfig.getBoolean("statementCache", false));
+            wrkld.setInstrumentStatements(xmlConfig.getBoolean("instrumentStatements", false));
+            wrkld.setOutlierCount(xmlConfig.getInt("outliers", 0));
+            wrkld.setWorkerExecutor(WorkerExecutor.valueOf(xmlConfig.getString("executor", WorkerExecutor.PLATFORM.name()).toUpperCase()));
+            wrkld.setArrivalScheduling(ArrivalScheduling.valueOf(xmlConfig.getString("arrivalScheduling", ArrivalScheduling.CENTRAL.name()).toUpperCase()));
 
             int terminals = xmlConfig.getInt("terminals[not(@bench)]", 0);
             terminals = xmlConfig.getInt("terminals" + pluginTest, terminals);
             wrkld.setTerminals(terminals);
+            if (wrkld.getConnectionPoolSize() > 0 && wrkld.getConnectionPoolSize() < terminals && !wrkld.getNewConnectionPerTxn()) {
+                LOG.error("The connection pool has {} connections, but {} terminals keep theirs for the whole run. Enable newConnectionPerTxn or enlarge the pool.", wrkld.getConnectionPoolSize(), terminals);
+                System.exit(-1);
+            }
 
             if (xmlConfig.containsKey("loaderThreads")) {
                 int loaderThreads = xmlConfig.getInt("loaderThreads");
                 wrkld.setLoaderThreads(loaderThreads);
             }
+            wrkld.setConnectThreads(xmlConfig.getInt("connectThreads", wrkld.getConnectThreads()));
+            wrkld.setConnectRate(xmlConfig.getDouble("connectRate", 0));
 
             String isolationMode = xmlConfig.getString("isolation[not(@bench)]", "TRANSACTION_SERIALIZABLE");
             wrkld.setIsolationMode(xmlConfig.getString("isolation" + pluginTest, isolationMode));
@@ -172,6 +200,13 @@ public class DBWorkload {
             initDebug.put("Scale Factor", wrkld.getScaleFactor());
             initDebug.put("Terminals", wrkld.getTerminals());
             initDebug.put("New Connection Per Txn", wrkld.getNewConnectionPerTxn());
+            if (wrkld.getConnectionPoolSize() > 0) {
+                initDebug.put("Connection Pool Size", wrkld.getConnectionPoolSize());
+            }
+            initDebug.put("Retain Latency Samples", wrkld.getRetainLatencySamples());
+            if (wrkld.getLatencySpillDirectory() != null) {
+                initDebug.put("Latency Spill Directory", wrkld.getLatencySpillDirectory());
+            }
 
             if (selectivity != -1) {
                 initDebug.put("Selectivity", selectivity);
@@ -282,11 +317,23 @@ public class DBWorkload {
                 boolean disabled = false;
                 boolean timed;
 
+                // A rate profile makes the rate vary over the phase
+                RateProfile rateProfile = null;
+                if (!work.configurationsAt("rateProfile").isEmpty()) {
+                    rateProfile = createRateProfile(work.configurationAt("rateProfile"), work.getInt("/time", 0), i);
+                }
+
                 // can be "disabled", "unlimited" or a number
                 String rate_string;
                 rate_string = work.getString("rate[not(@bench)]", "");
                 rate_string = work.getString("rate" + pluginTest, rate_string);
-                if (rate_string.equals(RATE_DISABLED)) {
+                if (rateProfile != null && (rate_string.equals(RATE_DISABLED) || rate_string.equals(RATE_UNLIMITED))) {
+                    LOG.error(String.format("Phase %d has a rate profile, its rate cannot be '%s'", i, rate_string));
+                    System.exit(-1);
+                } else if (rateProfile != null && rate_string.isEmpty()) {
+                    // Only reported as the nominal rate of the phase
+                    rate = (int) Math.round(rateProfile.getRate(0));
+                } else if (rate_string.equals(RATE_DISABLED)) {
                     disabled = true;
                 } else if (rate_string.equals(RATE_UNLIMITED)) {
                     rateLimited = false;
@@ -364,7 +411,7 @@ public class DBWorkload {
                 }
 
 
-                wrkld.addPhase(i, time, warmup, rate, weights, rateLimited, disabled, serial, timed, activeTerminals, arrival);
+                wrkld.addPhase(i, time, warmup, rate, rateProfile, weights, rateLimited, disabled, serial, timed, activeTerminals, arrival);
             }
 
             // CHECKING INPUT PHASES
@@ -380,6 +427,29 @@ public class DBWorkload {
                 }
             }
 
+            // SATURATION SEARCH
+            if (!xmlConfig.configurationsAt("/saturation").isEmpty()) {
+                if (targetList.length > 1) {
+                    LOG.error("A saturation search can only run a single benchmark.");
+                    System.exit(-1);
+                }
+                wrkld.setSaturationSearch(createSaturationSearch(xmlConfig.configurationAt("saturation"), wrkld));
+            }
+
+            // ADAPTIVE WARMUP
+            if (!xmlConfig.configurationsAt("/adaptiveWarmup").isEmpty()) {
+                HierarchicalConfiguration<ImmutableNode> adaptiveWarmup = xmlConfig.configurationAt("adaptiveWarmup");
+                try {
+                    wrkld.setWarmupDetector(new WarmupDetector(
+                            adaptiveWarmup.getInt("window", 10),
+                            adaptiveWarmup.getDouble("threshold", 0.05),
+                            adaptiveWarmup.getInt("maxTime", 600)));
+                } catch (IllegalArgumentException e) {
+                    LOG.error("Invalid adaptive warmup configuration: {}", e.getMessage());
+                    System.exit(-1);
+                }
+            }
+
             // Generate the dialect map
             wrkld.init();
 
@@ -458,9 +528,23 @@ public class DBWorkload {
         // Execute Workload
         if (isBooleanOptionSet(argsLine, "execute")) {
             // Bombs away!
+            MetricsServer metricsServer = null;
             try {
-                Results r = runWorkload(benchList, intervalMonitor);
-                writeOutputs(r, activeTXTypes, argsLine, xmlConfig);
+                if (argsLine.hasOption("metrics-port")) {
+                    metricsServer = new MetricsServer(Integer.parseInt(argsLine.getOptionValue("metrics-port")));
+                    metricsServer.start();
+                }
+
+                Results r = runWorkload(benchList, intervalMonitor, argsLine.getOptionValue("interval-monitor-file"), metricsServer);
+                List<Phase> phases = new ArrayList<>();
+                SaturationSearch saturationSearch = null;
+                for (BenchmarkModule benchmark : benchList) {
+                    phases.addAll(benchmark.getWorkloadConfiguration().getPhases());
+                    if (benchmark.getWorkloadConfiguration().getSaturationSearch() != null) {
+                        saturationSearch = benchmark.getWorkloadConfiguration().getSaturationSearch();
+                    }
+                }
+                writeOutputs(r, activeTXTypes, phases, saturationSearch, argsLine, xmlConfig);
                 writeHistograms(r);
 
                 if (argsLine.hasOption("json-histograms")) {
@@ -472,6 +556,10 @@ public class DBWorkload {
             } catch (Throwable ex) {
                 LOG.error("Unexpected error when executing benchmarks.", ex);
                 System.exit(1);
+            } finally {
+                if (metricsServer != null) {
+                    metricsServer.stop();
+                }
             }
 
         } else {
@@ -490,9 +578,12 @@ public class DBWorkload {
         options.addOption("h", "help", false, "Print this help");
         options.addOption("s", "sample", true, "Sampling window");
         options.addOption("im", "interval-monitor", true, "Throughput Monitoring Interval in milliseconds");
+        options.addOption(null, "interval-monitor-file", true, "Also write the per-interval monitoring statistics to this CSV file");
+        options.addOption(null, "metrics-port", true, "Serve live metrics in the Prometheus format on this port while the workload executes");
         options.addOption("d", "directory", true, "Base directory for the result files, default is current directory");
         options.addOption(null, "dialects-export", true, "Export benchmark SQL to a dialects file");
         options.addOption("jh", "json-histograms", true, "Export histograms to JSON file");
+        options.addOption(null, "raw-format", true, "Format of the raw samples file: csv (default) or binary");
         return options;
     }
 
@@ -547,11 +638,13 @@ public class DBWorkload {
      *
      * @param r
      * @param activeTXTypes
+     * @param phases
+     * @param saturationSearch the search that generated the phases, or null
      * @param argsLine
      * @param xmlConfig
      * @throws Exception
      */
-    private static void writeOutputs(Results r, List<TransactionType> activeTXTypes, CommandLine argsLine, XMLConfiguration xmlConfig) throws Exception {
+    private static void writeOutputs(Results r, List<TransactionType> activeTXTypes, List<Phase> phases, SaturationSearch saturationSearch, CommandLine argsLine, XMLConfiguration xmlConfig) throws Exception {
 
         // If an output directory is used, store the information
         String outputDirectory = "results";
@@ -570,16 +663,29 @@ public class DBWorkload {
 
         int windowSize = Integer.parseInt(argsLine.getOptionValue("s", "5"));
 
-        String rawFileName = baseFileName + ".raw.csv";
-        try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, rawFileName))) {
-            LOG.info("Output Raw data into file: {}", rawFileName);
-            rw.writeRaw(activeTXTypes, ps);
-        }
+        if (r.hasLatencySamples()) {
+            String rawFormat = argsLine.getOptionValue("raw-format", "csv");
+            if (rawFormat.equalsIgnoreCase("binary")) {
+                String rawFileName = baseFileName + ".raw.bin";
+                LOG.info("Output Raw data into binary file: {}", rawFileName);
+                rw.writeRawBinary(activeTXTypes, phases, Paths.get(FileUtil.joinPath(outputDirectory, rawFileName)));
+            } else if (rawFormat.equalsIgnoreCase("csv")) {
+                String rawFileName = baseFileName + ".raw.csv";
+                try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, rawFileName))) {
+                    LOG.info("Output Raw data into file: {}", rawFileName);
+                    rw.writeRaw(activeTXTypes, ps);
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown raw format '" + rawFormat + "', expected csv or binary");
+            }
 
-        String sampleFileName = baseFileName + ".samples.csv";
-        try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, sampleFileName))) {
-            LOG.info("Output samples into file: {}", sampleFileName);
-            rw.writeSamples(ps);
+            String sampleFileName = baseFileName + ".samples.csv";
+            try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, sampleFileName))) {
+                LOG.info("Output samples into file: {}", sampleFileName);
+                rw.writeSamples(ps);
+            }
+        } else {
+            LOG.info("Latency samples were not retained, skipping raw, samples and windowed results files");
         }
 
         String summaryFileName = baseFileName + ".summary.json";
@@ -608,19 +714,145 @@ public class DBWorkload {
             rw.writeConfig(ps);
         }
 
-        String resultsFileName = baseFileName + ".results.csv";
-        try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, resultsFileName))) {
-            LOG.info("Output results into file: {} with window size {}", resultsFileName, windowSize);
-            rw.writeResults(windowSize, ps);
+        if (r.hasLatencySamples()) {
+            String resultsFileName = baseFileName + ".results.csv";
+            try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, resultsFileName))) {
+                LOG.info("Output results into file: {} with window size {}", resultsFileName, windowSize);
+                rw.writeResults(windowSize, ps);
+            }
+
+            for (TransactionType t : activeTXTypes) {
+                String fileName = baseFileName + ".results." + t.getName() + ".csv";
+                try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, fileName))) {
+                    rw.writeResults(windowSize, ps, t);
+                }
+            }
+        }
+
+        if (!r.getStatementStatistics().isEmpty()) {
+            String statementsFileName = baseFileName + ".statements.csv";
+            try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, statementsFileName))) {
+                LOG.info("Output per-statement results into file: {}", statementsFileName);
+                rw.writeStatements(ps);
+            }
+        }
+
+        if (r.getOutliers() != null && !r.getOutliers().isEmpty()) {
+            String outliersFileName = baseFileName + ".outliers.json";
+            try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, outliersFileName))) {
+                LOG.info("Output slowest transactions into file: {}", outliersFileName);
+                rw.writeOutliers(ps);
+            }
         }
 
-        for (TransactionType t : activeTXTypes) {
-            String fileName = baseFileName + ".results." + t.getName() + ".csv";
-            try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, fileName))) {
-                rw.writeResults(windowSize, ps, t);
+        if (!r.getPhaseResults().isEmpty()) {
+            String phasesFileName = baseFileName + ".phases.csv";
+            try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, phasesFileName))) {
+                LOG.info("Output per-phase results into file: {}", phasesFileName);
+                rw.writePhases(ps);
             }
         }
 
+        // A single phase would only repeat the files above
+        if (r.getPhaseResults().size() > 1) {
+            for (Results phaseResults : r.getPhaseResults()) {
+                ResultWriter phaseWriter = rw.forPhase(phaseResults);
+                String phaseBaseFileName = baseFileName + ".phase" + phaseResults.getPhaseId();
+
+                try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, phaseBaseFileName + ".summary.json"))) {
+                    phaseWriter.writeSummary(ps);
+                }
+
+                if (phaseResults.hasLatencySamples()) {
+                    try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, phaseBaseFileName + ".results.csv"))) {
+                        phaseWriter.writeResults(windowSize, ps);
+                    }
+                }
+            }
+            LOG.info("Output summary and results of each phase into files: {}.phase<id>.*", baseFileName);
+        }
+
+        if (saturationSearch != null) {
+            String saturationFileName = baseFileName + ".saturation.json";
+            try (PrintStream ps = new PrintStream(FileUtil.joinPath(outputDirectory, saturationFileName))) {
+                LOG.info("Output saturation search into file: {}", saturationFileName);
+                ps.println(JSONUtil.format(JSONUtil.toJSONString(saturationSearch.toMap())));
+            }
+        }
+
+    }
+
+    /**
+     * Reads the rateProfile element of a work: a ramp, steps, a sine or a
+     * trace loaded from a CSV file
+     */
+    private static RateProfile createRateProfile(HierarchicalConfiguration<ImmutableNode> profile, int time, int phase) {
+        String type = profile.getString("@type", "");
+        try {
+            return switch (type.toLowerCase()) {
+                case "ramp" -> RateProfile.ramp(profile.getDouble("from"), profile.getDouble("to"), profile.getDouble("duration", time));
+                case "sine" -> RateProfile.sine(profile.getDouble("base"), profile.getDouble("amplitude"), profile.getDouble("period"));
+                case "step", "trace" -> {
+                    double[] offsets;
+                    double[] rates;
+                    if (profile.containsKey("@file")) {
+                        RateProfile trace = RateProfile.loadTrace(Paths.get(profile.getString("@file")));
+                        offsets = trace.getOffsets();
+                        rates = trace.getRates();
+                    } else {
+                        List<HierarchicalConfiguration<ImmutableNode>> points = profile.configurationsAt("point");
+                        offsets = new double[points.size()];
+                        rates = new double[points.size()];
+                        for (int p = 0; p < points.size(); p++) {
+                            offsets[p] = points.get(p).getDouble("@offset");
+                            rates[p] = points.get(p).getDouble("@rate");
+                        }
+                    }
+                    yield type.equalsIgnoreCase("step") ? RateProfile.steps(offsets, rates) : RateProfile.trace(offsets, rates);
+                }
+                default -> throw new IllegalArgumentException(String.format("unknown type '%s', use ramp, step, sine or trace", type));
+            };
+        } catch (IOException | IllegalArgumentException | NoSuchElementException e) {
+            LOG.error(String.format("Invalid rate profile in phase %d: %s", phase, e.getMessage()));
+            System.exit(-1);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the configured phase with a search for the highest rate that
+     * meets the objective in the saturation section
+     */
+    private static SaturationSearch createSaturationSearch(HierarchicalConfiguration<ImmutableNode> saturation, WorkloadConfiguration wrkld) {
+        List<Phase> phases = wrkld.getPhases();
+        if (phases.size() != 1) {
+            LOG.error("A saturation search needs exactly one work, it defines the weights, terminals and arrival of every step.");
+            System.exit(-1);
+        }
+        Phase template = phases.get(0);
+        if (!template.isRateLimited() || template.isDisabled() || template.isSerial()) {
+            LOG.error("The work of a saturation search must be rate limited and not serial.");
+            System.exit(-1);
+        }
+
+        int startRate = saturation.getInt("startRate", template.getRate());
+        SaturationSearch search = null;
+        try {
+            search = new SaturationSearch(template, phases,
+                    saturation.getDouble("p99"),
+                    saturation.getDouble("errorRate", 0.01),
+                    startRate,
+                    saturation.getInt("maxRate", Integer.MAX_VALUE),
+                    saturation.getInt("stepTime", template.getTime()),
+                    saturation.getInt("stepWarmup", 5),
+                    saturation.getDouble("precision", 0.05));
+        } catch (IllegalArgumentException | NoSuchElementException e) {
+            LOG.error("Invalid saturation search configuration: {}", e.getMessage());
+            System.exit(-1);
+        }
+        // The search adds the phase of every step when it starts
+        phases.clear();
+        return search;
     }
 
     private static void runCreator(BenchmarkModule bench) throws SQLException, IOException {
@@ -633,7 +865,7 @@ public class DBWorkload {
         bench.loadDatabase();
     }
 
-    private static Results runWorkload(List<BenchmarkModule> benchList, int intervalMonitor) throws IOException {
+    private static Results runWorkload(List<BenchmarkModule> benchList, int intervalMonitor, String intervalMonitorFile, MetricsServer metricsServer) throws IOException {
         List<Worker<?>> workers = new ArrayList<>();
         List<WorkloadConfiguration> workConfs = new ArrayList<>();
         for (BenchmarkModule bench : benchList) {
@@ -641,11 +873,18 @@ public class DBWorkload {
             workers.addAll(bench.makeWorkers());
 
             int num_phases = bench.getWorkloadConfiguration().getNumberOfPhases();
-            LOG.info(String.format("Launching the %s Benchmark with %s Phase%s...", bench.getBenchmarkName().toUpperCase(), num_phases, (num_phases > 1 ? "s" : "")));
+            if (bench.getWorkloadConfiguration().getSaturationSearch() != null) {
+                LOG.info("Launching the {} Benchmark with a saturation search...", bench.getBenchmarkName().toUpperCase());
+            } else {
+                LOG.info(String.format("Launching the %s Benchmark with %s Phase%s...", bench.getBenchmarkName().toUpperCase(), num_phases, (num_phases > 1 ? "s" : "")));
+            }
             workConfs.add(bench.getWorkloadConfiguration());
 
         }
-        Results r = ThreadBench.runRateLimitedBenchmark(workers, workConfs, intervalMonitor);
+        Results r = ThreadBench.runRateLimitedBenchmark(workers, workConfs, intervalMonitor, intervalMonitorFile, metricsServer);
+        for (BenchmarkModule bench : benchList) {
+            bench.closeConnectionPool();
+        }
         LOG.info(SINGLE_LINE);
         LOG.info("Rate limited reqs/s: {}", r);
         return r;
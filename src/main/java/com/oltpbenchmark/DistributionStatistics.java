@@ -18,6 +18,7 @@
 
 package com.oltpbenchmark;
 
+import com.oltpbenchmark.util.LatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,7 +30,7 @@ import java.util.concurrent.TimeUnit;
 public class DistributionStatistics {
     private static final Logger LOG = LoggerFactory.getLogger(DistributionStatistics.class);
 
-    private static final double[] PERCENTILES = {0.0, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 1.0};
+    static final double[] PERCENTILES = {0.0, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 0.999, 0.9999, 1.0};
 
     private static final int MINIMUM = 0;
     private static final int PERCENTILE_25TH = 1;
@@ -38,18 +39,46 @@ public class DistributionStatistics {
     private static final int PERCENTILE_90TH = 4;
     private static final int PERCENTILE_95TH = 5;
     private static final int PERCENTILE_99TH = 6;
-    private static final int MAXIMUM = 7;
+    private static final int PERCENTILE_99_9TH = 7;
+    private static final int PERCENTILE_99_99TH = 8;
+    private static final int MAXIMUM = 9;
 
     private final int count;
     private final long[] percentiles;
     private final double average;
     private final double standardDeviation;
+    private final LatencyHistogram histogram;
 
     public DistributionStatistics(int count, long[] percentiles, double average, double standardDeviation) {
+        this(count, percentiles, average, standardDeviation, null);
+    }
+
+    private DistributionStatistics(int count, long[] percentiles, double average, double standardDeviation, LatencyHistogram histogram) {
         this.count = count;
         this.percentiles = Arrays.copyOfRange(percentiles, 0, PERCENTILES.length);
         this.average = average;
         this.standardDeviation = standardDeviation;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Computes distribution statistics from a latency histogram. Percentiles are
+     * accurate to within {@link LatencyHistogram#RELATIVE_ERROR}; any other
+     * percentile can later be queried with {@link #getPercentile(double)}.
+     */
+    public static DistributionStatistics computeStatistics(LatencyHistogram histogram) {
+        if (histogram.isEmpty()) {
+            long[] percentiles = new long[PERCENTILES.length];
+            Arrays.fill(percentiles, -1);
+            return new DistributionStatistics(0, percentiles, -1, -1, histogram);
+        }
+
+        long[] percentiles = new long[PERCENTILES.length];
+        for (int i = 0; i < percentiles.length; ++i) {
+            percentiles[i] = histogram.getValueAtPercentile(PERCENTILES[i]);
+        }
+
+        return new DistributionStatistics((int) histogram.getCount(), percentiles, histogram.getMean(), histogram.getStandardDeviation(), histogram);
     }
 
     /**
@@ -137,10 +166,31 @@ public class DistributionStatistics {
         return percentiles[PERCENTILE_99TH];
     }
 
+    public double get99_9thPercentile() {
+        return percentiles[PERCENTILE_99_9TH];
+    }
+
+    public double get99_99thPercentile() {
+        return percentiles[PERCENTILE_99_99TH];
+    }
+
     public double getMaximum() {
         return percentiles[MAXIMUM];
     }
 
+    /**
+     * Returns an arbitrary percentile. Only available for statistics computed
+     * from a {@link LatencyHistogram}.
+     *
+     * @param percentile a fraction between 0.0 and 1.0 (e.g. 0.999 for p99.9)
+     */
+    public double getPercentile(double percentile) {
+        if (histogram == null) {
+            throw new IllegalStateException("Arbitrary percentiles require statistics computed from a LatencyHistogram");
+        }
+        return histogram.getValueAtPercentile(percentile);
+    }
+
     @Override
     public String toString() {
         return "in milliseconds [min=" + TimeUnit.MICROSECONDS.toMillis((long) getMinimum()) + ", "
@@ -151,6 +201,8 @@ public class DistributionStatistics {
                + "90th=" + TimeUnit.MICROSECONDS.toMillis((long) get90thPercentile()) + ", "
                + "95th=" + TimeUnit.MICROSECONDS.toMillis((long) get95thPercentile()) + ", "
                + "99th=" + TimeUnit.MICROSECONDS.toMillis((long) get99thPercentile()) + ", "
+               + "99.9th=" + TimeUnit.MICROSECONDS.toMillis((long) get99_9thPercentile()) + ", "
+               + "99.99th=" + TimeUnit.MICROSECONDS.toMillis((long) get99_99thPercentile()) + ", "
                + "max=" + TimeUnit.MICROSECONDS.toMillis((long) getMaximum()) + "]";
     }
 
@@ -164,6 +216,8 @@ public class DistributionStatistics {
         distMap.put("90th Percentile Latency (microseconds)", (int) get90thPercentile());
         distMap.put("95th Percentile Latency (microseconds)", (int) get95thPercentile());
         distMap.put("99th Percentile Latency (microseconds)", (int) get99thPercentile());
+        distMap.put("99.9th Percentile Latency (microseconds)", (int) get99_9thPercentile());
+        distMap.put("99.99th Percentile Latency (microseconds)", (int) get99_99thPercentile());
         distMap.put("Maximum Latency (microseconds)", (int) getMaximum());
         return distMap;
     }
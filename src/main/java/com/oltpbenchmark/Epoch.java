@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark;
+
+import com.oltpbenchmark.types.State;
+
+/**
+ * What a workload is doing right now: the global benchmark state together
+ * with the current phase of the workload.
+ * <p>
+ * Epochs are immutable and published through a single volatile reference in
+ * {@link WorkloadState}, so a worker sees a consistent state and phase with
+ * one read, and notices any change by comparing the fields of the epoch it
+ * started with against a fresh one. Every state transition and phase switch
+ * publishes a new epoch.
+ */
+public final class Epoch {
+
+    private final State state;
+    private final Phase phase;
+    private final long phaseStartNanos;
+
+    Epoch(State state, Phase phase, long phaseStartNanos) {
+        this.state = state;
+        this.phase = phase;
+        this.phaseStartNanos = phaseStartNanos;
+    }
+
+    Epoch withState(State state) {
+        return state == this.state ? this : new Epoch(state, phase, phaseStartNanos);
+    }
+
+    Epoch withPhase(Phase phase, long phaseStartNanos) {
+        return new Epoch(state, phase, phaseStartNanos);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the current phase, null before the first phase and once the
+     * benchmark is over
+     */
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return when the current phase started, as returned by System.nanoTime()
+     */
+    public long getPhaseStartNanos() {
+        return phaseStartNanos;
+    }
+
+    /**
+     * @return true once workers should stop waiting for work
+     */
+    public boolean isOver() {
+        return state == State.EXIT || state == State.DONE;
+    }
+
+    @Override
+    public String toString() {
+        return "Epoch[state=" + state + ", phase=" + (phase != null ? phase.getId() : "none") + "]";
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark;
+
+import com.oltpbenchmark.types.TransactionStatus;
+import com.oltpbenchmark.util.LatencyHistogram;
+
+import java.util.Arrays;
+
+/**
+ * Records what a single Worker did since the monitor last looked.
+ * <p>
+ * The recorder is double-buffered: the worker always writes into the active
+ * {@link Interval} and {@link #drainInto(Interval)} swaps in a clean one before
+ * reading the old one. The worker never takes a lock; it only announces which
+ * interval it is writing to through a volatile field, and the monitor waits
+ * (for at most one transaction's worth of bookkeeping) until the worker has
+ * left the interval it swapped out.
+ * <p>
+ * There must be a single writer (the worker thread) and a single reader (the
+ * monitor thread).
+ */
+public final class IntervalRecorder {
+
+    private volatile Interval active = new Interval();
+    private volatile Interval writing;
+    private Interval spare = new Interval();
+
+    /**
+     * Called by the worker for every measured transaction
+     */
+    public void recordLatency(int transactionTypeId, long latencyMicroseconds) {
+        recordLatency(transactionTypeId, latencyMicroseconds, 0);
+    }
+
+    /**
+     * Called by the worker for every measured transaction, with the time the
+     * request waited before it started
+     */
+    public void recordLatency(int transactionTypeId, long latencyMicroseconds, long queueMicroseconds) {
+        Interval interval = enter();
+        interval.histogram(transactionTypeId).add(latencyMicroseconds);
+        interval.responseTimes.add(latencyMicroseconds + queueMicroseconds);
+        writing = null;
+    }
+
+    /**
+     * Called by the worker for every attempt, with the same outcome that is
+     * counted in its transaction histograms
+     */
+    public void recordOutcome(int transactionTypeId, TransactionStatus status) {
+        Interval interval = enter();
+        interval.counts(transactionTypeId)[status.ordinal()]++;
+        writing = null;
+    }
+
+    private Interval enter() {
+        Interval interval;
+        do {
+            interval = active;
+            writing = interval;
+        } while (interval != active);
+        return interval;
+    }
+
+    /**
+     * Swaps in a clean interval and adds everything recorded in the previous
+     * one to {@code target}. Called by the monitor.
+     */
+    public void drainInto(Interval target) {
+        drainInto(target, 0);
+    }
+
+    /**
+     * Like {@link #drainInto(Interval)}, with the transaction type ids
+     * shifted by {@code offset}. Workloads number their transaction types
+     * from 1, so the monitor of a run with several of them gives each its
+     * own range of ids.
+     */
+    public void drainInto(Interval target, int offset) {
+        Interval previous = active;
+        active = spare;
+        while (writing == previous) {
+            Thread.onSpinWait();
+        }
+        target.add(previous, offset);
+        previous.reset();
+        spare = previous;
+    }
+
+    /**
+     * Per transaction type latency histograms and outcome counts for one
+     * interval. Transaction types are indexed by id; index 0 is unused.
+     */
+    public static final class Interval {
+        private static final int STATUS_COUNT = TransactionStatus.values().length;
+
+        private LatencyHistogram[] histograms = new LatencyHistogram[0];
+        private long[][] counts = new long[0][];
+        private final LatencyHistogram responseTimes = new LatencyHistogram();
+
+        LatencyHistogram histogram(int transactionTypeId) {
+            ensureCapacity(transactionTypeId);
+            return histograms[transactionTypeId];
+        }
+
+        long[] counts(int transactionTypeId) {
+            ensureCapacity(transactionTypeId);
+            return counts[transactionTypeId];
+        }
+
+        private void ensureCapacity(int transactionTypeId) {
+            if (transactionTypeId < histograms.length) {
+                return;
+            }
+            int from = histograms.length;
+            histograms = Arrays.copyOf(histograms, transactionTypeId + 1);
+            counts = Arrays.copyOf(counts, transactionTypeId + 1);
+            for (int i = from; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+                counts[i] = new long[STATUS_COUNT];
+            }
+        }
+
+        public void add(Interval other) {
+            add(other, 0);
+        }
+
+        /**
+         * Adds the other interval, recorded under id {@code i}, as id
+         * {@code offset + i}
+         */
+        public void add(Interval other, int offset) {
+            if (other.histograms.length > 0) {
+                ensureCapacity(offset + other.histograms.length - 1);
+            }
+            for (int id = 0; id < other.histograms.length; id++) {
+                histograms[offset + id].add(other.histograms[id]);
+                for (int s = 0; s < STATUS_COUNT; s++) {
+                    counts[offset + id][s] += other.counts[id][s];
+                }
+            }
+            responseTimes.add(other.responseTimes);
+        }
+
+        public void reset() {
+            for (int id = 0; id < histograms.length; id++) {
+                histograms[id].reset();
+                Arrays.fill(counts[id], 0);
+            }
+            responseTimes.reset();
+        }
+
+        /**
+         * @return one more than the highest transaction type id seen so far
+         */
+        public int getTransactionTypeCount() {
+            return histograms.length;
+        }
+
+        /**
+         * @return the latencies of the measured transactions of the given type
+         */
+        public LatencyHistogram getHistogram(int transactionTypeId) {
+            return transactionTypeId < histograms.length ? histograms[transactionTypeId] : new LatencyHistogram();
+        }
+
+        /**
+         * @return the response times (latency plus queue delay) of the
+         * measured transactions of all types
+         */
+        public LatencyHistogram getResponseTimes() {
+            return responseTimes;
+        }
+
+        /**
+         * @return the number of attempts of the given type that ended with the given status
+         */
+        public long getCount(int transactionTypeId, TransactionStatus status) {
+            return transactionTypeId < counts.length ? counts[transactionTypeId][status.ordinal()] : 0;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark;
+
+import com.oltpbenchmark.util.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Splits the response time of the measured requests into where it went:
+ * executing the statements, committing, rolling back, backing off between
+ * attempts and waiting in the queue. A slow commit and a slow query look the
+ * same in the latency alone, but land in different components here.
+ * <p>
+ * Keeps one histogram (in microseconds) per component. Not thread-safe, every
+ * Worker records into its own and they are merged with
+ * {@link #add(LatencyBreakdown)}.
+ */
+public final class LatencyBreakdown {
+
+    public enum Component {
+        /**
+         * Executing the statements of every attempt
+         */
+        EXECUTION("Execution"),
+        COMMIT("Commit"),
+        ROLLBACK("Rollback"),
+        /**
+         * Waiting between attempts of a retried transaction
+         */
+        BACKOFF("Retry Backoff"),
+        QUEUE_DELAY("Queue Delay");
+
+        private static final Component[] VALUES = values();
+
+        private final String label;
+
+        Component(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Component.VALUES.length];
+
+    public LatencyBreakdown() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records the components of a single request, all in microseconds
+     */
+    public void record(long execution, long commit, long rollback, long backoff, long queueDelay) {
+        histograms[Component.EXECUTION.ordinal()].add(execution);
+        histograms[Component.COMMIT.ordinal()].add(commit);
+        histograms[Component.ROLLBACK.ordinal()].add(rollback);
+        histograms[Component.BACKOFF.ordinal()].add(backoff);
+        histograms[Component.QUEUE_DELAY.ordinal()].add(queueDelay);
+    }
+
+    public LatencyHistogram get(Component component) {
+        return histograms[component.ordinal()];
+    }
+
+    public void add(LatencyBreakdown other) {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i].add(other.histograms[i]);
+        }
+    }
+
+    public boolean isEmpty() {
+        return histograms[0].isEmpty();
+    }
+
+    /**
+     * @return the share of the total response time spent in the component
+     */
+    public double getShare(Component component) {
+        double total = 0;
+        for (LatencyHistogram h : histograms) {
+            total += sum(h);
+        }
+        return total == 0 ? 0 : sum(get(component)) / total;
+    }
+
+    private static double sum(LatencyHistogram h) {
+        return h.isEmpty() ? 0 : h.getMean() * h.getCount();
+    }
+
+    /**
+     * @return the distribution of every component and its share of the
+     * response time, for the summary
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        Map<String, Double> shares = new LinkedHashMap<>();
+        for (Component c : Component.VALUES) {
+            m.put(c.getLabel(), DistributionStatistics.computeStatistics(get(c)).toMap());
+            shares.put(c.getLabel(), getShare(c));
+        }
+        m.put("Share of Response Time", shares);
+        return m;
+    }
+}
@@ -18,168 +18,842 @@
 
 package com.oltpbenchmark;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import com.oltpbenchmark.types.TransactionStatus;
+import com.oltpbenchmark.util.RawSampleHeader;
+import com.oltpbenchmark.util.RawSampleReader;
+import com.oltpbenchmark.util.RawSampleWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Efficiently stores a record of (start time, latency) pairs.
+ * <p>
+ * Samples are kept in columnar form: every field lives in its own primitive
+ * array so that recording a transaction never allocates an object. Storage is
+ * grown lazily in chunks that double in size (up to {@link #MAX_CHUNK_SIZE}),
+ * so idle workers cost almost nothing and busy workers never copy what they
+ * already recorded.
+ * <p>
+ * A record created with {@link #spillingTo(long, Path)} is double-buffered:
+ * it owns at most two chunks of {@link #SPILL_CHUNK_SIZE} samples. While the
+ * worker fills one, a background writer appends the other to a binary raw file
+ * (see {@link RawSampleWriter}), so memory use stays constant however long the
+ * run is and however many workers there are. If the worker fills its chunk
+ * before the other one is written it waits for the writer; these stalls are
+ * counted by {@link #getSpillStalls()}.
  */
-public class LatencyRecord implements Iterable<LatencyRecord.Sample> {
+public class LatencyRecord {
     /**
-     * Allocate space for 500k samples at a time
+     * Size of the first chunk allocated on the first recorded sample
      */
-    static final int ALLOC_SIZE = 500000;
+    static final int MIN_CHUNK_SIZE = 1024;
 
     /**
-     * Contains (start time, latency, transactionType, workerid, phaseid) pentiplets
-     * in microsecond form. The start times are "compressed" by encoding them as
-     * increments, starting from startNs. A 32-bit integer provides sufficient resolution
-     * for an interval of 2146 seconds, or 35 minutes.
+     * Chunks stop doubling once they reach 512k samples
      */
-    private final ArrayList<Sample[]> values = new ArrayList<>();
-    private int nextIndex;
+    static final int MAX_CHUNK_SIZE = 1 << 19;
+
+    /**
+     * Size of the chunks handed to the spill writers
+     */
+    static final int SPILL_CHUNK_SIZE = 1 << 13;
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    /**
+     * Contains (transactionType, start time, latency, queue delay, commit, rollback,
+     * backoff, status, workerid, phaseid) columns. Start times are stored as nanosecond
+     * offsets from startNanosecond, all durations in microseconds.
+     */
+    private final ArrayList<Chunk> chunks = new ArrayList<>();
+    private Chunk current;
+    private int size;
 
     private final long startNanosecond;
-    private long lastNanosecond;
+
+    /**
+     * Null unless samples are spilled to disk
+     */
+    private final Spill spill;
 
     public LatencyRecord(long startNanosecond) {
         this.startNanosecond = startNanosecond;
-        this.lastNanosecond = startNanosecond;
-        allocateChunk();
+        this.spill = null;
+    }
 
+    private LatencyRecord(long startNanosecond, Spill spill) {
+        this.startNanosecond = startNanosecond;
+        this.spill = spill;
+    }
+
+    /**
+     * Creates a record that streams its samples to the given file as they are
+     * recorded. The file is deleted when the JVM exits.
+     */
+    public static LatencyRecord spillingTo(long startNanosecond, Path file) throws IOException {
+        return spillingTo(startNanosecond, file, Spill.WRITERS);
+    }
+
+    /**
+     * @param writers runs the writes to the file, one at a time
+     */
+    static LatencyRecord spillingTo(long startNanosecond, Path file, Executor writers) throws IOException {
+        return new LatencyRecord(startNanosecond, new Spill(file, startNanosecond, writers));
     }
 
     public void addLatency(int transType, long startNanosecond, long endNanosecond, int workerId, int phaseId) {
+        addLatency(transType, startNanosecond, endNanosecond, 0, TransactionStatus.SUCCESS, workerId, phaseId);
+    }
 
+    /**
+     * @param queueNanoseconds how long the request waited between its intended
+     *                         start (e.g. its arrival in a rate-limited phase) and
+     *                         the moment a worker picked it up
+     * @param status           the final outcome of the transaction
+     */
+    public void addLatency(int transType, long startNanosecond, long endNanosecond, long queueNanoseconds, TransactionStatus status, int workerId, int phaseId) {
+        addLatency(transType, startNanosecond, endNanosecond, queueNanoseconds, 0, 0, 0, status, workerId, phaseId);
+    }
 
-        if (nextIndex == ALLOC_SIZE) {
+    /**
+     * @param commitNanoseconds   time spent committing, over all attempts
+     * @param rollbackNanoseconds time spent rolling back, over all attempts
+     * @param backoffNanoseconds  time spent waiting between attempts, not
+     *                            part of the latency but of the response time
+     */
+    public void addLatency(int transType, long startNanosecond, long endNanosecond, long queueNanoseconds, long commitNanoseconds, long rollbackNanoseconds, long backoffNanoseconds, TransactionStatus status, int workerId, int phaseId) {
+        if (current == null || current.count == current.capacity()) {
             allocateChunk();
         }
-        Sample[] chunk = values.get(values.size() - 1);
-
-        long startOffsetNanosecond = (startNanosecond - lastNanosecond + 500);
 
-        int latencyMicroseconds = (int) ((endNanosecond - startNanosecond + 500) / 1000);
+        int backoffMicroseconds = toMicroseconds(backoffNanoseconds);
+        int latencyMicroseconds = Math.max(0, (int) ((endNanosecond - startNanosecond + 500) / 1000) - backoffMicroseconds);
+        int queueMicroseconds = toMicroseconds(queueNanoseconds);
 
+        current.add(transType, startNanosecond - this.startNanosecond, latencyMicroseconds, queueMicroseconds,
+                toMicroseconds(commitNanoseconds), toMicroseconds(rollbackNanoseconds), backoffMicroseconds,
+                (byte) status.ordinal(), workerId, phaseId);
+        ++size;
+    }
 
-        chunk[nextIndex] = new Sample(transType, startOffsetNanosecond, latencyMicroseconds, workerId, phaseId);
-        ++nextIndex;
-
-        lastNanosecond += startOffsetNanosecond;
+    private static int toMicroseconds(long nanoseconds) {
+        return (int) ((Math.max(0, nanoseconds) + 500) / 1000);
     }
 
     private void allocateChunk() {
-        values.add(new Sample[ALLOC_SIZE]);
-        nextIndex = 0;
+        if (spill != null) {
+            current = spill.swap(current);
+            chunks.clear();
+            chunks.add(current);
+            return;
+        }
+        int capacity = current == null ? MIN_CHUNK_SIZE : Math.min(current.capacity() * 2, MAX_CHUNK_SIZE);
+        current = new Chunk(capacity);
+        chunks.add(current);
     }
 
     /**
      * Returns the number of recorded samples.
      */
     public int size() {
-        // Samples stored in full chunks
-        int samples = (values.size() - 1) * ALLOC_SIZE;
+        return size;
+    }
 
-        // Samples stored in the last not full chunk
-        samples += nextIndex;
-        return samples;
+    public long getStartNanosecond() {
+        return startNanosecond;
     }
 
     /**
-     * Stores the start time and latency for a single sample. Immutable.
+     * Returns whether the samples are spilled to disk
      */
-    public static final class Sample implements Comparable<Sample> {
-        private final int transactionType;
-        private long startNanosecond;
-        private final int latencyMicrosecond;
-        private final int workerId;
-        private final int phaseId;
+    public boolean isSpilling() {
+        return spill != null;
+    }
 
-        public Sample(int transactionType, long startNanosecond, int latencyMicrosecond, int workerId, int phaseId) {
-            this.transactionType = transactionType;
-            this.startNanosecond = startNanosecond;
-            this.latencyMicrosecond = latencyMicrosecond;
-            this.workerId = workerId;
-            this.phaseId = phaseId;
+    /**
+     * Writes out the samples still in memory and closes the spill file; no
+     * more samples may be added afterwards. Does nothing unless spilling.
+     */
+    public void seal() {
+        if (spill == null || spill.sealed) {
+            return;
+        }
+        spill.close(current);
+        chunks.clear();
+        current = null;
+    }
+
+    /**
+     * Returns how many times a spilling record had to wait for the previous
+     * chunk to be written before it could record more samples
+     */
+    public int getSpillStalls() {
+        return spill == null ? 0 : spill.stalls;
+    }
+
+    /**
+     * Returns how many chunks a spilling record has allocated, at most two
+     */
+    int getSpillChunks() {
+        return spill == null ? 0 : spill.allocated;
+    }
+
+    /**
+     * Returns a new cursor positioned before the first sample. Samples are
+     * returned in the order in which they were recorded, which for a single
+     * worker is also start time order.
+     */
+    public Cursor cursor() {
+        if (spill == null) {
+            return new RecordCursor();
+        }
+        if (!spill.sealed) {
+            spill.sync();
+        }
+        try {
+            return new SpilledCursor(new RawSampleReader(spill.file), new RecordCursor());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns a cursor over the union of the given records, ordered by start
+     * time. Each record must itself be in start time order (true for the
+     * record of a single worker); the records are merged lazily, so no sample
+     * is copied or sorted.
+     */
+    public static Cursor merge(Collection<LatencyRecord> records) {
+        if (records.size() == 1) {
+            return records.iterator().next().cursor();
+        }
+        return new MergedCursor(records);
+    }
+
+    /**
+     * Returns a cursor over the samples of {@code samples} that were measured
+     * in the given phase, in their original order
+     */
+    public static Cursor forPhase(Cursor samples, int phaseId) {
+        return new PhaseCursor(samples, phaseId);
+    }
+
+    /**
+     * A forward-only view over recorded samples. The accessors describe the
+     * sample the cursor is positioned at and are only valid after a call to
+     * {@link #next()} returned true. No objects are allocated while iterating.
+     */
+    public interface Cursor {
+
+        /**
+         * Advances to the next sample.
+         *
+         * @return false once all samples have been consumed
+         */
+        boolean next();
+
+        int getTransactionType();
+
+        /**
+         * @return the absolute start time, as returned by System.nanoTime()
+         */
+        long getStartNanosecond();
+
+        /**
+         * @return the service time, from the moment the worker started the
+         * transaction until it completed, without the backoff between attempts
+         */
+        int getLatencyMicrosecond();
+
+        /**
+         * @return the time the request spent queued before a worker picked it up
+         */
+        int getQueueDelayMicrosecond();
+
+        /**
+         * @return the part of the service time spent in commit, over all attempts
+         */
+        int getCommitMicrosecond();
+
+        /**
+         * @return the part of the service time spent in rollback, over all attempts
+         */
+        int getRollbackMicrosecond();
+
+        /**
+         * @return the time spent waiting between attempts
+         */
+        int getBackoffMicrosecond();
+
+        /**
+         * @return the rest of the service time: executing the statements of
+         * every attempt. Connecting and closing the connection for every
+         * transaction is not part of it, see the connection churn.
+         */
+        default int getExecutionMicrosecond() {
+            return Math.max(0, getLatencyMicrosecond() - getCommitMicrosecond() - getRollbackMicrosecond());
+        }
+
+        /**
+         * @return the response time an open-loop client would observe: queue
+         * delay plus service time plus backoff
+         */
+        default int getResponseTimeMicrosecond() {
+            return getQueueDelayMicrosecond() + getLatencyMicrosecond() + getBackoffMicrosecond();
+        }
+
+        TransactionStatus getStatus();
+
+        int getWorkerId();
+
+        int getPhaseId();
+    }
+
+    private static final class Chunk {
+        private final int[] transactionTypes;
+        private final long[] startOffsets;
+        private final int[] latencies;
+        private final int[] queueDelays;
+        private final int[] commits;
+        private final int[] rollbacks;
+        private final int[] backoffs;
+        private final byte[] statuses;
+        private final int[] workerIds;
+        private final int[] phaseIds;
+        private int count;
+
+        Chunk(int capacity) {
+            this.transactionTypes = new int[capacity];
+            this.startOffsets = new long[capacity];
+            this.latencies = new int[capacity];
+            this.queueDelays = new int[capacity];
+            this.commits = new int[capacity];
+            this.rollbacks = new int[capacity];
+            this.backoffs = new int[capacity];
+            this.statuses = new byte[capacity];
+            this.workerIds = new int[capacity];
+            this.phaseIds = new int[capacity];
+        }
+
+        int capacity() {
+            return latencies.length;
+        }
+
+        void clear() {
+            count = 0;
+        }
+
+        void add(int transType, long startOffset, int latency, int queueDelay, int commit, int rollback, int backoff, byte status, int workerId, int phaseId) {
+            transactionTypes[count] = transType;
+            startOffsets[count] = startOffset;
+            latencies[count] = latency;
+            queueDelays[count] = queueDelay;
+            commits[count] = commit;
+            rollbacks[count] = rollback;
+            backoffs[count] = backoff;
+            statuses[count] = status;
+            workerIds[count] = workerId;
+            phaseIds[count] = phaseId;
+            ++count;
         }
+    }
+
+    private final class RecordCursor implements Cursor {
+        private int chunkIndex = 0;
+        private int subIndex = -1;
+        private Chunk chunk = chunks.isEmpty() ? null : chunks.get(0);
 
+        @Override
+        public boolean next() {
+            if (chunk == null) {
+                return false;
+            }
+            if (++subIndex < chunk.count) {
+                return true;
+            }
+            // Wrap to the next chunk; chunks are never empty
+            if (++chunkIndex < chunks.size()) {
+                chunk = chunks.get(chunkIndex);
+                subIndex = 0;
+                return true;
+            }
+            chunk = null;
+            return false;
+        }
+
+        @Override
         public int getTransactionType() {
-            return transactionType;
+            return chunk.transactionTypes[subIndex];
         }
 
+        @Override
         public long getStartNanosecond() {
-            return startNanosecond;
+            return startNanosecond + chunk.startOffsets[subIndex];
         }
 
+        @Override
         public int getLatencyMicrosecond() {
-            return latencyMicrosecond;
+            return chunk.latencies[subIndex];
+        }
+
+        @Override
+        public int getQueueDelayMicrosecond() {
+            return chunk.queueDelays[subIndex];
+        }
+
+        @Override
+        public int getCommitMicrosecond() {
+            return chunk.commits[subIndex];
+        }
+
+        @Override
+        public int getRollbackMicrosecond() {
+            return chunk.rollbacks[subIndex];
         }
 
+        @Override
+        public int getBackoffMicrosecond() {
+            return chunk.backoffs[subIndex];
+        }
+
+        @Override
+        public TransactionStatus getStatus() {
+            return STATUSES[chunk.statuses[subIndex]];
+        }
+
+        @Override
         public int getWorkerId() {
-            return workerId;
+            return chunk.workerIds[subIndex];
         }
 
+        @Override
         public int getPhaseId() {
-            return phaseId;
+            return chunk.phaseIds[subIndex];
+        }
+    }
+
+    /**
+     * Iterates over a single chunk, used by the spill thread to write it out
+     */
+    private static final class ChunkCursor implements Cursor {
+        private final long startNanosecond;
+        private Chunk chunk;
+        private int index;
+
+        ChunkCursor(long startNanosecond) {
+            this.startNanosecond = startNanosecond;
+        }
+
+        void reset(Chunk chunk) {
+            this.chunk = chunk;
+            this.index = -1;
         }
 
         @Override
-        public int compareTo(Sample other) {
-            long diff = this.startNanosecond - other.startNanosecond;
+        public boolean next() {
+            return ++index < chunk.count;
+        }
 
-            // explicit comparison to avoid long to int overflow
-            if (diff > 0) {
-                return 1;
-            } else if (diff < 0) {
-                return -1;
-            } else {
+        @Override
+        public int getTransactionType() {
+            return chunk.transactionTypes[index];
+        }
 
-                return 0;
+        @Override
+        public long getStartNanosecond() {
+            return startNanosecond + chunk.startOffsets[index];
+        }
+
+        @Override
+        public int getLatencyMicrosecond() {
+            return chunk.latencies[index];
+        }
+
+        @Override
+        public int getQueueDelayMicrosecond() {
+            return chunk.queueDelays[index];
+        }
+
+        @Override
+        public int getCommitMicrosecond() {
+            return chunk.commits[index];
+        }
+
+        @Override
+        public int getRollbackMicrosecond() {
+            return chunk.rollbacks[index];
+        }
+
+        @Override
+        public int getBackoffMicrosecond() {
+            return chunk.backoffs[index];
+        }
+
+        @Override
+        public TransactionStatus getStatus() {
+            return STATUSES[chunk.statuses[index]];
+        }
+
+        @Override
+        public int getWorkerId() {
+            return chunk.workerIds[index];
+        }
+
+        @Override
+        public int getPhaseId() {
+            return chunk.phaseIds[index];
+        }
+    }
+
+    /**
+     * Appends full chunks to the spill file in the background. Every record
+     * has at most one write in flight, which keeps its chunks in order in the
+     * file, and a spare chunk to fill meanwhile. The writes of all records are
+     * shared by one writer thread per core.
+     */
+    private static final class Spill {
+        private static final AtomicInteger WRITER_IDS = new AtomicInteger();
+        private static final Executor WRITERS = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "LatencySpiller-" + WRITER_IDS.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        private final Path file;
+        private final RawSampleWriter writer;
+        private final ChunkCursor chunkCursor;
+        private final Executor writers;
+
+        // The chunk being written, or written last and free to be reused
+        private Chunk spare;
+        private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+        private volatile IOException failure;
+        private int allocated;
+        private int stalls;
+        private boolean sealed;
+
+        Spill(Path file, long startNanosecond, Executor writers) throws IOException {
+            this.file = file;
+            this.writer = new RawSampleWriter(file, new RawSampleHeader(startNanosecond, 0, Map.of(), List.of()));
+            this.chunkCursor = new ChunkCursor(startNanosecond);
+            this.writers = writers;
+            file.toFile().deleteOnExit();
+        }
+
+        /**
+         * Hands a full chunk, if any, to the writers and returns an empty one.
+         * Waits for the previous chunk to be written rather than allocating a
+         * third.
+         */
+        Chunk swap(Chunk full) {
+            if (!pending.isDone()) {
+                stalls++;
+            }
+            awaitPending();
+            Chunk next = spare;
+            if (next == null) {
+                next = new Chunk(SPILL_CHUNK_SIZE);
+                allocated++;
+            }
+            spare = full;
+            if (full != null) {
+                pending = CompletableFuture.runAsync(() -> write(full), writers);
+            }
+            return next;
+        }
+
+        private void write(Chunk chunk) {
+            if (failure == null) {
+                try {
+                    chunkCursor.reset(chunk);
+                    writer.writeAll(chunkCursor);
+                } catch (IOException ex) {
+                    failure = ex;
+                }
+            }
+            chunk.clear();
+        }
+
+        /**
+         * Waits until everything submitted so far is readable from the file
+         */
+        void sync() {
+            awaitPending();
+            try {
+                writer.flush();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to write " + file, ex);
+            }
+        }
+
+        /**
+         * Writes the last chunk, if any, and closes the file
+         */
+        void close(Chunk last) {
+            sealed = true;
+            awaitPending();
+            if (last != null) {
+                write(last);
+            }
+            spare = null;
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to write " + file, ex);
+            }
+            checkFailure();
+        }
+
+        private void awaitPending() {
+            try {
+                pending.join();
+            } catch (CompletionException ex) {
+                throw new UncheckedIOException(new IOException("Failed to write " + file, ex.getCause()));
+            }
+            checkFailure();
+        }
+
+        private void checkFailure() {
+            if (failure != null) {
+                throw new UncheckedIOException("Failed to write " + file, failure);
             }
         }
     }
 
-    private final class LatencyRecordIterator implements Iterator<Sample> {
-        private int chunkIndex = 0;
-        private int subIndex = 0;
-        private long lastIteratorNanosecond = startNanosecond;
+    /**
+     * The spilled samples followed by those still in memory
+     */
+    private static final class SpilledCursor implements Cursor {
+        private final RawSampleReader spilled;
+        private final Cursor memory;
+        private Cursor head;
+
+        SpilledCursor(RawSampleReader spilled, Cursor memory) {
+            this.spilled = spilled;
+            this.memory = memory;
+            this.head = spilled;
+        }
 
         @Override
-        public boolean hasNext() {
-            if (chunkIndex < values.size() - 1) {
-                return true;
+        public boolean next() {
+            if (head == spilled) {
+                if (spilled.next()) {
+                    return true;
+                }
+                try {
+                    spilled.close();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                head = memory;
             }
-            return subIndex < nextIndex;
+            return memory.next();
         }
 
         @Override
-        public Sample next() {
-            Sample[] chunk = values.get(chunkIndex);
-            Sample s = chunk[subIndex];
+        public int getTransactionType() {
+            return head.getTransactionType();
+        }
 
-            // Iterate in chunk, and wrap to next one
-            ++subIndex;
+        @Override
+        public long getStartNanosecond() {
+            return head.getStartNanosecond();
+        }
 
-            if (subIndex == ALLOC_SIZE) {
-                chunkIndex += 1;
-                subIndex = 0;
+        @Override
+        public int getLatencyMicrosecond() {
+            return head.getLatencyMicrosecond();
+        }
+
+        @Override
+        public int getQueueDelayMicrosecond() {
+            return head.getQueueDelayMicrosecond();
+        }
+
+        @Override
+        public int getCommitMicrosecond() {
+            return head.getCommitMicrosecond();
+        }
+
+        @Override
+        public int getRollbackMicrosecond() {
+            return head.getRollbackMicrosecond();
+        }
+
+        @Override
+        public int getBackoffMicrosecond() {
+            return head.getBackoffMicrosecond();
+        }
+
+        @Override
+        public TransactionStatus getStatus() {
+            return head.getStatus();
+        }
+
+        @Override
+        public int getWorkerId() {
+            return head.getWorkerId();
+        }
+
+        @Override
+        public int getPhaseId() {
+            return head.getPhaseId();
+        }
+    }
+
+    /**
+     * K-way merge of per-record cursors. The heap holds each cursor that still
+     * has samples, keyed on the start time of the sample it is positioned at.
+     */
+    private static final class MergedCursor implements Cursor {
+        private final PriorityQueue<Cursor> heap;
+        private Cursor head;
+
+        MergedCursor(Collection<LatencyRecord> records) {
+            this.heap = new PriorityQueue<>(Math.max(1, records.size()), (a, b) -> Long.compare(a.getStartNanosecond(), b.getStartNanosecond()));
+            for (LatencyRecord record : records) {
+                Cursor cursor = record.cursor();
+                if (cursor.next()) {
+                    heap.add(cursor);
+                }
             }
+        }
 
-            // Previously, s.startNs was just an offset from the previous
-            // value.  Now we make it an absolute.
-            s.startNanosecond += lastIteratorNanosecond;
-            lastIteratorNanosecond = s.startNanosecond;
+        @Override
+        public boolean next() {
+            if (head != null && head.next()) {
+                heap.add(head);
+            }
+            head = heap.poll();
+            return head != null;
+        }
 
-            return s;
+        @Override
+        public int getTransactionType() {
+            return head.getTransactionType();
+        }
+
+        @Override
+        public long getStartNanosecond() {
+            return head.getStartNanosecond();
         }
 
         @Override
-        public void remove() {
-            throw new UnsupportedOperationException("remove is not supported");
+        public int getLatencyMicrosecond() {
+            return head.getLatencyMicrosecond();
+        }
+
+        @Override
+        public int getQueueDelayMicrosecond() {
+            return head.getQueueDelayMicrosecond();
+        }
+
+        @Override
+        public int getCommitMicrosecond() {
+            return head.getCommitMicrosecond();
+        }
+
+        @Override
+        public int getRollbackMicrosecond() {
+            return head.getRollbackMicrosecond();
+        }
+
+        @Override
+        public int getBackoffMicrosecond() {
+            return head.getBackoffMicrosecond();
+        }
+
+        @Override
+        public TransactionStatus getStatus() {
+            return head.getStatus();
+        }
+
+        @Override
+        public int getWorkerId() {
+            return head.getWorkerId();
+        }
+
+        @Override
+        public int getPhaseId() {
+            return head.getPhaseId();
         }
     }
 
-    public Iterator<Sample> iterator() {
-        return new LatencyRecordIterator();
+    /**
+     * Skips the samples of every other phase
+     */
+    private static final class PhaseCursor implements Cursor {
+        private final Cursor samples;
+        private final int phaseId;
+
+        PhaseCursor(Cursor samples, int phaseId) {
+            this.samples = samples;
+            this.phaseId = phaseId;
+        }
+
+        @Override
+        public boolean next() {
+            while (samples.next()) {
+                if (samples.getPhaseId() == phaseId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int getTransactionType() {
+            return samples.getTransactionType();
+        }
+
+        @Override
+        public long getStartNanosecond() {
+            return samples.getStartNanosecond();
+        }
+
+        @Override
+        public int getLatencyMicrosecond() {
+            return samples.getLatencyMicrosecond();
+        }
+
+        @Override
+        public int getQueueDelayMicrosecond() {
+            return samples.getQueueDelayMicrosecond();
+        }
+
+        @Override
+        public int getCommitMicrosecond() {
+            return samples.getCommitMicrosecond();
+        }
+
+        @Override
+        public int getRollbackMicrosecond() {
+            return samples.getRollbackMicrosecond();
+        }
+
+        @Override
+        public int getBackoffMicrosecond() {
+            return samples.getBackoffMicrosecond();
+        }
+
+        @Override
+        public TransactionStatus getStatus() {
+            return samples.getStatus();
+        }
+
+        @Override
+        public int getWorkerId() {
+            return samples.getWorkerId();
+        }
+
+        @Override
+        public int getPhaseId() {
+            return samples.getPhaseId();
+        }
     }
 }
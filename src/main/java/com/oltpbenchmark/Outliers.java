@@ -0,0 +1,190 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark;
+
+import com.oltpbenchmark.api.TransactionType;
+import com.oltpbenchmark.types.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The slowest measured transactions, with the statements they executed and
+ * their parameters, so that tail latencies can be traced back to their
+ * inputs. A min-heap keeps the {@code capacity} slowest seen so far; a
+ * transaction that is faster than all of them is rejected by
+ * {@link #admits(long)} before it is described.
+ * <p>
+ * Not thread-safe, every Worker keeps its own and they are merged with
+ * {@link #add(Outliers)}.
+ */
+public final class Outliers {
+
+    public static final class Outlier {
+        private final TransactionType transactionType;
+        private final long startNanosecond;
+        private final long latencyMicroseconds;
+        private final long responseTimeMicroseconds;
+        private final int attempts;
+        private final TransactionStatus status;
+        private final int workerId;
+        private final int phaseId;
+        private final List<String> statements;
+
+        /**
+         * @param statements the statements the transaction executed, with
+         *                   their parameters
+         */
+        public Outlier(TransactionType transactionType, long startNanosecond, long latencyMicroseconds, long responseTimeMicroseconds,
+                       int attempts, TransactionStatus status, int workerId, int phaseId, List<String> statements) {
+            this.transactionType = transactionType;
+            this.startNanosecond = startNanosecond;
+            this.latencyMicroseconds = latencyMicroseconds;
+            this.responseTimeMicroseconds = responseTimeMicroseconds;
+            this.attempts = attempts;
+            this.status = status;
+            this.workerId = workerId;
+            this.phaseId = phaseId;
+            this.statements = statements;
+        }
+
+        public TransactionType getTransactionType() {
+            return transactionType;
+        }
+
+        /**
+         * @return the start time, as returned by System.nanoTime()
+         */
+        public long getStartNanosecond() {
+            return startNanosecond;
+        }
+
+        public long getLatencyMicroseconds() {
+            return latencyMicroseconds;
+        }
+
+        public long getResponseTimeMicroseconds() {
+            return responseTimeMicroseconds;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public TransactionStatus getStatus() {
+            return status;
+        }
+
+        public int getWorkerId() {
+            return workerId;
+        }
+
+        public int getPhaseId() {
+            return phaseId;
+        }
+
+        public List<String> getStatements() {
+            return statements;
+        }
+
+        /**
+         * @param epochOffsetNanoseconds added to the start time to get nanoseconds since the epoch
+         */
+        public Map<String, Object> toMap(long epochOffsetNanoseconds) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("Transaction Name", transactionType.getName());
+            m.put("Start Time (seconds)", (startNanosecond + epochOffsetNanoseconds) / 1e9);
+            m.put("Latency (microseconds)", latencyMicroseconds);
+            m.put("Response Time (microseconds)", responseTimeMicroseconds);
+            m.put("Attempts", attempts);
+            m.put("Status", status.name());
+            m.put("Worker Id", workerId);
+            m.put("Phase Id", phaseId);
+            m.put("Statements", statements);
+            return m;
+        }
+    }
+
+    private static final Comparator<Outlier> BY_LATENCY = Comparator.comparingLong(Outlier::getLatencyMicroseconds);
+
+    private final int capacity;
+    private final PriorityQueue<Outlier> heap;
+
+    /**
+     * @param capacity how many of the slowest transactions to keep
+     */
+    public Outliers(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid number of outliers: " + capacity);
+        }
+        this.capacity = capacity;
+        this.heap = new PriorityQueue<>(capacity + 1, BY_LATENCY);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return whether a transaction with this latency would be kept
+     */
+    public boolean admits(long latencyMicroseconds) {
+        return heap.size() < capacity || latencyMicroseconds > heap.peek().getLatencyMicroseconds();
+    }
+
+    public void add(Outlier outlier) {
+        if (!admits(outlier.getLatencyMicroseconds())) {
+            return;
+        }
+        heap.add(outlier);
+        if (heap.size() > capacity) {
+            heap.poll();
+        }
+    }
+
+    /**
+     * Keeps the slowest of both
+     */
+    public void add(Outliers other) {
+        for (Outlier outlier : other.heap) {
+            add(outlier);
+        }
+    }
+
+    /**
+     * @return the kept transactions, the slowest first
+     */
+    public List<Outlier> getSlowestFirst() {
+        List<Outlier> outliers = new ArrayList<>(heap);
+        outliers.sort(BY_LATENCY.reversed());
+        return outliers;
+    }
+
+    public boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    public void clear() {
+        heap.clear();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Schedules the arrivals of rate-limited phases.
+ * <p>
+ * Arrivals are anchored to absolute deadlines: every deadline is the previous
+ * one plus an inter-arrival time, never "now" plus an inter-arrival time, so
+ * wake-up jitter does not accumulate into drift. When the pacer falls behind,
+ * {@link #advance} releases every arrival whose deadline has passed at once
+ * (a token bucket that is refilled by the clock).
+ * <p>
+ * Waiting parks the thread until shortly before the deadline and spins for
+ * the rest. The length of the spin tail is calibrated against how late
+ * parkNanos actually returns on this machine, which keeps the release error
+ * in the microseconds even at 100k+ arrivals per second.
+ * <p>
+ * Not thread-safe, a pacer belongs to the thread that drives the queues.
+ */
+public final class Pacer {
+
+    static final long MIN_SPIN_NANOSECONDS = 10_000;
+    static final long MAX_SPIN_NANOSECONDS = 2_000_000;
+
+    private static final int CALIBRATION_ROUNDS = 20;
+    private static final long CALIBRATION_PARK_NANOSECONDS = 100_000;
+
+    private final SplittableRandom random;
+    private long spinNanoseconds = MIN_SPIN_NANOSECONDS;
+    private long deadline;
+    private long lateness;
+
+    public Pacer() {
+        this(new SplittableRandom());
+    }
+
+    public Pacer(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private Pacer(SplittableRandom random) {
+        this.random = random;
+        calibrate();
+    }
+
+    /**
+     * Measures how late parkNanos returns, to size the initial spin tail
+     */
+    private void calibrate() {
+        for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+            long before = System.nanoTime();
+            LockSupport.parkNanos(this, CALIBRATION_PARK_NANOSECONDS);
+            observeOvershoot(System.nanoTime() - before - CALIBRATION_PARK_NANOSECONDS);
+        }
+    }
+
+    /**
+     * Moves the spin tail towards twice the observed park overshoot
+     */
+    private void observeOvershoot(long overshoot) {
+        long target = Math.max(MIN_SPIN_NANOSECONDS, Math.min(MAX_SPIN_NANOSECONDS, 2 * overshoot));
+        spinNanoseconds += (target - spinNanoseconds) / 8;
+    }
+
+    /**
+     * Schedules the first arrival one inter-arrival time after {@code now}
+     */
+    public void start(long now, double rate, Phase.Arrival arrival) {
+        deadline = now + nextInterval(rate, arrival);
+    }
+
+    /**
+     * @return the time until the next arrival, in nanoseconds
+     */
+    public long nextInterval(double rate, Phase.Arrival arrival) {
+        if (arrival == Phase.Arrival.POISSON) {
+            return (long) ((-Math.log(1 - random.nextDouble()) / rate) * 1000000000.);
+        } else {
+            return (long) (1000000000. / rate + 0.5);
+        }
+    }
+
+    /**
+     * Blocks until the current deadline has passed
+     *
+     * @return the time it returned at, as returned by System.nanoTime()
+     */
+    public long awaitDeadline() {
+        long now = System.nanoTime();
+        long remaining = deadline - now;
+        while (remaining > 0) {
+            if (remaining > spinNanoseconds) {
+                long park = remaining - spinNanoseconds;
+                LockSupport.parkNanos(this, park);
+                if (Thread.interrupted()) {
+                    throw new RuntimeException(new InterruptedException("Interrupted while pacing arrivals"));
+                }
+                long woke = System.nanoTime();
+                observeOvershoot(woke - now - park);
+                now = woke;
+            } else {
+                Thread.onSpinWait();
+                now = System.nanoTime();
+            }
+            remaining = deadline - now;
+        }
+        lateness = -remaining;
+        return now;
+    }
+
+    /**
+     * Releases the arrivals that are due at {@code now} and schedules the next
+     * deadline after them
+     *
+     * @return the number of arrivals released, at least one
+     */
+    public int advance(long now, double rate, Phase.Arrival arrival) {
+        int due = 0;
+        do {
+            deadline += nextInterval(rate, arrival);
+            due++;
+        } while (deadline <= now);
+        return due;
+    }
+
+    /**
+     * @return the deadline of the next arrival
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return how late the last {@link #awaitDeadline()} returned, in nanoseconds
+     */
+    public long getLateness() {
+        return lateness;
+    }
+
+    /**
+     * @return how long before a deadline the pacer stops parking and spins
+     */
+    public long getSpinNanoseconds() {
+        return spinNanoseconds;
+    }
+}
@@ -17,23 +17,25 @@
 
 package com.oltpbenchmark;
 
+import com.oltpbenchmark.util.AliasTable;
 import com.oltpbenchmark.util.StringUtil;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Phase {
     public enum Arrival {
         REGULAR, POISSON,
     }
 
-    private final Random gen = new Random();
     private final String benchmarkName;
     private final int id;
     private final int time;
     private final int warmupTime;
     private final int rate;
+    private final RateProfile rateProfile;
     private final Arrival arrival;
 
 
@@ -44,24 +46,35 @@ public class Phase {
     private final List<Double> weights;
     private final int weightCount;
     private final int activeTerminals;
-    private int nextSerial;
+    // Built once, transactions are then chosen in constant time. Null if no
+    // weight is positive.
+    private final AliasTable transactionMix;
+    private final AtomicInteger nextSerial = new AtomicInteger(1);
 
 
     Phase(String benchmarkName, int id, int t, int wt, int r, List<Double> weights, boolean rateLimited, boolean disabled, boolean serial, boolean timed, int activeTerminals, Arrival a) {
+        this(benchmarkName, id, t, wt, r, null, weights, rateLimited, disabled, serial, timed, activeTerminals, a);
+    }
+
+    /**
+     * @param profile makes the rate vary over the phase, null for a constant rate of {@code r}
+     */
+    Phase(String benchmarkName, int id, int t, int wt, int r, RateProfile profile, List<Double> weights, boolean rateLimited, boolean disabled, boolean serial, boolean timed, int activeTerminals, Arrival a) {
         this.benchmarkName = benchmarkName;
         this.id = id;
         this.time = t;
         this.warmupTime = wt;
         this.rate = r;
+        this.rateProfile = profile;
         this.weights = weights;
         this.weightCount = this.weights.size();
         this.rateLimited = rateLimited;
         this.disabled = disabled;
         this.serial = serial;
         this.timed = timed;
-        this.nextSerial = 1;
         this.activeTerminals = activeTerminals;
         this.arrival = a;
+        this.transactionMix = !disabled && !serial && totalWeight() > 0 ? new AliasTable(weights) : null;
     }
 
 
@@ -91,7 +104,7 @@ public class Phase {
     }
 
     public void resetSerial() {
-        this.nextSerial = 1;
+        this.nextSerial.set(1);
     }
 
     public int getActiveTerminals() {
@@ -102,6 +115,10 @@ public class Phase {
         return (this.weightCount);
     }
 
+    public String getBenchmarkName() {
+        return benchmarkName;
+    }
+
     public int getId() {
         return id;
     }
@@ -118,6 +135,21 @@ public class Phase {
         return rate;
     }
 
+    /**
+     * @param offset seconds since the phase started
+     * @return the target rate at that time, which only varies if the phase has a rate profile
+     */
+    public double getRate(double offset) {
+        return rateProfile != null ? rateProfile.getRate(offset) : rate;
+    }
+
+    /**
+     * @return the profile the rate follows, or null if it is constant
+     */
+    public RateProfile getRateProfile() {
+        return rateProfile;
+    }
+
     public Arrival getArrival() {
         return arrival;
     }
@@ -155,18 +187,21 @@ public class Phase {
         }
 
         if (isSerial()) {
-            int ret;
-            synchronized (this) {
-                ret = this.nextSerial;
+            // Claim the next query with a CAS instead of the monitor, retrying
+            // if another terminal claimed it first
+            while (true) {
+                int current = this.nextSerial.get();
+                int ret = current;
 
                 // Serial runs should not execute queries with non-positive
                 // weights.
                 while (ret <= this.weightCount && weights.get(ret - 1) <= 0.0) {
-                    ret = ++this.nextSerial;
+                    ++ret;
                 }
 
                 // If it's a cold execution, then we don't want to advance yet,
                 // since the hot run needs to execute the same query.
+                int next = ret;
                 if (!isColdQuery) {
 
                     // throughput) run, so we loop through the list multiple
@@ -174,22 +209,17 @@ public class Phase {
                     // so that we end up in the range [1,num_weights]
                     if (isTimed()) {
 
-                        this.nextSerial %= this.weightCount;
+                        next %= this.weightCount;
                     }
 
-                    ++this.nextSerial;
+                    ++next;
                 }
-            }
-            return ret;
-        } else {
-            int randomPercentage = gen.nextInt((int) totalWeight()) + 1;
-            double weight = 0.0;
-            for (int i = 0; i < this.weightCount; i++) {
-                weight += weights.get(i);
-                if (randomPercentage <= weight) {
-                    return i + 1;
+                if (this.nextSerial.compareAndSet(current, next)) {
+                    return ret;
                 }
             }
+        } else if (transactionMix != null) {
+            return transactionMix.sample(ThreadLocalRandom.current()) + 1;
         }
 
         return -1;
@@ -212,7 +242,7 @@ public class Phase {
                 inner.add("[Time=" + time + "]");
             }
             inner.add("[WarmupTime=" + warmupTime + "]");
-            inner.add("[Rate=" + (isRateLimited() ? rate : "unlimited") + "]");
+            inner.add("[Rate=" + (isRateLimited() ? (rateProfile != null ? rateProfile : rate) : "unlimited") + "]");
             inner.add("[Arrival=" + arrival + "]");
             inner.add("[Ratios=" + getWeights() + "]");
             inner.add("[ActiveWorkers=" + getActiveTerminals() + "]");
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A target rate that changes over the course of a phase.
+ * <p>
+ * Offsets are in seconds since the phase started; for the first phase that
+ * includes its warmup. Ramps and traces interpolate linearly between their
+ * points, steps hold every rate until the next point. Before the first point
+ * and after the last one the rate of the nearest point applies. Rates are
+ * never lower than {@link #MIN_RATE}, so the pacer keeps waking up.
+ */
+public final class RateProfile {
+
+    static final double MIN_RATE = 1;
+
+    public enum Shape {
+        RAMP, STEP, SINE, TRACE
+    }
+
+    private final Shape shape;
+    private final double[] offsets;
+    private final double[] rates;
+    private final double base;
+    private final double amplitude;
+    private final double period;
+
+    private RateProfile(Shape shape, double[] offsets, double[] rates, double base, double amplitude, double period) {
+        this.shape = shape;
+        this.offsets = offsets;
+        this.rates = rates;
+        this.base = base;
+        this.amplitude = amplitude;
+        this.period = period;
+    }
+
+    private static RateProfile points(Shape shape, double[] offsets, double[] rates) {
+        if (offsets.length == 0 || offsets.length != rates.length) {
+            throw new IllegalArgumentException(String.format("A %s rate profile needs at least one (offset, rate) point", shape.name().toLowerCase()));
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            if (rates[i] < 0 || (i > 0 && offsets[i] < offsets[i - 1])) {
+                throw new IllegalArgumentException(String.format("Invalid point %d of a %s rate profile: offsets must not decrease and rates must not be negative", i + 1, shape.name().toLowerCase()));
+            }
+        }
+        return new RateProfile(shape, offsets.clone(), rates.clone(), 0, 0, 0);
+    }
+
+    /**
+     * A linear ramp from {@code from} to {@code to} over {@code duration} seconds
+     */
+    public static RateProfile ramp(double from, double to, double duration) {
+        return points(Shape.RAMP, new double[]{0, duration}, new double[]{from, to});
+    }
+
+    /**
+     * Holds {@code rates[i]} from {@code offsets[i]} until the next offset
+     */
+    public static RateProfile steps(double[] offsets, double[] rates) {
+        return points(Shape.STEP, offsets, rates);
+    }
+
+    /**
+     * {@code base + amplitude * sin(2 pi t / period)}
+     */
+    public static RateProfile sine(double base, double amplitude, double period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("The period of a sine rate profile must be positive: " + period);
+        }
+        return new RateProfile(Shape.SINE, null, null, base, amplitude, period);
+    }
+
+    /**
+     * Interpolates linearly between recorded (offset, rate) points
+     */
+    public static RateProfile trace(double[] offsets, double[] rates) {
+        return points(Shape.TRACE, offsets, rates);
+    }
+
+    /**
+     * Reads a trace from a CSV file with an offset in seconds and a rate per
+     * line. Blank lines, lines starting with # and a header line are skipped.
+     */
+    public static RateProfile loadTrace(Path file) throws IOException {
+        List<double[]> points = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            String line;
+            int number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s*,\\s*");
+                try {
+                    if (fields.length < 2) {
+                        throw new NumberFormatException("expected offset,rate");
+                    }
+                    points.add(new double[]{Double.parseDouble(fields[0]), Double.parseDouble(fields[1])});
+                } catch (NumberFormatException e) {
+                    if (number == 1) {
+                        // header
+                        continue;
+                    }
+                    throw new IOException(String.format("Invalid line %d of rate trace %s: %s", number, file, line), e);
+                }
+            }
+        }
+        double[] offsets = new double[points.size()];
+        double[] rates = new double[points.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = points.get(i)[0];
+            rates[i] = points.get(i)[1];
+        }
+        return trace(offsets, rates);
+    }
+
+    /**
+     * @param offset seconds since the phase started
+     * @return the target rate at that time, in requests per second
+     */
+    public double getRate(double offset) {
+        double rate;
+        if (shape == Shape.SINE) {
+            rate = base + amplitude * Math.sin(2 * Math.PI * offset / period);
+        } else if (offset <= offsets[0]) {
+            rate = rates[0];
+        } else if (offset >= offsets[offsets.length - 1]) {
+            rate = rates[rates.length - 1];
+        } else {
+            // the last point at or before the offset
+            int i = 0;
+            while (offsets[i + 1] <= offset) {
+                i++;
+            }
+            if (shape == Shape.STEP) {
+                rate = rates[i];
+            } else {
+                double fraction = (offset - offsets[i]) / (offsets[i + 1] - offsets[i]);
+                rate = rates[i] + fraction * (rates[i + 1] - rates[i]);
+            }
+        }
+        return Math.max(MIN_RATE, rate);
+    }
+
+    public Shape getShape() {
+        return shape;
+    }
+
+    /**
+     * @return the offsets of the points, null for a sine
+     */
+    public double[] getOffsets() {
+        return offsets == null ? null : offsets.clone();
+    }
+
+    /**
+     * @return the rates of the points, null for a sine
+     */
+    public double[] getRates() {
+        return rates == null ? null : rates.clone();
+    }
+
+    /**
+     * @return a short description without commas, so it fits into a CSV column
+     */
+    @Override
+    public String toString() {
+        return switch (shape) {
+            case RAMP -> String.format("ramp %s to %s over %ss", format(rates[0]), format(rates[1]), format(offsets[1]));
+            case STEP -> String.format("step %d points", rates.length);
+            case SINE -> String.format("sine %s +- %s every %ss", format(base), format(amplitude), format(period));
+            case TRACE -> String.format("trace %d points", rates.length);
+        };
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+}
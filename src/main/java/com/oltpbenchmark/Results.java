@@ -18,20 +18,24 @@
 
 package com.oltpbenchmark;
 
-import com.oltpbenchmark.LatencyRecord.Sample;
 import com.oltpbenchmark.api.TransactionType;
+import com.oltpbenchmark.jdbc.StatementStatistics;
 import com.oltpbenchmark.util.Histogram;
+import com.oltpbenchmark.util.LatencyHistogram;
+import com.oltpbenchmark.util.RateTimeline;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public final class Results {
 
+    private final List<Phase> phases;
     private final long nanoseconds;
     private final int measuredRequests;
     private final DistributionStatistics distributionStatistics;
-    private final List<LatencyRecord.Sample> latencySamples;
+    private final List<LatencyRecord> latencyRecords;
     private final Histogram<TransactionType> unknown = new Histogram<>(false);
     private final Histogram<TransactionType> success = new Histogram<>(true);
     private final Histogram<TransactionType> abort = new Histogram<>(false);
@@ -39,17 +43,44 @@ public final class Results {
     private final Histogram<TransactionType> error = new Histogram<>(false);
     private final Histogram<TransactionType> retryDifferent = new Histogram<>(false);
     private final Map<TransactionType, Histogram<String>> abortMessages = new HashMap<>();
+    private final Map<TransactionType, LatencyHistogram> latencyHistograms = new HashMap<>();
+    private final Map<TransactionType, LatencyHistogram> responseTimeHistograms = new HashMap<>();
+    private final Map<TransactionType, LatencyHistogram> queueDelayHistograms = new HashMap<>();
+    private final Map<TransactionType, LatencyHistogram> backoffHistograms = new HashMap<>();
+    private final Histogram<TransactionType> attempts = new Histogram<>(false);
+    private final StatementStatistics statementStatistics = new StatementStatistics();
+    private final Map<TransactionType, LatencyBreakdown> latencyBreakdowns = new HashMap<>();
+    private final List<Results> phaseResults = new ArrayList<>();
+    private final LatencyHistogram pacingError = new LatencyHistogram();
+    private final LatencyHistogram connectTimes = new LatencyHistogram();
+    private final LatencyHistogram disconnectTimes = new LatencyHistogram();
+    private final LatencyHistogram setupTimes = new LatencyHistogram();
+    private final RateTimeline intendedRates = new RateTimeline();
+    private long warmupNanoseconds = -1;
+    private WarmupDetector warmupDetector = null;
+    private Outliers outliers = null;
 
-    public Results(long nanoseconds, int measuredRequests, DistributionStatistics distributionStatistics, final List<LatencyRecord.Sample> latencySamples) {
+    public Results(long nanoseconds, int measuredRequests, DistributionStatistics distributionStatistics, final List<LatencyRecord> latencyRecords) {
+        this(List.of(), nanoseconds, measuredRequests, distributionStatistics, latencyRecords);
+    }
+
+    /**
+     * Results of a single phase
+     *
+     * @param phases         the phase of each workload that ran during it, all with the same id
+     * @param latencyRecords the records of the whole run, samples of other phases are skipped
+     */
+    public Results(List<Phase> phases, long nanoseconds, int measuredRequests, DistributionStatistics distributionStatistics, final List<LatencyRecord> latencyRecords) {
+        this.phases = List.copyOf(phases);
         this.nanoseconds = nanoseconds;
         this.measuredRequests = measuredRequests;
         this.distributionStatistics = distributionStatistics;
 
-        if (distributionStatistics == null) {
-            this.latencySamples = null;
+        if (distributionStatistics == null || latencyRecords == null) {
+            this.latencyRecords = null;
         } else {
             // defensive copy
-            this.latencySamples = List.copyOf(latencySamples);
+            this.latencyRecords = List.copyOf(latencyRecords);
 
         }
     }
@@ -86,6 +117,164 @@ public final class Results {
         return abortMessages;
     }
 
+    /**
+     * Latency histograms of the measured requests, by transaction type
+     */
+    public Map<TransactionType, LatencyHistogram> getLatencyHistograms() {
+        return latencyHistograms;
+    }
+
+    /**
+     * Response time (queue delay plus service time) histograms of the measured
+     * requests, by transaction type
+     */
+    public Map<TransactionType, LatencyHistogram> getResponseTimeHistograms() {
+        return responseTimeHistograms;
+    }
+
+    /**
+     * Queue delay histograms of the measured requests, by transaction type
+     */
+    public Map<TransactionType, LatencyHistogram> getQueueDelayHistograms() {
+        return queueDelayHistograms;
+    }
+
+    /**
+     * Time spent backing off between the attempts of the measured requests
+     * that were retried, by transaction type
+     */
+    public Map<TransactionType, LatencyHistogram> getBackoffHistograms() {
+        return backoffHistograms;
+    }
+
+    /**
+     * Attempts made by the measured requests, by transaction type
+     */
+    public Histogram<TransactionType> getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Where the response time of the measured requests went, by transaction type
+     */
+    public Map<TransactionType, LatencyBreakdown> getLatencyBreakdowns() {
+        return latencyBreakdowns;
+    }
+
+    /**
+     * The latency breakdown over all transaction types
+     */
+    public LatencyBreakdown getLatencyBreakdown() {
+        LatencyBreakdown total = new LatencyBreakdown();
+        for (LatencyBreakdown b : latencyBreakdowns.values()) {
+            total.add(b);
+        }
+        return total;
+    }
+
+    /**
+     * Execution and fetch times of every statement of the measured requests,
+     * empty unless statements were instrumented
+     */
+    public StatementStatistics getStatementStatistics() {
+        return statementStatistics;
+    }
+
+    /**
+     * Response time statistics over all transaction types. In rate-limited
+     * phases this is corrected for coordinated omission.
+     */
+    public DistributionStatistics getResponseTimeStatistics() {
+        return DistributionStatistics.computeStatistics(merge(responseTimeHistograms));
+    }
+
+    /**
+     * Queue delay statistics over all transaction types
+     */
+    public DistributionStatistics getQueueDelayStatistics() {
+        return DistributionStatistics.computeStatistics(merge(queueDelayHistograms));
+    }
+
+    /**
+     * How late (in nanoseconds) the arrivals of rate-limited phases were
+     * released during measurement, relative to their schedule
+     */
+    public LatencyHistogram getPacingError() {
+        return pacingError;
+    }
+
+    /**
+     * How long (in microseconds) workers took to connect for measured
+     * transactions, when they connect for every transaction
+     */
+    public LatencyHistogram getConnectTimes() {
+        return connectTimes;
+    }
+
+    /**
+     * How long (in microseconds) workers took to close their connection after
+     * measured transactions, when they connect for every transaction
+     */
+    public LatencyHistogram getDisconnectTimes() {
+        return disconnectTimes;
+    }
+
+    /**
+     * How long (in microseconds) each worker took to connect before the run
+     */
+    public LatencyHistogram getSetupTimes() {
+        return setupTimes;
+    }
+
+    /**
+     * The total rate the rate-limited phases asked for over time, on the
+     * System.nanoTime() scale of the latency samples
+     */
+    public RateTimeline getIntendedRates() {
+        return intendedRates;
+    }
+
+    /**
+     * @return how long the run warmed up before measurements started, -1 if unknown
+     */
+    public long getWarmupNanoseconds() {
+        return warmupNanoseconds;
+    }
+
+    public void setWarmupNanoseconds(long warmupNanoseconds) {
+        this.warmupNanoseconds = warmupNanoseconds;
+    }
+
+    /**
+     * @return the slowest measured transactions of all workers, null unless outliers were kept
+     */
+    public Outliers getOutliers() {
+        return outliers;
+    }
+
+    public void setOutliers(Outliers outliers) {
+        this.outliers = outliers;
+    }
+
+    /**
+     * @return the detector that decided when the warmup ended, null if the warmup time was fixed
+     */
+    public WarmupDetector getWarmupDetector() {
+        return warmupDetector;
+    }
+
+    public void setWarmupDetector(WarmupDetector warmupDetector) {
+        this.warmupDetector = warmupDetector;
+    }
+
+    private static LatencyHistogram merge(Map<TransactionType, LatencyHistogram> histograms) {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (LatencyHistogram histogram : histograms.values()) {
+            merged.add(histogram);
+        }
+        return merged;
+    }
+
     public double requestsPerSecondThroughput() {
         return (double) measuredRequests / (double) nanoseconds * 1e9;
     }
@@ -94,8 +283,52 @@ public final class Results {
         return (double) success.getSampleCount() / (double) nanoseconds * 1e9;
     }
 
-    public List<Sample> getLatencySamples() {
-        return latencySamples;
+    /**
+     * @return false if the run only kept latency histograms
+     */
+    public boolean hasLatencySamples() {
+        return latencyRecords != null;
+    }
+
+    /**
+     * Returns a new cursor over the measured samples of all workers, in start
+     * time order. Every call starts again from the first sample.
+     */
+    public LatencyRecord.Cursor getLatencySamples() {
+        LatencyRecord.Cursor samples = LatencyRecord.merge(latencyRecords);
+        return isPhase() ? LatencyRecord.forPhase(samples, getPhaseId()) : samples;
+    }
+
+    public List<LatencyRecord> getLatencyRecords() {
+        return latencyRecords;
+    }
+
+    /**
+     * @return true if these are the results of a single phase
+     */
+    public boolean isPhase() {
+        return !phases.isEmpty();
+    }
+
+    /**
+     * @return the id of the phase, only meaningful if {@link #isPhase()}
+     */
+    public int getPhaseId() {
+        return isPhase() ? phases.get(0).getId() : -1;
+    }
+
+    /**
+     * @return the configuration of the phase in each workload, empty for the whole run
+     */
+    public List<Phase> getPhases() {
+        return phases;
+    }
+
+    /**
+     * @return the results of each phase, in phase order
+     */
+    public List<Results> getPhaseResults() {
+        return phaseResults;
     }
 
     public long getNanoseconds() {
@@ -109,7 +342,13 @@ public final class Results {
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        sb.append("Results(nanoSeconds=");
+        sb.append("Results(");
+        if (isPhase()) {
+            sb.append("phase=");
+            sb.append(getPhaseId());
+            sb.append(", ");
+        }
+        sb.append("nanoSeconds=");
         sb.append(nanoseconds);
         sb.append(", measuredRequests=");
         sb.append(measuredRequests);
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark;
+
+import com.oltpbenchmark.types.TransactionStatus;
+import com.oltpbenchmark.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Searches the highest rate a workload sustains within a service level
+ * objective, instead of running a fixed list of phases.
+ * <p>
+ * Every step is a rate-limited phase derived from the configured one. The
+ * rate doubles from the start rate until a step misses the objective, then
+ * the range between the last passing and the first failing rate is bisected
+ * until it is narrower than the requested precision. The highest passing rate
+ * is the knee of the load-latency curve.
+ * <p>
+ * Steps are judged on the live per-interval statistics the monitor drains
+ * while they run, skipping the warmup at the start of each step. A step
+ * passes if its 99th percentile response time and its error rate are within
+ * the objective and it completed at least {@link #MIN_THROUGHPUT_RATIO} of its
+ * target rate.
+ * <p>
+ * WorkloadState takes the next phase from this iterator when a step ends,
+ * the monitor thread reports intervals concurrently.
+ */
+public final class SaturationSearch implements Iterator<Phase> {
+    private static final Logger LOG = LoggerFactory.getLogger(SaturationSearch.class);
+
+    /**
+     * Share of its target rate a step must complete to pass
+     */
+    static final double MIN_THROUGHPUT_RATIO = 0.95;
+
+    /**
+     * Upper bound on the number of steps, in case the precision is very fine
+     */
+    static final int MAX_STEPS = 50;
+
+    private static final double GROWTH = 2.0;
+
+    private enum Stage {
+        RAMP, BISECT, DONE
+    }
+
+    private final Phase template;
+    private final List<Phase> phases;
+    private final double maxResponseTimeMillis;
+    private final double maxErrorRate;
+    private final int maxRate;
+    private final int stepTime;
+    private final int stepWarmup;
+    private final double precision;
+
+    private final List<Step> steps = new ArrayList<>();
+    private Stage stage = Stage.RAMP;
+    private int rate;
+    private int passingRate = 0;
+    private int failingRate = 0;
+    private Step current = null;
+
+    /**
+     * @param template              the configured phase, steps copy its weights, terminals and arrival
+     * @param phases                every step's phase is added to this list when it starts
+     * @param maxResponseTimeMillis objective for the 99th percentile response time
+     * @param maxErrorRate          objective for the share of requests that fail
+     * @param startRate             rate of the first step
+     * @param maxRate               the search does not go beyond this rate
+     * @param stepTime              measured seconds of every step
+     * @param stepWarmup            seconds at the start of every step that are not judged
+     * @param precision             the search ends once the failing rate is within this fraction of the passing rate
+     */
+    public SaturationSearch(Phase template, List<Phase> phases, double maxResponseTimeMillis, double maxErrorRate, int startRate, int maxRate, int stepTime, int stepWarmup, double precision) {
+        if (startRate < 1 || maxRate < startRate) {
+            throw new IllegalArgumentException(String.format("Invalid saturation search rates: start %d, maximum %d", startRate, maxRate));
+        }
+        if (stepTime < 1 || stepWarmup < 0) {
+            throw new IllegalArgumentException(String.format("Invalid saturation search step: time %d, warmup %d", stepTime, stepWarmup));
+        }
+        this.template = template;
+        this.phases = phases;
+        this.maxResponseTimeMillis = maxResponseTimeMillis;
+        this.maxErrorRate = maxErrorRate;
+        this.maxRate = maxRate;
+        this.stepTime = stepTime;
+        this.stepWarmup = stepWarmup;
+        this.precision = precision;
+        this.rate = startRate;
+    }
+
+    /**
+     * Judges the step that just ended and decides whether another one follows
+     */
+    @Override
+    public synchronized boolean hasNext() {
+        if (current != null && !current.judged) {
+            judge(current);
+        }
+        return stage != Stage.DONE;
+    }
+
+    /**
+     * @return the phase of the next step
+     */
+    @Override
+    public synchronized Phase next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int id = template.getId() + steps.size();
+        // Only the first step needs the warmup of the configured phase, the
+        // database is warm afterwards
+        int warmup = steps.isEmpty() ? template.getWarmupTime() : 0;
+        Phase phase = new Phase(template.getBenchmarkName(), id, stepWarmup + stepTime, warmup, rate, template.getWeights(),
+                true, false, false, true, template.getActiveTerminals(), template.getArrival());
+        phases.add(phase);
+        current = new Step(id, rate, System.nanoTime() + stepWarmup * 1000000000L);
+        steps.add(current);
+        LOG.info("Saturation search {} step {}: {} requests/second", stage.name().toLowerCase(), steps.size(), rate);
+        return phase;
+    }
+
+    /**
+     * Adds an interval of live statistics to the running step, unless it
+     * started before the step's warmup was over. Called by the monitor.
+     *
+     * @param start    when the interval started, as returned by System.nanoTime()
+     * @param end      when the interval ended
+     * @param interval what was measured in it
+     */
+    public synchronized void recordInterval(long start, long end, IntervalRecorder.Interval interval) {
+        if (current == null || current.judged || start < current.measureStart) {
+            return;
+        }
+        current.nanoseconds += end - start;
+        current.responseTimes.add(interval.getResponseTimes());
+        for (int id = 1; id < interval.getTransactionTypeCount(); id++) {
+            current.successes += interval.getCount(id, TransactionStatus.SUCCESS);
+            current.aborts += interval.getCount(id, TransactionStatus.USER_ABORTED);
+            current.errors += interval.getCount(id, TransactionStatus.ERROR);
+        }
+    }
+
+    private void judge(Step step) {
+        step.judged = true;
+        step.passed = step.nanoseconds > 0
+                && step.getResponseTime(0.99) <= maxResponseTimeMillis
+                && step.getErrorRate() <= maxErrorRate
+                && step.getThroughput() >= MIN_THROUGHPUT_RATIO * step.rate;
+        if (step.nanoseconds == 0) {
+            LOG.warn("Saturation search step {} ran no full monitoring interval after its warmup, counting it as failed", steps.size());
+        }
+        LOG.info("Saturation search step {}: {} requests/second {}: {} completed/second, p99 response time {} ms, error rate {}",
+                steps.size(), step.rate, step.passed ? "passed" : "failed",
+                String.format("%.1f", step.getThroughput()), String.format("%.3f", step.getResponseTime(0.99)), String.format("%.4f", step.getErrorRate()));
+
+        if (step.passed) {
+            passingRate = Math.max(passingRate, step.rate);
+        } else {
+            failingRate = failingRate == 0 ? step.rate : Math.min(failingRate, step.rate);
+            stage = Stage.BISECT;
+        }
+
+        if (stage == Stage.RAMP) {
+            if (step.rate >= maxRate) {
+                stage = Stage.DONE;
+            } else {
+                rate = (int) Math.min(maxRate, Math.ceil(step.rate * GROWTH));
+            }
+        } else if (failingRate - passingRate <= Math.max(1, passingRate * precision)) {
+            stage = Stage.DONE;
+        } else {
+            rate = passingRate + (failingRate - passingRate) / 2;
+            if (rate < 1 || rate == passingRate) {
+                stage = Stage.DONE;
+            }
+        }
+
+        if (stage != Stage.DONE && steps.size() >= MAX_STEPS) {
+            LOG.warn("Saturation search stopped after {} steps", MAX_STEPS);
+            stage = Stage.DONE;
+        }
+        if (stage == Stage.DONE) {
+            LOG.info("Saturation search done: knee at {} requests/second", passingRate);
+        }
+    }
+
+    /**
+     * @return the highest rate that met the objective, 0 if none did
+     */
+    public synchronized int getKnee() {
+        return passingRate;
+    }
+
+    /**
+     * @return every step so far, in the order they ran
+     */
+    public synchronized List<Step> getSteps() {
+        return new ArrayList<>(steps);
+    }
+
+    /**
+     * @return the objective, the knee and the load-latency curve, ordered by rate
+     */
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> slo = new LinkedHashMap<>();
+        slo.put("99th Percentile Response Time (millisecond)", maxResponseTimeMillis);
+        slo.put("Error Rate", maxErrorRate);
+        slo.put("Minimum Throughput Ratio", MIN_THROUGHPUT_RATIO);
+
+        List<Map<String, Object>> curve = new ArrayList<>();
+        steps.stream().filter(s -> s.judged).sorted((a, b) -> Integer.compare(a.rate, b.rate)).forEach(s -> curve.add(s.toMap()));
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("Service Level Objective", slo);
+        m.put("Knee (requests/second)", passingRate);
+        m.put("Steps", curve);
+        return m;
+    }
+
+    /**
+     * What was measured during one step of the search
+     */
+    public static final class Step {
+        private final int phaseId;
+        private final int rate;
+        private final long measureStart;
+        private final LatencyHistogram responseTimes = new LatencyHistogram();
+        private long nanoseconds = 0;
+        private long successes = 0;
+        private long aborts = 0;
+        private long errors = 0;
+        private boolean judged = false;
+        private boolean passed = false;
+
+        private Step(int phaseId, int rate, long measureStart) {
+            this.phaseId = phaseId;
+            this.rate = rate;
+            this.measureStart = measureStart;
+        }
+
+        public int getPhaseId() {
+            return phaseId;
+        }
+
+        public int getRate() {
+            return rate;
+        }
+
+        /**
+         * @return completed requests (committed, aborted or failed) per second
+         */
+        public double getThroughput() {
+            return nanoseconds == 0 ? 0 : (successes + aborts + errors) / (nanoseconds / 1e9);
+        }
+
+        /**
+         * @return the response time at the given percentile (0.99 for p99), in milliseconds
+         */
+        public double getResponseTime(double percentile) {
+            return responseTimes.isEmpty() ? 0 : responseTimes.getValueAtPercentile(percentile) / 1000d;
+        }
+
+        /**
+         * @return the share of completed requests that failed
+         */
+        public double getErrorRate() {
+            long completed = successes + aborts + errors;
+            return completed == 0 ? 0 : errors / (double) completed;
+        }
+
+        public boolean isPassed() {
+            return passed;
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("Phase", phaseId);
+            m.put("Rate (requests/second)", rate);
+            m.put("Throughput (requests/second)", getThroughput());
+            m.put("Median Response Time (millisecond)", getResponseTime(0.5));
+            m.put("95th Percentile Response Time (millisecond)", getResponseTime(0.95));
+            m.put("99th Percentile Response Time (millisecond)", getResponseTime(0.99));
+            m.put("Maximum Response Time (millisecond)", getResponseTime(1.0));
+            m.put("Error Rate", getErrorRate());
+            m.put("Passed", passed);
+            return m;
+        }
+    }
+}
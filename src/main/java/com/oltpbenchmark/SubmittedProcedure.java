@@ -28,8 +28,15 @@ public class SubmittedProcedure {
     private final long startTime;
 
     SubmittedProcedure(int type) {
+        this(type, System.nanoTime());
+    }
+
+    /**
+     * @param startTime when the procedure arrived, as returned by System.nanoTime()
+     */
+    SubmittedProcedure(int type, long startTime) {
         this.type = type;
-        this.startTime = System.nanoTime();
+        this.startTime = startTime;
     }
 
     public int getType() {
@@ -17,40 +17,80 @@
 
 package com.oltpbenchmark;
 
-import com.oltpbenchmark.LatencyRecord.Sample;
 import com.oltpbenchmark.api.BenchmarkModule;
+import com.oltpbenchmark.api.PhaseMeasurements;
 import com.oltpbenchmark.api.TransactionType;
 import com.oltpbenchmark.api.Worker;
+import com.oltpbenchmark.jdbc.StatementStatistics;
+import com.oltpbenchmark.types.ArrivalScheduling;
 import com.oltpbenchmark.types.State;
+import com.oltpbenchmark.types.TransactionStatus;
+import com.oltpbenchmark.util.Histogram;
+import com.oltpbenchmark.util.LatencyHistogram;
+import com.oltpbenchmark.util.MetricsServer;
+import com.oltpbenchmark.util.MetricsSnapshot;
+import com.oltpbenchmark.util.RateTimeline;
 import com.oltpbenchmark.util.StringUtil;
+import com.oltpbenchmark.util.ThreadUtil;
 import org.apache.commons.collections4.map.ListOrderedMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.*;
 
 public class ThreadBench implements Thread.UncaughtExceptionHandler {
     private static final Logger LOG = LoggerFactory.getLogger(ThreadBench.class);
 
+    /**
+     * How often live metrics are refreshed when no monitoring interval was given
+     */
+    private static final int DEFAULT_METRICS_INTERVAL = 1000;
+    /**
+     * Wake-ups per second of the main loop when workers generate their own arrivals
+     */
+    private static final int WORKER_ARRIVALS_CONTROL_RATE = 1000;
+    /**
+     * How often the intended rate is sampled while rate profiles change it
+     */
+    private static final long INTENDED_RATE_RESOLUTION_NANOSECONDS = 100_000_000L;
+
     private final BenchmarkState testState;
     private final List<? extends Worker<? extends BenchmarkModule>> workers;
     private final ArrayList<Thread> workerThreads;
     private final List<WorkloadConfiguration> workConfs;
-    private final ArrayList<LatencyRecord.Sample> samples = new ArrayList<>();
     private final int intervalMonitor;
+    private final String intervalMonitorFile;
+    private final MetricsServer metricsServer;
 
     private ThreadBench(List<? extends Worker<? extends BenchmarkModule>> workers,
-            List<WorkloadConfiguration> workConfs, int intervalMonitoring) {
+            List<WorkloadConfiguration> workConfs, int intervalMonitoring, String intervalMonitorFile, MetricsServer metricsServer) {
         this.workers = workers;
         this.workConfs = workConfs;
         this.workerThreads = new ArrayList<>(workers.size());
         this.intervalMonitor = intervalMonitoring;
+        this.intervalMonitorFile = intervalMonitorFile;
+        this.metricsServer = metricsServer;
         this.testState = new BenchmarkState(workers.size() + 1);
     }
 
     public static Results runRateLimitedBenchmark(List<Worker<? extends BenchmarkModule>> workers,
             List<WorkloadConfiguration> workConfs, int intervalMonitoring) {
-        ThreadBench bench = new ThreadBench(workers, workConfs, intervalMonitoring);
+        return runRateLimitedBenchmark(workers, workConfs, intervalMonitoring, null, null);
+    }
+
+    /**
+     * @param intervalMonitorFile if not null, the monitor also appends its
+     *                            per-interval statistics to this CSV file
+     * @param metricsServer       if not null, the monitor publishes live metrics
+     *                            to it, every intervalMonitoring milliseconds or
+     *                            every second if interval monitoring is off
+     */
+    public static Results runRateLimitedBenchmark(List<Worker<? extends BenchmarkModule>> workers,
+            List<WorkloadConfiguration> workConfs, int intervalMonitoring, String intervalMonitorFile, MetricsServer metricsServer) {
+        ThreadBench bench = new ThreadBench(workers, workConfs, intervalMonitoring, intervalMonitorFile, metricsServer);
         return bench.runRateLimitedMultiPhase();
     }
 
@@ -58,7 +98,7 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
 
         for (Worker<?> worker : workers) {
             worker.initializeState();
-            Thread thread = new Thread(worker);
+            Thread thread = ThreadUtil.newWorkerThread(worker.getWorkloadConfiguration().getWorkerExecutor(), worker);
             thread.setUncaughtExceptionHandler(this);
             thread.start();
             this.workerThreads.add(thread);
@@ -101,6 +141,73 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
         return requests;
     }
 
+    /**
+     * @return the rate the main loop wakes up at
+     */
+    private static double controlRate(double lowestRate, boolean workerArrivals) {
+        return workerArrivals ? Math.min(lowestRate, WORKER_ARRIVALS_CONTROL_RATE) : lowestRate;
+    }
+
+    /**
+     * Evaluates the rate of the current phase of every workload
+     *
+     * @param now   the current time, as returned by System.nanoTime()
+     * @param rates filled with the rate of each workload
+     * @return the lowest rate, the main loop paces arrivals at it
+     */
+    private static double currentRates(List<WorkloadState> workStates, long now, double[] rates) {
+        double lowestRate = Double.MAX_VALUE;
+        for (int i = 0; i < workStates.size(); i++) {
+            WorkloadState workState = workStates.get(i);
+            Phase current = workState.getCurrentPhase();
+            rates[i] = current != null ? current.getRate(workState.getPhaseSeconds(now)) : 0;
+            if (current != null && rates[i] < lowestRate) {
+                lowestRate = rates[i];
+            }
+        }
+        return lowestRate == Double.MAX_VALUE ? 1 : lowestRate;
+    }
+
+    /**
+     * @return the sum of the rates of the workloads that are rate limited right now
+     */
+    private static double intendedRate(List<WorkloadState> workStates, double[] rates) {
+        double sum = 0;
+        for (int i = 0; i < workStates.size(); i++) {
+            Phase current = workStates.get(i).getCurrentPhase();
+            if (current != null && current.isRateLimited() && !current.isDisabled()) {
+                sum += rates[i];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return the adaptive warmup of the first workload that has one, null if
+     * the warmup time is fixed. The run has a single warmup, see
+     * {@link #warnAboutIgnoredWarmupDetectors()}.
+     */
+    private WarmupDetector warmupDetector() {
+        for (WorkloadConfiguration workConf : workConfs) {
+            if (workConf.getWarmupDetector() != null) {
+                return workConf.getWarmupDetector();
+            }
+        }
+        return null;
+    }
+
+    private void warnAboutIgnoredWarmupDetectors() {
+        List<String> benchmarks = new ArrayList<>();
+        for (WorkloadConfiguration workConf : workConfs) {
+            if (workConf.getWarmupDetector() != null) {
+                benchmarks.add(workConf.getBenchmarkName());
+            }
+        }
+        if (benchmarks.size() > 1) {
+            LOG.warn("Only the adaptive warmup of {} is used, the ones of {} are ignored", benchmarks.get(0), benchmarks.subList(1, benchmarks.size()));
+        }
+    }
+
     private Results runRateLimitedMultiPhase() {
         List<WorkloadState> workStates = new ArrayList<>();
 
@@ -117,20 +224,28 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
         long warmupStart = System.nanoTime();
         long warmup = warmupStart;
         long measureEnd = -1;
-        // used to determine the longest sleep interval
-        int lowestRate = Integer.MAX_VALUE;
-
+        long warmupNanoseconds = -1;
+        // measured time of each phase, by phase id
+        Map<Integer, Long> phaseNanoseconds = new TreeMap<>();
+        long phaseStart = start;
         Phase phase = null;
 
         for (WorkloadState workState : workStates) {
             workState.switchToNextPhase();
             phase = workState.getCurrentPhase();
             LOG.info(phase.currentPhaseString());
-            if (phase.getRate() < lowestRate) {
-                lowestRate = phase.getRate();
-            }
         }
 
+        // The current rate of every workload, they may follow rate profiles.
+        // Arrivals are paced at the lowest of them, which also determines the
+        // longest sleep interval.
+        double[] rates = new double[workStates.size()];
+        double lowestRate = currentRates(workStates, start, rates);
+        // The rate the workloads asked for over time, next to what they achieved
+        RateTimeline intendedRates = new RateTimeline();
+        long intendedRatesRecorded = start;
+        intendedRates.record(start, intendedRate(workStates, rates));
+
         // Change testState to cold query if execution is serial, since we don't
         // have a warm-up phase for serial execution but execute a cold and a
         // measured query in sequence.
@@ -140,11 +255,19 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
             }
         }
 
-        long intervalNs = getInterval(lowestRate, phase.getArrival());
+        // When the workers generate their own arrivals, this loop only has to
+        // notice the end of phases and warmup
+        boolean workerArrivals = workConfs.stream().allMatch(c -> c.getArrivalScheduling() == ArrivalScheduling.WORKER);
 
-        long nextInterval = start + intervalNs;
+        Pacer pacer = new Pacer();
+        pacer.start(start, controlRate(lowestRate, workerArrivals), phase.getArrival());
         int nextToAdd = 1;
-        int rateFactor;
+        // Arrivals are paced at the lowest rate, workloads with a higher rate
+        // get proportionally more per arrival. Fractions are carried over so
+        // rates that are not a multiple of the lowest rate are kept exactly.
+        double[] arrivalCredits = new double[workStates.size()];
+        // How late arrivals were released during measurement, in nanoseconds
+        LatencyHistogram pacingError = new LatencyHistogram();
 
         boolean resetQueues = true;
 
@@ -152,8 +275,14 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
         boolean lastEntry = false;
 
         // Initialize the Monitor
-        if (this.intervalMonitor > 0) {
-            new MonitorThread(this.intervalMonitor).start();
+        MonitorThread monitor = null;
+        boolean searching = workConfs.stream().anyMatch(c -> c.getSaturationSearch() != null);
+        // The monitor reports the warmup intervals to the detector
+        WarmupDetector warmupDetector = warmupDetector();
+        warnAboutIgnoredWarmupDetectors();
+        if (this.intervalMonitor > 0 || this.metricsServer != null || searching || warmupDetector != null) {
+            monitor = new MonitorThread(this.intervalMonitor > 0 ? this.intervalMonitor : DEFAULT_METRICS_INTERVAL, this.intervalMonitor > 0, this.intervalMonitorFile);
+            monitor.start();
         }
 
         // Allow workers to start work.
@@ -164,32 +293,25 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
             // posting new work... and resetting the queue in case we have new
             // portion of the workload...
 
-            for (WorkloadState workState : workStates) {
-                if (workState.getCurrentPhase() != null) {
-                    rateFactor = workState.getCurrentPhase().getRate() / lowestRate;
-                } else {
-                    rateFactor = 1;
-                }
-                workState.addToQueue(nextToAdd * rateFactor, resetQueues);
+            for (int i = 0; i < workStates.size(); i++) {
+                WorkloadState workState = workStates.get(i);
+                Phase current = workState.getCurrentPhase();
+                double rateFactor = current != null ? rates[i] / lowestRate : 1;
+                arrivalCredits[i] += nextToAdd * rateFactor;
+                int amount = (int) arrivalCredits[i];
+                arrivalCredits[i] -= amount;
+                workState.addToQueue(amount, resetQueues);
             }
             resetQueues = false;
 
-            // Wait until the interval expires, which may be "don't wait"
-            long now = System.nanoTime();
             if (phase != null) {
                 warmup = warmupStart + phase.getWarmupTime() * 1000000000L;
             }
-            long diff = nextInterval - now;
-            while (diff > 0) { // this can wake early: sleep multiple times to avoid that
-                long ms = diff / 1000000;
-                diff = diff % 1000000;
-                try {
-                    Thread.sleep(ms, (int) diff);
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
-                now = System.nanoTime();
-                diff = nextInterval - now;
+
+            // Wait until the next arrival is due, which may be "don't wait"
+            long now = pacer.awaitDeadline();
+            if (!workerArrivals && phase != null && phase.isRateLimited() && testState.getState() == State.MEASURE) {
+                pacingError.add(pacer.getLateness());
             }
 
             boolean phaseComplete = false;
@@ -213,6 +335,11 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
                 // queue of the previous one
                 resetQueues = true;
 
+                if (phaseComplete) {
+                    phaseNanoseconds.merge(phase.getId(), now - phaseStart, Long::sum);
+                }
+                phaseStart = now;
+
                 // Fetch a new Phase
                 synchronized (testState) {
                     if (phase.isLatencyRun()) {
@@ -221,7 +348,6 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
                     for (WorkloadState workState : workStates) {
                         synchronized (workState) {
                             workState.switchToNextPhase();
-                            lowestRate = Integer.MAX_VALUE;
                             phase = workState.getCurrentPhase();
                             interruptWorkers();
                             if (phase == null && !lastEntry) {
@@ -229,6 +355,7 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
                                 lastEntry = true;
                                 testState.startCoolDown();
                                 measureEnd = now;
+                                intendedRates.record(now, 0);
                                 LOG.info("{} :: Waiting for all terminals to finish ..", StringUtil.bold("TERMINATE"));
                             } else if (phase != null) {
                                 // Reset serial execution parameters.
@@ -237,9 +364,6 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
                                     testState.startColdQuery();
                                 }
                                 LOG.info(phase.currentPhaseString());
-                                if (phase.getRate() < lowestRate) {
-                                    lowestRate = phase.getRate();
-                                }
                             }
                         }
                     }
@@ -257,18 +381,30 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
             // Compute the next interval
             // and how many messages to deliver
             if (phase != null) {
-                intervalNs = 0;
-                nextToAdd = 0;
-                do {
-                    intervalNs += getInterval(lowestRate, phase.getArrival());
-                    nextToAdd++;
-                } while ((-diff) > intervalNs && !lastEntry);
-                nextInterval += intervalNs;
+                lowestRate = currentRates(workStates, now, rates);
+                nextToAdd = pacer.advance(now, controlRate(lowestRate, workerArrivals), phase.getArrival());
+                if (resetQueues || now - intendedRatesRecorded >= INTENDED_RATE_RESOLUTION_NANOSECONDS) {
+                    intendedRates.record(now, intendedRate(workStates, rates));
+                    intendedRatesRecorded = now;
+                }
             }
 
             // Update the test state appropriately
             State state = testState.getState();
-            if (state == State.WARMUP && now >= warmup) {
+            boolean warm = now >= warmup;
+            if (state == State.WARMUP && warm && warmupDetector != null) {
+                // Past the warmup time of the phase, keep going until steady
+                boolean steady = warmupDetector.isSteady();
+                warm = steady || now - warmupStart >= warmupDetector.getMaxNanoseconds();
+                if (warm) {
+                    warmupDetector.finish(now - warmupStart, steady);
+                    if (!steady) {
+                        LOG.warn("Throughput and latency did not stabilize within {} seconds of warmup", warmupDetector.getMaxNanoseconds() / 1000000000L);
+                    }
+                }
+            }
+            if (state == State.WARMUP && warm) {
+                warmupNanoseconds = now - warmupStart;
                 synchronized (testState) {
                     if (phase != null && phase.isLatencyRun()) {
                         testState.startColdQuery();
@@ -278,7 +414,8 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
                     interruptWorkers();
                 }
                 start = now;
-                LOG.info("{} :: Warmup complete, starting measurements.", StringUtil.bold("MEASURE"));
+                phaseStart = now;
+                LOG.info("{} :: Warmup complete after {} seconds, starting measurements.", StringUtil.bold("MEASURE"), String.format("%.1f", warmupNanoseconds / 1e9));
                 // measureEnd = measureStart + measureSeconds * 1000000000L;
 
                 // For serial executions, we want to do every query exactly
@@ -295,26 +432,80 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
             }
         }
 
+        if (monitor != null) {
+            monitor.interrupt();
+        }
+
         try {
             int requests = finalizeWorkers(this.workerThreads);
 
-            // Combine all the latencies together in the most disgusting way
-            // possible: sorting!
+            // Merge the per-worker histograms, the samples themselves (if
+            // retained) are merged on the fly by whoever reads them
+            LatencyHistogram histogram = new LatencyHistogram();
+            Map<TransactionType, LatencyHistogram> txnHistograms = new HashMap<>();
+            Map<TransactionType, LatencyHistogram> responseTimeHistograms = new HashMap<>();
+            Map<TransactionType, LatencyHistogram> queueDelayHistograms = new HashMap<>();
+            Map<TransactionType, LatencyHistogram> backoffHistograms = new HashMap<>();
+            Histogram<TransactionType> attempts = new Histogram<>(false);
+            StatementStatistics statementStatistics = new StatementStatistics();
+            Map<TransactionType, LatencyBreakdown> latencyBreakdowns = new HashMap<>();
+            int outlierCount = workConfs.stream().mapToInt(WorkloadConfiguration::getOutlierCount).max().orElse(0);
+            Outliers outliers = outlierCount > 0 ? new Outliers(outlierCount) : null;
+            LatencyHistogram connectTimes = new LatencyHistogram();
+            LatencyHistogram disconnectTimes = new LatencyHistogram();
+            LatencyHistogram setupTimes = new LatencyHistogram();
+            List<LatencyRecord> records = new ArrayList<>(workers.size());
             for (Worker<?> w : workers) {
-                for (LatencyRecord.Sample sample : w.getLatencyRecords()) {
-                    samples.add(sample);
+                mergeHistograms(txnHistograms, w.getLatencyHistograms());
+                mergeHistograms(responseTimeHistograms, w.getResponseTimeHistograms());
+                mergeHistograms(queueDelayHistograms, w.getQueueDelayHistograms());
+                mergeHistograms(backoffHistograms, w.getBackoffHistograms());
+                attempts.putHistogram(w.getAttemptsHistogram());
+                if (outliers != null && w.getOutliers() != null) {
+                    outliers.add(w.getOutliers());
+                }
+                for (Map.Entry<TransactionType, LatencyBreakdown> e : w.getLatencyBreakdowns().entrySet()) {
+                    latencyBreakdowns.computeIfAbsent(e.getKey(), t -> new LatencyBreakdown()).add(e.getValue());
+                }
+                if (w.getStatementStatistics() != null) {
+                    statementStatistics.add(w.getStatementStatistics());
                 }
+                connectTimes.add(w.getConnectHistogram());
+                disconnectTimes.add(w.getDisconnectHistogram());
+                if (w.getSetupMicroseconds() >= 0) {
+                    setupTimes.add(w.getSetupMicroseconds());
+                }
+                records.add(w.getLatencyRecords());
+            }
+            for (LatencyHistogram h : txnHistograms.values()) {
+                histogram.add(h);
             }
-            Collections.sort(samples);
 
             // Compute stats on all the latencies
-            int[] latencies = new int[samples.size()];
-            for (int i = 0; i < samples.size(); ++i) {
-                latencies[i] = samples.get(i).getLatencyMicrosecond();
+            DistributionStatistics stats = DistributionStatistics.computeStatistics(histogram);
+
+            boolean retainSamples = workConfs.stream().allMatch(WorkloadConfiguration::getRetainLatencySamples);
+            Results results = new Results(measureEnd - start, requests, stats, retainSamples ? records : null);
+            results.getLatencyHistograms().putAll(txnHistograms);
+            results.getResponseTimeHistograms().putAll(responseTimeHistograms);
+            results.getQueueDelayHistograms().putAll(queueDelayHistograms);
+            results.getBackoffHistograms().putAll(backoffHistograms);
+            results.getAttempts().putHistogram(attempts);
+            results.getStatementStatistics().add(statementStatistics);
+            results.getLatencyBreakdowns().putAll(latencyBreakdowns);
+            results.setOutliers(outliers);
+            results.getPacingError().add(pacingError);
+            results.getConnectTimes().add(connectTimes);
+            results.getDisconnectTimes().add(disconnectTimes);
+            results.getSetupTimes().add(setupTimes);
+            results.getIntendedRates().add(intendedRates);
+            results.setWarmupNanoseconds(warmupNanoseconds);
+            results.setWarmupDetector(warmupDetector);
+            if (!pacingError.isEmpty()) {
+                LOG.info("Arrival pacing error: median {} us, 99th percentile {} us, max {} us (spin tail {} us)",
+                        pacingError.getValueAtPercentile(0.5) / 1000, pacingError.getValueAtPercentile(0.99) / 1000,
+                        pacingError.getMaximum() / 1000, pacer.getSpinNanoseconds() / 1000);
             }
-            DistributionStatistics stats = DistributionStatistics.computeStatistics(latencies);
-
-            Results results = new Results(measureEnd - start, requests, stats, samples);
 
             // Compute transaction histogram
             Set<TransactionType> txnTypes = new HashSet<>();
@@ -339,18 +530,77 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
                 results.getRetryDifferent().putHistogram(w.getTransactionRetryDifferentHistogram());
             }
 
+            for (Map.Entry<Integer, Long> e : phaseNanoseconds.entrySet()) {
+                Results phaseResults = createPhaseResults(e.getKey(), e.getValue(), txnTypes, retainSamples ? records : null);
+                phaseResults.getIntendedRates().add(intendedRates);
+                results.getPhaseResults().add(phaseResults);
+            }
+
             return (results);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private long getInterval(int lowestRate, Phase.Arrival arrival) {
-        // TODO Auto-generated method stub
-        if (arrival == Phase.Arrival.POISSON) {
-            return (long) ((-Math.log(1 - Math.random()) / lowestRate) * 1000000000.);
-        } else {
-            return (long) (1000000000. / (double) lowestRate + 0.5);
+    /**
+     * Merges what every worker measured while the given phase was current
+     */
+    private Results createPhaseResults(int phaseId, long nanoseconds, Set<TransactionType> txnTypes, List<LatencyRecord> records) {
+        List<Phase> phases = new ArrayList<>();
+        for (WorkloadConfiguration workConf : workConfs) {
+            for (Phase phase : workConf.getPhases()) {
+                if (phase.getId() == phaseId) {
+                    phases.add(phase);
+                }
+            }
+        }
+
+        int requests = 0;
+        Map<TransactionType, LatencyHistogram> txnHistograms = new HashMap<>();
+        Map<TransactionType, LatencyHistogram> responseTimeHistograms = new HashMap<>();
+        Map<TransactionType, LatencyHistogram> queueDelayHistograms = new HashMap<>();
+        List<PhaseMeasurements> measurements = new ArrayList<>();
+        for (Worker<?> w : workers) {
+            PhaseMeasurements m = w.getPhaseMeasurements().get(phaseId);
+            if (m != null) {
+                requests += m.getRequests();
+                mergeHistograms(txnHistograms, m.getLatencyHistograms());
+                mergeHistograms(responseTimeHistograms, m.getResponseTimeHistograms());
+                mergeHistograms(queueDelayHistograms, m.getQueueDelayHistograms());
+                measurements.add(m);
+            }
+        }
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (LatencyHistogram h : txnHistograms.values()) {
+            histogram.add(h);
+        }
+
+        Results results = new Results(phases, nanoseconds, requests, DistributionStatistics.computeStatistics(histogram), records);
+        results.getLatencyHistograms().putAll(txnHistograms);
+        results.getResponseTimeHistograms().putAll(responseTimeHistograms);
+        results.getQueueDelayHistograms().putAll(queueDelayHistograms);
+
+        results.getUnknown().putAll(txnTypes, 0);
+        results.getSuccess().putAll(txnTypes, 0);
+        results.getRetry().putAll(txnTypes, 0);
+        results.getAbort().putAll(txnTypes, 0);
+        results.getError().putAll(txnTypes, 0);
+        results.getRetryDifferent().putAll(txnTypes, 0);
+
+        for (PhaseMeasurements m : measurements) {
+            results.getUnknown().putHistogram(m.getUnknown());
+            results.getSuccess().putHistogram(m.getSuccess());
+            results.getRetry().putHistogram(m.getRetry());
+            results.getAbort().putHistogram(m.getAbort());
+            results.getError().putHistogram(m.getError());
+            results.getRetryDifferent().putHistogram(m.getRetryDifferent());
+        }
+        return results;
+    }
+
+    private static void mergeHistograms(Map<TransactionType, LatencyHistogram> into, Map<TransactionType, LatencyHistogram> from) {
+        for (Map.Entry<TransactionType, LatencyHistogram> e : from.entrySet()) {
+            into.computeIfAbsent(e.getKey(), t -> new LatencyHistogram()).add(e.getValue());
         }
     }
 
@@ -377,116 +627,6 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
         }
     }
 
-    public static final class TimeBucketIterable implements Iterable<DistributionStatistics> {
-        private final Iterable<Sample> samples;
-        private final int windowSizeSeconds;
-        private final TransactionType transactionType;
-
-        /**
-         * @param samples
-         * @param windowSizeSeconds
-         * @param transactionType   Allows to filter transactions by type
-         */
-        public TimeBucketIterable(Iterable<Sample> samples, int windowSizeSeconds, TransactionType transactionType) {
-            this.samples = samples;
-            this.windowSizeSeconds = windowSizeSeconds;
-            this.transactionType = transactionType;
-        }
-
-        @Override
-        public Iterator<DistributionStatistics> iterator() {
-            return new TimeBucketIterator(samples.iterator(), windowSizeSeconds, transactionType);
-        }
-    }
-
-    private static final class TimeBucketIterator implements Iterator<DistributionStatistics> {
-        private final Iterator<Sample> samples;
-        private final int windowSizeSeconds;
-        private final TransactionType txType;
-
-        private Sample sample;
-        private long nextStartNanosecond;
-
-        private DistributionStatistics next;
-
-        /**
-         * @param samples
-         * @param windowSizeSeconds
-         * @param txType            Allows to filter transactions by type
-         */
-        public TimeBucketIterator(Iterator<LatencyRecord.Sample> samples, int windowSizeSeconds,
-                TransactionType txType) {
-            this.samples = samples;
-            this.windowSizeSeconds = windowSizeSeconds;
-            this.txType = txType;
-
-            if (samples.hasNext()) {
-                sample = samples.next();
-                // TODO: To be totally correct, we would want this to be the
-                // timestamp of the start
-                // of the measurement interval. In most cases this won't matter.
-                nextStartNanosecond = sample.getStartNanosecond();
-                calculateNext();
-            }
-        }
-
-        private void calculateNext() {
-
-            // Collect all samples in the time window
-            ArrayList<Integer> latencies = new ArrayList<>();
-            long endNanoseconds = nextStartNanosecond + (windowSizeSeconds * 1000000000L);
-            while (sample != null && sample.getStartNanosecond() < endNanoseconds) {
-
-                // Check if a TX Type filter is set, in the default case,
-                // INVALID TXType means all should be reported, if a filter is
-                // set, only this specific transaction
-                if (txType.equals(TransactionType.INVALID) || txType.getId() == sample.getTransactionType()) {
-                    latencies.add(sample.getLatencyMicrosecond());
-                }
-
-                if (samples.hasNext()) {
-                    sample = samples.next();
-                } else {
-                    sample = null;
-                }
-            }
-
-            // Set up the next time window
-
-            nextStartNanosecond = endNanoseconds;
-
-            int[] l = new int[latencies.size()];
-            for (int i = 0; i < l.length; ++i) {
-                l[i] = latencies.get(i);
-            }
-
-            next = DistributionStatistics.computeStatistics(l);
-        }
-
-        @Override
-        public boolean hasNext() {
-            return next != null;
-        }
-
-        @Override
-        public DistributionStatistics next() {
-            if (next == null) {
-                throw new NoSuchElementException();
-            }
-            DistributionStatistics out = next;
-            next = null;
-            if (sample != null) {
-                calculateNext();
-            }
-            return out;
-        }
-
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException("unsupported");
-        }
-    }
-
     private class WatchDogThread extends Thread {
         {
             this.setDaemon(true);
@@ -514,40 +654,237 @@ public class ThreadBench implements Thread.UncaughtExceptionHandler {
 
     private class MonitorThread extends Thread {
         private final int intervalMonitor;
+        private final boolean logIntervals;
+        private final String csvFile;
+        private final IntervalRecorder.Interval interval = new IntervalRecorder.Interval();
+        private final IntervalRecorder.Interval cumulative = new IntervalRecorder.Interval();
+        private final IntervalRecorder.Interval warmup = new IntervalRecorder.Interval();
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final LatencyHistogram warmupTotal = new LatencyHistogram();
+        // Transaction types are numbered from 1 in every workload, the
+        // monitor shifts the ids of each workload past those of the previous
+        private final Map<WorkloadConfiguration, Integer> idOffsets = new IdentityHashMap<>();
+        private final int[] workerIdOffsets;
+        private final Map<Integer, String> transactionNames = new HashMap<>();
+        private final Map<Integer, String> transactionBenchmarks = new HashMap<>();
 
         {
             this.setDaemon(true);
         }
 
         /**
-         * @param interval How long to wait between polling in milliseconds
+         * @param interval     How long to wait between polling in milliseconds
+         * @param logIntervals Whether to log the statistics of every interval
+         * @param csvFile      Optional file the per-interval statistics are written to
          */
-        MonitorThread(int interval) {
+        MonitorThread(int interval, boolean logIntervals, String csvFile) {
             this.intervalMonitor = interval;
+            this.logIntervals = logIntervals;
+            this.csvFile = csvFile;
+            int offset = 0;
+            for (WorkloadConfiguration workConf : workConfs) {
+                idOffsets.put(workConf, offset);
+                int maxId = 0;
+                for (TransactionType type : workConf.getTransTypes()) {
+                    // Supplemental procedures are never measured, and their
+                    // ids are hash codes
+                    if (type.isSupplemental()) {
+                        continue;
+                    }
+                    transactionNames.put(offset + type.getId(), type.getName());
+                    transactionBenchmarks.put(offset + type.getId(), workConf.getBenchmarkName());
+                    maxId = Math.max(maxId, type.getId());
+                }
+                offset += maxId + 1;
+            }
+            workerIdOffsets = new int[workers.size()];
+            for (int i = 0; i < workers.size(); i++) {
+                workerIdOffsets[i] = idOffsets.getOrDefault(workers.get(i).getWorkloadConfiguration(), 0);
+            }
         }
 
         @Override
         public void run() {
             LOG.info("Starting MonitorThread Interval [{}ms]", this.intervalMonitor);
-            while (true) {
+            if (metricsServer != null) {
+                metricsServer.publish(snapshot(0));
+            }
+            PrintStream csv = null;
+            if (csvFile != null) {
                 try {
-                    Thread.sleep(this.intervalMonitor);
-                } catch (InterruptedException ex) {
-                    return;
+                    csv = new PrintStream(new FileOutputStream(csvFile), false);
+                    String[] header = {
+                            "Time (seconds)",
+                            "Transaction Name",
+                            "Requests",
+                            "Throughput (requests/second)",
+                            "Median Latency (millisecond)",
+                            "95th Percentile Latency (millisecond)",
+                            "99th Percentile Latency (millisecond)",
+                            "Maximum Latency (millisecond)",
+                            "Aborts (requests/second)",
+                            "Retries (attempts/second)",
+                            "Errors (requests/second)"
+                    };
+                    csv.println(StringUtil.join(",", header));
+                    csv.flush();
+                    LOG.info("Writing interval statistics to {}", csvFile);
+                } catch (IOException ex) {
+                    LOG.error("Unable to open interval monitor file {}", csvFile, ex);
                 }
+            }
 
-                // Compute the last throughput
-                long measuredRequests = 0;
-                synchronized (testState) {
-                    for (Worker<?> w : workers) {
-                        measuredRequests += w.getAndResetIntervalRequests();
+            long startNs = System.nanoTime();
+            long intervalStart = startNs;
+            try {
+                while (true) {
+                    try {
+                        Thread.sleep(this.intervalMonitor);
+                    } catch (InterruptedException ex) {
+                        return;
                     }
+
+                    // Compute the last throughput
+                    long measuredRequests = 0;
+                    synchronized (testState) {
+                        for (int i = 0; i < workers.size(); i++) {
+                            Worker<?> w = workers.get(i);
+                            measuredRequests += w.getAndResetIntervalRequests();
+                            w.getIntervalRecorder().drainInto(interval, workerIdOffsets[i]);
+                            w.getWarmupRecorder().drainInto(warmup, workerIdOffsets[i]);
+                        }
+                    }
+                    long intervalEnd = System.nanoTime();
+                    double seconds = this.intervalMonitor / 1000d;
+                    double elapsed = (intervalEnd - startNs) / 1e9;
+                    double tps = (double) measuredRequests / seconds;
+
+                    long aborts = 0;
+                    long retries = 0;
+                    long errors = 0;
+                    for (int id = 1; id < interval.getTransactionTypeCount(); id++) {
+                        LatencyHistogram h = interval.getHistogram(id);
+                        long typeAborts = interval.getCount(id, TransactionStatus.USER_ABORTED);
+                        long typeRetries = interval.getCount(id, TransactionStatus.RETRY);
+                        long typeErrors = interval.getCount(id, TransactionStatus.ERROR);
+                        total.add(h);
+                        aborts += typeAborts;
+                        retries += typeRetries;
+                        errors += typeErrors;
+
+                        String name = displayName(id);
+                        if (logIntervals && LOG.isDebugEnabled()) {
+                            LOG.debug("  {}: {} txn/sec, {}", name, h.getCount() / seconds, describe(h, typeAborts, typeRetries, typeErrors, seconds));
+                        }
+                        if (csv != null) {
+                            writeRow(csv, elapsed, name, h, typeAborts, typeRetries, typeErrors, seconds);
+                        }
+                    }
+                    if (logIntervals) {
+                        LOG.info("Throughput: {} txn/sec, {}", tps, describe(total, aborts, retries, errors, seconds));
+                    }
+                    if (csv != null) {
+                        writeRow(csv, elapsed, "ALL", total, aborts, retries, errors, seconds);
+                        csv.flush();
+                    }
+
+                    if (metricsServer != null) {
+                        cumulative.add(interval);
+                        metricsServer.publish(snapshot(tps));
+                    }
+
+                    // Workers only record warmup transactions if there is a
+                    // detector, and apart from the measured ones
+                    WarmupDetector warmupDetector = warmupDetector();
+                    if (warmupDetector != null && testState.getState() == com.oltpbenchmark.types.State.WARMUP) {
+                        for (int id = 1; id < warmup.getTransactionTypeCount(); id++) {
+                            warmupTotal.add(warmup.getHistogram(id));
+                        }
+                        double intervalSeconds = (intervalEnd - intervalStart) / 1e9;
+                        warmupDetector.recordInterval(warmupTotal.getCount() / intervalSeconds, millis(warmupTotal, 0.95));
+                    }
+
+                    // Saturation searches judge their steps on measured intervals only
+                    if (testState.getState() == com.oltpbenchmark.types.State.MEASURE) {
+                        for (WorkloadConfiguration workConf : workConfs) {
+                            if (workConf.getSaturationSearch() != null) {
+                                workConf.getSaturationSearch().recordInterval(intervalStart, intervalEnd, interval);
+                            }
+                        }
+                    }
+                    intervalStart = intervalEnd;
+
+                    interval.reset();
+                    warmup.reset();
+                    warmupTotal.reset();
+                    total.reset();
+                }
+            } finally {
+                if (csv != null) {
+                    csv.close();
                 }
-                double seconds = this.intervalMonitor / 1000d;
-                double tps = (double) measuredRequests / seconds;
-                LOG.info("Throughput: {} txn/sec", tps);
             }
         }
+
+        /**
+         * @return the name of the transaction type, qualified with its
+         * benchmark if the run has several workloads
+         */
+        private String displayName(int id) {
+            String name = transactionNames.getOrDefault(id, Integer.toString(id));
+            String benchmark = transactionBenchmarks.get(id);
+            return workConfs.size() > 1 && benchmark != null ? benchmark + "." + name : name;
+        }
+
+        private MetricsSnapshot snapshot(double tps) {
+            List<MetricsSnapshot.Workload> workloads = new ArrayList<>(workConfs.size());
+            for (WorkloadConfiguration workConf : workConfs) {
+                WorkloadState workState = workConf.getWorkloadState();
+                Phase phase = workState.getCurrentPhase();
+                if (phase != null) {
+                    int rate = (int) Math.round(phase.getRate(workState.getPhaseSeconds(System.nanoTime())));
+                    workloads.add(new MetricsSnapshot.Workload(workConf.getBenchmarkName(), phase.getId(), phase.isRateLimited(), rate, workState.getQueueDepth()));
+                }
+            }
+            List<MetricsSnapshot.Transaction> transactions = new ArrayList<>();
+            long[] outcomes = new long[TransactionStatus.values().length];
+            for (int id = 1; id < cumulative.getTransactionTypeCount(); id++) {
+                for (TransactionStatus status : TransactionStatus.values()) {
+                    outcomes[status.ordinal()] = cumulative.getCount(id, status);
+                }
+                String benchmark = transactionBenchmarks.get(id);
+                if (benchmark == null) {
+                    continue;
+                }
+                transactions.add(new MetricsSnapshot.Transaction(benchmark, transactionNames.get(id), outcomes, cumulative.getHistogram(id)));
+            }
+            return new MetricsSnapshot(System.currentTimeMillis(), testState.getState().name(), tps, workloads, transactions);
+        }
+
+        private String describe(LatencyHistogram h, long aborts, long retries, long errors, double seconds) {
+            return String.format("latency p50/p95/p99/max: %.3f/%.3f/%.3f/%.3f ms, aborts: %.1f/sec, retries: %.1f/sec, errors: %.1f/sec",
+                    millis(h, 0.5), millis(h, 0.95), millis(h, 0.99), millis(h, 1.0),
+                    aborts / seconds, retries / seconds, errors / seconds);
+        }
+
+        private void writeRow(PrintStream csv, double elapsed, String name, LatencyHistogram h, long aborts, long retries, long errors, double seconds) {
+            csv.printf("%.3f,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f\n",
+                    elapsed,
+                    name,
+                    h.getCount(),
+                    h.getCount() / seconds,
+                    millis(h, 0.5),
+                    millis(h, 0.95),
+                    millis(h, 0.99),
+                    millis(h, 1.0),
+                    aborts / seconds,
+                    retries / seconds,
+                    errors / seconds);
+        }
+
+        private double millis(LatencyHistogram h, double percentile) {
+            return h.isEmpty() ? 0 : h.getValueAtPercentile(percentile) / 1000d;
+        }
     }
 
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides when a run has warmed up, instead of trusting a fixed warmup time.
+ * <p>
+ * The monitor reports the throughput and the 95th percentile latency of every
+ * interval while the run is in the warmup state. The run is steady once the
+ * coefficient of variation (standard deviation over mean) of both, over the
+ * last {@code window} intervals, is at most the threshold. ThreadBench keeps
+ * warming up until then, but at least for the warmup time of the phase and at
+ * most for {@code maxTime} seconds.
+ */
+public final class WarmupDetector {
+
+    private final int window;
+    private final double threshold;
+    private final int maxTime;
+
+    private final Deque<Double> throughputs = new ArrayDeque<>();
+    private final Deque<Double> latencies = new ArrayDeque<>();
+    private long intervals = 0;
+    private long warmupNanoseconds = -1;
+    private boolean steady = false;
+
+    /**
+     * @param window    number of monitor intervals the variation is computed over
+     * @param threshold highest coefficient of variation that counts as steady
+     * @param maxTime   seconds after which measurements start even if the run is not steady
+     */
+    public WarmupDetector(int window, double threshold, int maxTime) {
+        if (window < 2 || threshold <= 0 || maxTime < 1) {
+            throw new IllegalArgumentException(String.format("Invalid adaptive warmup: window %d, threshold %f, maximum time %d", window, threshold, maxTime));
+        }
+        this.window = window;
+        this.threshold = threshold;
+        this.maxTime = maxTime;
+    }
+
+    /**
+     * Called by the monitor for every interval of the warmup
+     *
+     * @param throughput       requests per second completed in the interval
+     * @param p95LatencyMillis 95th percentile latency of the interval
+     */
+    public synchronized void recordInterval(double throughput, double p95LatencyMillis) {
+        throughputs.addLast(throughput);
+        latencies.addLast(p95LatencyMillis);
+        if (throughputs.size() > window) {
+            throughputs.removeFirst();
+            latencies.removeFirst();
+        }
+        intervals++;
+    }
+
+    /**
+     * @return true once throughput and latency have been stable for a full
+     * window, in which something completed
+     */
+    public synchronized boolean isSteady() {
+        if (throughputs.size() < window || throughputs.stream().noneMatch(t -> t > 0)) {
+            return false;
+        }
+        return coefficientOfVariation(throughputs) <= threshold && coefficientOfVariation(latencies) <= threshold;
+    }
+
+    /**
+     * @return the longest warmup in nanoseconds
+     */
+    public long getMaxNanoseconds() {
+        return maxTime * 1000000000L;
+    }
+
+    /**
+     * Called by ThreadBench when measurements start
+     *
+     * @param warmupNanoseconds how long the warmup took
+     * @param steady            false if it was cut off at the maximum time
+     */
+    public synchronized void finish(long warmupNanoseconds, boolean steady) {
+        this.warmupNanoseconds = warmupNanoseconds;
+        this.steady = steady;
+    }
+
+    /**
+     * @return how long the warmup took, -1 while it is running
+     */
+    public synchronized long getWarmupNanoseconds() {
+        return warmupNanoseconds;
+    }
+
+    /**
+     * @return the standard deviation of the values divided by their mean,
+     * infinite if the mean is 0 and the values are not all 0
+     */
+    static double coefficientOfVariation(Iterable<Double> values) {
+        double sum = 0;
+        int count = 0;
+        for (double v : values) {
+            sum += v;
+            count++;
+        }
+        if (count == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double mean = sum / count;
+        double squares = 0;
+        for (double v : values) {
+            squares += (v - mean) * (v - mean);
+        }
+        double deviation = Math.sqrt(squares / count);
+        if (mean == 0) {
+            return deviation == 0 ? 0 : Double.POSITIVE_INFINITY;
+        }
+        return deviation / Math.abs(mean);
+    }
+
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("Window (intervals)", window);
+        m.put("Coefficient of Variation Threshold", threshold);
+        m.put("Maximum Time (seconds)", maxTime);
+        m.put("Intervals", intervals);
+        m.put("Steady State Reached", steady);
+        if (throughputs.size() == window) {
+            m.put("Throughput Coefficient of Variation", coefficientOfVariation(throughputs));
+            m.put("95th Percentile Latency Coefficient of Variation", coefficientOfVariation(latencies));
+        }
+        return m;
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark;
+
+import com.oltpbenchmark.api.TransactionType;
+import com.oltpbenchmark.types.TransactionStatus;
+import com.oltpbenchmark.util.LatencyHistogram;
+
+import java.util.Arrays;
+
+/**
+ * Per-window statistics for every transaction type, computed in a single pass
+ * over the (start time ordered) samples.
+ * <p>
+ * Windows are anchored at the start time of the first sample; windows without
+ * any sample are kept so that row {@code i} always covers
+ * {@code [i * windowSizeSeconds, (i + 1) * windowSizeSeconds)}. While a window
+ * is open, every sample is added to a reusable {@link LatencyHistogram} for the
+ * aggregate and one for its transaction type. When the window closes, the
+ * histograms are summarized into flat primitive arrays and reset, so the cost is
+ * linear in the number of samples and no per-sample object is ever allocated.
+ */
+public final class WindowedStatistics {
+
+    /**
+     * Which per-sample duration is summarized
+     */
+    public enum Metric {
+        /**
+         * Time spent executing the transaction
+         */
+        SERVICE_TIME,
+        /**
+         * Queue delay plus service time
+         */
+        RESPONSE_TIME,
+        /**
+         * Time spent waiting for a worker
+         */
+        QUEUE_DELAY,
+        /**
+         * Part of the service time spent connecting and executing statements
+         */
+        EXECUTION,
+        /**
+         * Part of the service time spent committing
+         */
+        COMMIT,
+        /**
+         * Part of the service time spent rolling back
+         */
+        ROLLBACK,
+        /**
+         * Time spent waiting between attempts
+         */
+        BACKOFF;
+
+        private static final Metric[] VALUES = values();
+
+        int valueOf(LatencyRecord.Cursor sample) {
+            return switch (this) {
+                case SERVICE_TIME -> sample.getLatencyMicrosecond();
+                case RESPONSE_TIME -> sample.getResponseTimeMicrosecond();
+                case QUEUE_DELAY -> sample.getQueueDelayMicrosecond();
+                case EXECUTION -> sample.getExecutionMicrosecond();
+                case COMMIT -> sample.getCommitMicrosecond();
+                case ROLLBACK -> sample.getRollbackMicrosecond();
+                case BACKOFF -> sample.getBackoffMicrosecond();
+            };
+        }
+    }
+
+    private static final int INITIAL_WINDOWS = 64;
+
+    private final int windowSizeSeconds;
+    private int windowCount;
+    private long startNanosecond = 0;
+
+    /**
+     * Index 0 holds the aggregate over all transaction types, index {@code i}
+     * the transaction type with id {@code i}. Entries are null for types that
+     * never appeared.
+     */
+    private Series[] series = new Series[1];
+
+    private WindowedStatistics(int windowSizeSeconds) {
+        this.windowSizeSeconds = windowSizeSeconds;
+    }
+
+    /**
+     * Consumes the cursor and returns the statistics of every window.
+     */
+    public static WindowedStatistics compute(LatencyRecord.Cursor samples, int windowSizeSeconds) {
+        if (windowSizeSeconds <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSizeSeconds);
+        }
+
+        WindowedStatistics stats = new WindowedStatistics(windowSizeSeconds);
+        if (!samples.next()) {
+            return stats;
+        }
+
+        Series all = stats.series(0);
+        stats.startNanosecond = samples.getStartNanosecond();
+        long windowNanoseconds = windowSizeSeconds * 1000000000L;
+        long windowEnd = samples.getStartNanosecond() + windowNanoseconds;
+        do {
+            while (samples.getStartNanosecond() >= windowEnd) {
+                stats.closeWindow();
+                windowEnd += windowNanoseconds;
+            }
+            all.add(samples);
+            stats.series(samples.getTransactionType()).add(samples);
+        } while (samples.next());
+        stats.closeWindow();
+
+        return stats;
+    }
+
+    private Series series(int transactionTypeId) {
+        if (transactionTypeId >= series.length) {
+            series = Arrays.copyOf(series, transactionTypeId + 1);
+        }
+        Series s = series[transactionTypeId];
+        if (s == null) {
+            s = new Series();
+            series[transactionTypeId] = s;
+        }
+        return s;
+    }
+
+    private void closeWindow() {
+        for (Series s : series) {
+            if (s != null) {
+                s.flush(windowCount);
+            }
+        }
+        windowCount++;
+    }
+
+    public int getWindowSizeSeconds() {
+        return windowSizeSeconds;
+    }
+
+    public int getWindowCount() {
+        return windowCount;
+    }
+
+    /**
+     * @return where window {@code i} starts, on the System.nanoTime() scale of the samples
+     */
+    public long getWindowStartNanosecond(int window) {
+        return startNanosecond + window * (windowSizeSeconds * 1000000000L);
+    }
+
+    /**
+     * @param transactionType the type to report, or {@link TransactionType#INVALID} for all types
+     * @return the number of requests that started in the window
+     */
+    public int getRequests(TransactionType transactionType, int window) {
+        Series s = lookup(transactionType, window);
+        return s == null || window >= s.rows ? 0 : s.requests[window];
+    }
+
+    /**
+     * @param transactionType the type to report, or {@link TransactionType#INVALID} for all types
+     * @return the number of requests that started in the window and committed successfully
+     */
+    public int getSuccesses(TransactionType transactionType, int window) {
+        Series s = lookup(transactionType, window);
+        return s == null || window >= s.rows ? 0 : s.successes[window];
+    }
+
+    /**
+     * @param transactionType the type to report, or {@link TransactionType#INVALID} for all types
+     */
+    public DistributionStatistics getStatistics(TransactionType transactionType, int window, Metric metric) {
+        Series s = lookup(transactionType, window);
+        if (s == null || window >= s.rows) {
+            return DistributionStatistics.computeStatistics(new int[0]);
+        }
+        return s.statistics(window, metric);
+    }
+
+    private Series lookup(TransactionType transactionType, int window) {
+        if (window < 0 || window >= windowCount) {
+            throw new IndexOutOfBoundsException("Window " + window + " of " + windowCount);
+        }
+        int index = transactionType.equals(TransactionType.INVALID) ? 0 : transactionType.getId();
+        return index < series.length ? series[index] : null;
+    }
+
+    /**
+     * The open window and the summarized rows of one transaction type (or of
+     * the aggregate).
+     */
+    private static final class Series {
+        private static final int PERCENTILE_COUNT = DistributionStatistics.PERCENTILES.length;
+
+        private final LatencyHistogram[] histograms = new LatencyHistogram[Metric.VALUES.length];
+        private int openSuccesses;
+
+        private int rows;
+        private int[] requests = new int[INITIAL_WINDOWS];
+        private int[] successes = new int[INITIAL_WINDOWS];
+        private final long[][] percentiles = new long[Metric.VALUES.length][INITIAL_WINDOWS * PERCENTILE_COUNT];
+        private final double[][] averages = new double[Metric.VALUES.length][INITIAL_WINDOWS];
+        private final double[][] standardDeviations = new double[Metric.VALUES.length][INITIAL_WINDOWS];
+
+        Series() {
+            for (int m = 0; m < histograms.length; m++) {
+                histograms[m] = new LatencyHistogram();
+            }
+        }
+
+        void add(LatencyRecord.Cursor sample) {
+            for (int m = 0; m < histograms.length; m++) {
+                histograms[m].add(Metric.VALUES[m].valueOf(sample));
+            }
+            if (sample.getStatus() == TransactionStatus.SUCCESS) {
+                openSuccesses++;
+            }
+        }
+
+        /**
+         * Summarizes the open window into row {@code window}, first padding
+         * with empty rows for windows before this series' first sample.
+         */
+        void flush(int window) {
+            ensureCapacity(window + 1);
+            while (rows < window) {
+                summarize(rows++, true);
+            }
+            summarize(rows++, false);
+        }
+
+        private void summarize(int row, boolean empty) {
+            LatencyHistogram first = histograms[0];
+            requests[row] = empty ? 0 : (int) first.getCount();
+            successes[row] = empty ? 0 : openSuccesses;
+            for (int m = 0; m < histograms.length; m++) {
+                LatencyHistogram h = histograms[m];
+                int offset = row * PERCENTILE_COUNT;
+                if (empty || h.isEmpty()) {
+                    Arrays.fill(percentiles[m], offset, offset + PERCENTILE_COUNT, -1);
+                    averages[m][row] = -1;
+                    standardDeviations[m][row] = -1;
+                    continue;
+                }
+                for (int p = 0; p < PERCENTILE_COUNT; p++) {
+                    percentiles[m][offset + p] = h.getValueAtPercentile(DistributionStatistics.PERCENTILES[p]);
+                }
+                averages[m][row] = h.getMean();
+                standardDeviations[m][row] = h.getStandardDeviation();
+            }
+            if (!empty) {
+                for (LatencyHistogram h : histograms) {
+                    h.reset();
+                }
+                openSuccesses = 0;
+            }
+        }
+
+        DistributionStatistics statistics(int row, Metric metric) {
+            int m = metric.ordinal();
+            int offset = row * PERCENTILE_COUNT;
+            return new DistributionStatistics(requests[row],
+                    Arrays.copyOfRange(percentiles[m], offset, offset + PERCENTILE_COUNT),
+                    averages[m][row], standardDeviations[m][row]);
+        }
+
+        private void ensureCapacity(int windows) {
+            if (windows <= requests.length) {
+                return;
+            }
+            int capacity = Math.max(windows, requests.length * 2);
+            requests = Arrays.copyOf(requests, capacity);
+            successes = Arrays.copyOf(successes, capacity);
+            for (int m = 0; m < percentiles.length; m++) {
+                percentiles[m] = Arrays.copyOf(percentiles[m], capacity * PERCENTILE_COUNT);
+                averages[m] = Arrays.copyOf(averages[m], capacity);
+                standardDeviations[m] = Arrays.copyOf(standardDeviations[m], capacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The queue of submitted requests of a rate-limited workload: a bounded
+ * multi-producer, multi-consumer ring buffer with parking consumers.
+ * <p>
+ * Every slot carries a sequence number that tells producers and consumers
+ * whose turn it is, so {@link #offer} and {@link #poll} only need a CAS on the
+ * tail or the head. Consumers that find the queue empty register themselves
+ * and park. Like LinkedBlockingQueue, a producer only unparks one of them and
+ * every consumer that leaves requests behind unparks the next, so a burst of
+ * requests does not wake all terminals at once.
+ */
+public final class WorkQueue {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final SubmittedProcedure[] slots;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * @param capacity the minimum number of requests the queue can hold, it
+     *                 is rounded up to a power of two
+     */
+    public WorkQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.slots = new SubmittedProcedure[size];
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the queue is full
+     */
+    public boolean offer(SubmittedProcedure work) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.getAcquire(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = work;
+                    // publishes the slot to consumers
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // the consumer of the previous lap has not freed the slot yet
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return the oldest request, or null if the queue is empty
+     */
+    public SubmittedProcedure poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.getAcquire(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    SubmittedProcedure work = slots[index];
+                    slots[index] = null;
+                    // hands the slot to the producer of the next lap
+                    sequences.setRelease(index, position + mask + 1);
+                    return work;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Returns the oldest request, parking until one is added. Gives up and
+     * returns null once {@code stop} is true; whoever makes it true must call
+     * {@link #wakeAll()} afterwards.
+     */
+    public SubmittedProcedure take(BooleanSupplier stop) {
+        SubmittedProcedure work = poll();
+        if (work == null) {
+            work = await(stop);
+        }
+        if (work != null && waiting.get() > 0 && size() > 0) {
+            signal();
+        }
+        return work;
+    }
+
+    private SubmittedProcedure await(BooleanSupplier stop) {
+        Thread current = Thread.currentThread();
+        waiters.add(current);
+        waiting.incrementAndGet();
+        try {
+            while (true) {
+                // Registered before checking, so an offer after this poll
+                // always finds us
+                SubmittedProcedure work = poll();
+                if (work != null) {
+                    return work;
+                }
+                if (stop.getAsBoolean()) {
+                    return null;
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new RuntimeException(new InterruptedException("Interrupted while waiting for work"));
+                }
+            }
+        } finally {
+            waiting.decrementAndGet();
+            waiters.remove(current);
+        }
+    }
+
+    /**
+     * Unparks the longest waiting consumer, if any. Called after adding
+     * requests; the consumers wake each other while requests remain.
+     */
+    public void signal() {
+        if (waiting.get() == 0) {
+            return;
+        }
+        Thread waiter = waiters.peek();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Unparks every waiting consumer so it can re-check its stop condition
+     */
+    public void wakeAll() {
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    public void clear() {
+        while (poll() != null) {
+            // drop it
+        }
+    }
+
+    /**
+     * @return the number of queued requests, exact only when no producer or
+     * consumer is active
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    /**
+     * @return the number of consumers parked or about to park
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * The arrival schedule of a single worker when rate-limited phases use
+ * {@link com.oltpbenchmark.types.ArrivalScheduling#WORKER}.
+ * <p>
+ * Every active terminal of a phase owns an equal share of its rate and draws
+ * its own regular or Poisson inter-arrival times, so the shares add up to the
+ * rate of the phase without a central thread handing out requests. Deadlines
+ * are absolute, like in {@link Pacer}: a worker that runs late executes its
+ * overdue arrivals back to back and the lateness shows up as queue delay.
+ * <p>
+ * The schedule starts over whenever the phase changes. The first deadline of
+ * a regular schedule is spread over one interval, so the workers do not all
+ * fire at the same instant.
+ * <p>
+ * Not thread-safe, every worker owns one.
+ */
+public final class WorkerArrivals {
+
+    private final SplittableRandom random;
+    private Phase phase = null;
+    private long deadline;
+    private long dropped = 0;
+
+    public WorkerArrivals() {
+        this(new SplittableRandom());
+    }
+
+    public WorkerArrivals(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private WorkerArrivals(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * @param rate the current rate of the phase
+     * @return the rate this worker generates in {@code phase}, in arrivals per
+     * second
+     */
+    static double getRateShare(Phase phase, double rate) {
+        return rate / Math.max(1, phase.getActiveTerminals());
+    }
+
+    /**
+     * Schedules the next arrival of {@code phase}
+     *
+     * @param rate    the current rate of the phase, it may vary with its profile
+     * @param now     the current time, as returned by System.nanoTime()
+     * @param backlog how many overdue arrivals the worker may owe before older
+     *                ones are dropped
+     * @return the deadline of the arrival
+     */
+    public long nextDeadline(Phase phase, double rate, long now, int backlog) {
+        double share = getRateShare(phase, rate);
+        if (phase != this.phase) {
+            this.phase = phase;
+            if (phase.getArrival() == Phase.Arrival.POISSON) {
+                deadline = now + nextInterval(share, Phase.Arrival.POISSON);
+            } else {
+                deadline = now + (long) (random.nextDouble() * nextInterval(share, Phase.Arrival.REGULAR));
+            }
+            return deadline;
+        }
+
+        deadline += nextInterval(share, phase.getArrival());
+
+        // If we can't keep up with our share, truncate transactions
+        long oldest = now - (long) (Math.max(1, backlog) * 1000000000. / share);
+        if (deadline < oldest) {
+            dropped += (long) ((oldest - deadline) * share / 1000000000.);
+            deadline = oldest;
+        }
+        return deadline;
+    }
+
+    private long nextInterval(double share, Phase.Arrival arrival) {
+        if (arrival == Phase.Arrival.POISSON) {
+            return (long) ((-Math.log(1 - random.nextDouble()) / share) * 1000000000.);
+        } else {
+            return (long) (1000000000. / share + 0.5);
+        }
+    }
+
+    /**
+     * @return the deadline of the last scheduled arrival
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return how many arrivals were dropped because the worker fell too far
+     * behind its schedule
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
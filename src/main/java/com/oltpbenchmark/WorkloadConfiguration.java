@@ -18,8 +18,13 @@
 
 package com.oltpbenchmark;
 
+import com.oltpbenchmark.api.RetryBackoff;
+import com.oltpbenchmark.api.RetryPolicies;
+import com.oltpbenchmark.api.RetryPolicy;
 import com.oltpbenchmark.api.TransactionTypes;
+import com.oltpbenchmark.types.ArrivalScheduling;
 import com.oltpbenchmark.types.DatabaseType;
+import com.oltpbenchmark.types.WorkerExecutor;
 import com.oltpbenchmark.util.ThreadUtil;
 import org.apache.commons.configuration2.XMLConfiguration;
 
@@ -43,6 +48,8 @@ public class WorkloadConfiguration {
     private double selectivity = -1.0;
     private int terminals;
     private int loaderThreads = ThreadUtil.availableProcessors();
+    private int connectThreads = 16;
+    private double connectRate = 0;
     private XMLConfiguration xmlConfig = null;
     private WorkloadState workloadState;
     private TransactionTypes transTypes = null;
@@ -56,6 +63,87 @@ public class WorkloadConfiguration {
      */
     private boolean newConnectionPerTxn = false;
 
+    /**
+     * Decides which failed transactions are retried, null for the default of the database type.
+     */
+    private RetryPolicy retryPolicy = null;
+
+    /**
+     * How long workers wait before retrying a transaction. Its settings are shared, every worker draws its own
+     * jitter from a copy.
+     */
+    private RetryBackoff retryBackoff = new RetryBackoff(0, 0);
+
+    /**
+     * If positive, workers take their connections from a pool of at most this many connections instead of opening
+     * them with the driver. Combined with newConnectionPerTxn this measures the overhead of a pooler.
+     */
+    private int connectionPoolSize = 0;
+
+    /**
+     * Seconds to wait for an idle pooled connection to be validated before it is reused, 0 to not validate.
+     */
+    private int connectionValidationTimeout = 0;
+
+    /**
+     * Seconds after which a pooled connection is closed instead of reused, 0 for no limit.
+     */
+    private int connectionMaxLifetime = 0;
+
+    /**
+     * If false, workers only keep latency histograms and no per-transaction samples, so memory use no longer grows
+     * with the length of the run. The raw and windowed CSV outputs are not available in that case.
+     */
+    private boolean retainLatencySamples = true;
+
+    /**
+     * If set, retained latency samples are streamed to one file per worker in this directory during the run instead of
+     * being kept in memory, so that very long runs do not exhaust the heap.
+     */
+    private String latencySpillDirectory = null;
+
+    /**
+     * If true, every worker keeps the PreparedStatements of its procedures prepared on its connection instead of
+     * preparing and closing them in every transaction.
+     */
+    private boolean statementCache = false;
+
+    /**
+     * If true, workers time the executions and result set iteration of every statement of their procedures during
+     * measurement, for the statements.csv report.
+     */
+    private boolean instrumentStatements = false;
+
+    /**
+     * If positive, every worker keeps this many of its slowest measured transactions with the parameters of their
+     * statements, for the outliers.json report.
+     */
+    private int outlierCount = 0;
+
+    /**
+     * With {@link ArrivalScheduling#WORKER} every worker generates its own share of the arrivals of rate-limited
+     * phases, instead of a single thread feeding a shared queue.
+     */
+    private ArrivalScheduling arrivalScheduling = ArrivalScheduling.CENTRAL;
+
+    /**
+     * With {@link WorkerExecutor#VIRTUAL} the workers run on virtual threads, which allows many more terminals than
+     * platform threads when they spend most of their time in think times.
+     */
+    private WorkerExecutor workerExecutor = WorkerExecutor.PLATFORM;
+
+    /**
+     * If set, the phases are generated by the search while the workload runs, and {@link #getPhases()} holds the
+     * steps that ran so far.
+     */
+    private SaturationSearch saturationSearch = null;
+
+    /**
+     * If set, the run keeps warming up until throughput and latency are stable, instead of for the warmup time of
+     * the phase alone.
+     */
+    private WarmupDetector warmupDetector = null;
+
     public String getBenchmarkName() {
         return benchmarkName;
     }
@@ -141,15 +229,177 @@ public class WorkloadConfiguration {
         this.newConnectionPerTxn = newConnectionPerTxn;
     }
 
+    /**
+     * @return @see retryPolicy member docs for behavior.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy != null ? retryPolicy : RetryPolicies.forDatabase(databaseType);
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @return @see retryBackoff member docs for behavior.
+     */
+    public RetryBackoff getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(RetryBackoff retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    /**
+     * @return @see connectionPoolSize member docs for behavior.
+     */
+    public int getConnectionPoolSize() {
+        return connectionPoolSize;
+    }
+
+    public void setConnectionPoolSize(int connectionPoolSize) {
+        this.connectionPoolSize = connectionPoolSize;
+    }
+
+    /**
+     * @return @see connectionValidationTimeout member docs for behavior.
+     */
+    public int getConnectionValidationTimeout() {
+        return connectionValidationTimeout;
+    }
+
+    public void setConnectionValidationTimeout(int connectionValidationTimeout) {
+        this.connectionValidationTimeout = connectionValidationTimeout;
+    }
+
+    /**
+     * @return @see connectionMaxLifetime member docs for behavior.
+     */
+    public int getConnectionMaxLifetime() {
+        return connectionMaxLifetime;
+    }
+
+    public void setConnectionMaxLifetime(int connectionMaxLifetime) {
+        this.connectionMaxLifetime = connectionMaxLifetime;
+    }
+
+    /**
+     * @return @see retainLatencySamples member docs for behavior.
+     */
+    public boolean getRetainLatencySamples() {
+        return retainLatencySamples;
+    }
+
+    public void setRetainLatencySamples(boolean retainLatencySamples) {
+        this.retainLatencySamples = retainLatencySamples;
+    }
+
+    /**
+     * @return @see latencySpillDirectory member docs for behavior.
+     */
+    public String getLatencySpillDirectory() {
+        return latencySpillDirectory;
+    }
+
+    public void setLatencySpillDirectory(String latencySpillDirectory) {
+        this.latencySpillDirectory = latencySpillDirectory;
+    }
+
+    /**
+     * @return @see statementCache member docs for behavior.
+     */
+    public boolean getStatementCache() {
+        return statementCache;
+    }
+
+    public void setStatementCache(boolean statementCache) {
+        this.statementCache = statementCache;
+    }
+
+    /**
+     * @return @see instrumentStatements member docs for behavior.
+     */
+    public boolean getInstrumentStatements() {
+        return instrumentStatements;
+    }
+
+    public void setInstrumentStatements(boolean instrumentStatements) {
+        this.instrumentStatements = instrumentStatements;
+    }
+
+    /**
+     * @return @see outlierCount member docs for behavior.
+     */
+    public int getOutlierCount() {
+        return outlierCount;
+    }
+
+    public void setOutlierCount(int outlierCount) {
+        this.outlierCount = outlierCount;
+    }
+
+    /**
+     * @return @see arrivalScheduling member docs for behavior.
+     */
+    public ArrivalScheduling getArrivalScheduling() {
+        return arrivalScheduling;
+    }
+
+    public void setArrivalScheduling(ArrivalScheduling arrivalScheduling) {
+        this.arrivalScheduling = arrivalScheduling;
+    }
+
+    /**
+     * @return @see workerExecutor member docs for behavior.
+     */
+    public WorkerExecutor getWorkerExecutor() {
+        return workerExecutor;
+    }
+
+    public void setWorkerExecutor(WorkerExecutor workerExecutor) {
+        this.workerExecutor = workerExecutor;
+    }
+
+    /**
+     * @return @see saturationSearch member docs for behavior.
+     */
+    public SaturationSearch getSaturationSearch() {
+        return saturationSearch;
+    }
+
+    public void setSaturationSearch(SaturationSearch saturationSearch) {
+        this.saturationSearch = saturationSearch;
+    }
+
+    /**
+     * @return @see warmupDetector member docs for behavior.
+     */
+    public WarmupDetector getWarmupDetector() {
+        return warmupDetector;
+    }
+
+    public void setWarmupDetector(WarmupDetector warmupDetector) {
+        this.warmupDetector = warmupDetector;
+    }
+
     /**
      * Initiate a new benchmark and workload state
      */
     public void initializeState(BenchmarkState benchmarkState) {
-        this.workloadState = new WorkloadState(benchmarkState, phases, terminals);
+        if (saturationSearch != null) {
+            this.workloadState = new WorkloadState(benchmarkState, saturationSearch, terminals, arrivalScheduling);
+        } else {
+            this.workloadState = new WorkloadState(benchmarkState, phases, terminals, arrivalScheduling);
+        }
     }
 
     public void addPhase(int id, int time, int warmup, int rate, List<Double> weights, boolean rateLimited, boolean disabled, boolean serial, boolean timed, int active_terminals, Phase.Arrival arrival) {
-        phases.add(new Phase(benchmarkName, id, time, warmup, rate, weights, rateLimited, disabled, serial, timed, active_terminals, arrival));
+        addPhase(id, time, warmup, rate, null, weights, rateLimited, disabled, serial, timed, active_terminals, arrival);
+    }
+
+    public void addPhase(int id, int time, int warmup, int rate, RateProfile rateProfile, List<Double> weights, boolean rateLimited, boolean disabled, boolean serial, boolean timed, int active_terminals, Phase.Arrival arrival) {
+        phases.add(new Phase(benchmarkName, id, time, warmup, rate, rateProfile, weights, rateLimited, disabled, serial, timed, active_terminals, arrival));
     }
 
 
@@ -168,6 +418,33 @@ public class WorkloadConfiguration {
         this.loaderThreads = loaderThreads;
     }
 
+    /**
+     * The number of threads that connect the workers before the run.
+     *
+     * @return
+     */
+    public int getConnectThreads() {
+        return this.connectThreads;
+    }
+
+    public void setConnectThreads(int connectThreads) {
+        this.connectThreads = connectThreads;
+    }
+
+    /**
+     * The most connections per second the workers open before the run, 0 for
+     * no limit.
+     *
+     * @return
+     */
+    public double getConnectRate() {
+        return this.connectRate;
+    }
+
+    public void setConnectRate(double connectRate) {
+        this.connectRate = connectRate;
+    }
+
     public double getSelectivity() {
         return this.selectivity;
     }
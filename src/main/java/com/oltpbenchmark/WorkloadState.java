@@ -17,42 +17,100 @@
 
 package com.oltpbenchmark;
 
+import com.oltpbenchmark.types.ArrivalScheduling;
 import com.oltpbenchmark.types.State;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class is used to share a state among the workers of a single
  * workload. Worker use it to ask for work and as interface to the global
  * BenchmarkState
+ * <p>
+ * Requests of rate-limited phases go through a lock-free {@link WorkQueue},
+ * so fetching and finishing work never takes the lock of this class. The
+ * lock is only used for phase switches, for sleeping terminals and for
+ * serial phases. It is a ReentrantLock rather than the monitor, so workers
+ * running on virtual threads unmount while they wait instead of pinning
+ * their carrier thread.
+ * <p>
+ * With {@link ArrivalScheduling#WORKER} the queue is not used at all: every
+ * worker waits for the deadlines of its own {@link WorkerArrivals}.
+ * <p>
+ * The current phase and the global state are published together as an
+ * immutable {@link Epoch}, workers read both with {@link #getEpoch()}.
  *
  * @author alendit
  */
 public class WorkloadState {
     private static final int RATE_QUEUE_LIMIT = 10000;
+    // Longest a worker parks before re-checking for phase changes
+    private static final long MAX_PARK_NANOSECONDS = 10_000_000;
     private static final Logger LOG = LoggerFactory.getLogger(WorkloadState.class);
 
     private final BenchmarkState benchmarkState;
-    private final LinkedList<SubmittedProcedure> workQueue = new LinkedList<>();
+    private final WorkQueue workQueue = new WorkQueue(RATE_QUEUE_LIMIT + 1);
     private final int num_terminals;
     private final Iterator<Phase> phaseIterator;
+    private final ArrivalScheduling arrivalScheduling;
 
+    private final AtomicInteger workersWorking = new AtomicInteger();
     private int workersWaiting = 0;
-    private int workersWorking = 0;
-    private int workerNeedSleep;
+    private volatile int workerNeedSleep;
 
-    private Phase currentPhase = null;
+    // Replaced on every phase switch and state transition, updates are
+    // functional so a phase switch and a transition never lose each other
+    private final AtomicReference<Epoch> epoch;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Signalled on phase switches and when the benchmark is over
+    private final Condition phaseChanged = lock.newCondition();
 
     public WorkloadState(BenchmarkState benchmarkState, List<Phase> works, int num_terminals) {
+        this(benchmarkState, works, num_terminals, ArrivalScheduling.CENTRAL);
+    }
+
+    public WorkloadState(BenchmarkState benchmarkState, List<Phase> works, int num_terminals, ArrivalScheduling arrivalScheduling) {
+        this(benchmarkState, works.iterator(), num_terminals, arrivalScheduling);
+    }
+
+    /**
+     * @param works the phases to run, the iterator is asked for the next one
+     *              when a phase ends, so it may create them on the fly
+     */
+    public WorkloadState(BenchmarkState benchmarkState, Iterator<Phase> works, int num_terminals, ArrivalScheduling arrivalScheduling) {
         this.benchmarkState = benchmarkState;
         this.num_terminals = num_terminals;
         this.workerNeedSleep = num_terminals;
+        this.arrivalScheduling = arrivalScheduling;
+        this.epoch = new AtomicReference<>(new Epoch(benchmarkState.getState(), null, 0));
 
-        phaseIterator = works.iterator();
+        phaseIterator = works;
+        benchmarkState.register(this);
+    }
+
+    /**
+     * @return the current state and phase, as one consistent snapshot
+     */
+    public Epoch getEpoch() {
+        return epoch.get();
+    }
+
+    /**
+     * Called by the benchmark state after every transition. The state is
+     * re-read inside the update, so the epoch ends up with the latest state
+     * even when transitions race.
+     */
+    void publishState() {
+        epoch.updateAndGet(e -> e.withState(benchmarkState.getState()));
     }
 
     /**
@@ -60,41 +118,49 @@ public class WorkloadState {
      */
     public void addToQueue(int amount, boolean resetQueues) {
         int workAdded = 0;
-        
-        synchronized (this) {
-            if (resetQueues) {
-                workQueue.clear();
-            }
 
-            // Only use the work queue if the phase is enabled and rate limited.
-            if (currentPhase == null || currentPhase.isDisabled()
-                    || !currentPhase.isRateLimited() || currentPhase.isSerial()) {
-                return;
-            }
-            
-            // Add the specified number of procedures to the end of the queue.
-            // If we can't keep up with current rate, truncate transactions
-            for (int i = 0; i < amount && workQueue.size() <= RATE_QUEUE_LIMIT; ++i) {
-                workQueue.add(new SubmittedProcedure(currentPhase.chooseTransaction()));
-                workAdded++;
-            }
+        if (resetQueues) {
+            workQueue.clear();
+        }
 
-            // Wake up sleeping workers to deal with the new work.
-            int numToWake = Math.min(workAdded, workersWaiting);
-            while (numToWake-- > 0) {
-                this.notify();
+        // Only use the work queue if the phase is enabled and rate limited.
+        Phase phase = epoch.get().getPhase();
+        if (phase == null || phase.isDisabled()
+                || !phase.isRateLimited() || phase.isSerial()) {
+            return;
+        }
+        // Workers generate their own arrivals
+        if (arrivalScheduling == ArrivalScheduling.WORKER) {
+            return;
+        }
+
+        // Add the specified number of procedures to the end of the queue.
+        // If we can't keep up with current rate, truncate transactions
+        for (int i = 0; i < amount && workQueue.size() <= RATE_QUEUE_LIMIT; ++i) {
+            if (!workQueue.offer(new SubmittedProcedure(phase.chooseTransaction()))) {
+                break;
             }
+            workAdded++;
+        }
+
+        // Wake up a sleeping worker, it wakes the next while work remains.
+        if (workAdded > 0) {
+            workQueue.signal();
         }
     }
 
     public void signalDone() {
         int current = this.benchmarkState.signalDone();
         if (current == 0) {
-            synchronized (this) {
+            lock.lock();
+            try {
                 if (workersWaiting > 0) {
-                    this.notifyAll();
+                    phaseChanged.signalAll();
                 }
+            } finally {
+                lock.unlock();
             }
+            workQueue.wakeAll();
         }
     }
 
@@ -102,66 +168,102 @@ public class WorkloadState {
      * Called by ThreadPoolThreads when waiting for work.
      */
     public SubmittedProcedure fetchWork() {
-        synchronized (this) {
-            if (currentPhase != null && currentPhase.isSerial()) {
+        // Serial phases are rare and run on a single terminal, only they
+        // take the lock
+        Epoch current = epoch.get();
+        Phase phase = current.getPhase();
+        if (phase != null && phase.isSerial()) {
+            lock.lock();
+            try {
                 ++workersWaiting;
-                while (getGlobalState() == State.LATENCY_COMPLETE) {
+                while ((current = epoch.get()).getState() == State.LATENCY_COMPLETE) {
                     try {
-                        this.wait();
+                        phaseChanged.await();
                     } catch (InterruptedException e) {
                         throw new RuntimeException(e);
                     }
                 }
                 --workersWaiting;
 
-                if (getGlobalState() == State.EXIT || getGlobalState() == State.DONE) {
+                if (current.isOver() || current.getPhase() == null) {
                     return null;
                 }
 
-                ++workersWorking;
-                return new SubmittedProcedure(currentPhase.chooseTransaction(getGlobalState() == State.COLD_QUERY));
+                workersWorking.incrementAndGet();
+                return new SubmittedProcedure(current.getPhase().chooseTransaction(current.getState() == State.COLD_QUERY));
+            } finally {
+                lock.unlock();
             }
         }
 
         // Unlimited-rate phases don't use the work queue.
-        if (currentPhase != null && !currentPhase.isRateLimited()) {
-            synchronized (this) {
-                ++workersWorking;
-            }
-            return new SubmittedProcedure(currentPhase.chooseTransaction(getGlobalState() == State.COLD_QUERY));
+        if (phase != null && !phase.isRateLimited()) {
+            workersWorking.incrementAndGet();
+            return new SubmittedProcedure(phase.chooseTransaction(current.getState() == State.COLD_QUERY));
         }
 
-        synchronized (this) {
-            // Sleep until work is available.
-            if (workQueue.peek() == null) {
-                workersWaiting += 1;
-                while (workQueue.peek() == null) {
-                    if (this.benchmarkState.getState() == State.EXIT
-                            || this.benchmarkState.getState() == State.DONE) {
-                        return null;
-                    }
+        // Park until work is available. Also give up if the phase changes, the
+        // next phase may not use the queue at all.
+        SubmittedProcedure work = workQueue.take(() -> {
+            Epoch latest = epoch.get();
+            return latest.isOver() || latest.getPhase() != phase;
+        });
+        if (work == null) {
+            return null;
+        }
 
-                    try {
-                        this.wait();
-                    } catch (InterruptedException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
-                workersWaiting -= 1;
-            }
+        workersWorking.incrementAndGet();
 
+        return work;
+    }
 
-            ++workersWorking;
+    /**
+     * Called by workers that generate their own arrivals when waiting for
+     * work. Phases that are not scheduled per worker are served like
+     * {@link #fetchWork()}.
+     */
+    public SubmittedProcedure fetchWork(WorkerArrivals arrivals) {
+        Phase phase = epoch.get().getPhase();
+        if (arrivalScheduling != ArrivalScheduling.WORKER || phase == null || phase.isDisabled()
+                || !phase.isRateLimited() || phase.isSerial()) {
+            return fetchWork();
+        }
 
-            return workQueue.remove();
+        int backlog = Math.max(1, RATE_QUEUE_LIMIT / Math.max(1, phase.getActiveTerminals()));
+        long now = System.nanoTime();
+        long deadline = arrivals.nextDeadline(phase, phase.getRate(getPhaseSeconds(now)), now, backlog);
+
+        // Park until our own deadline, waking up regularly to give up if the
+        // phase changes or the benchmark ends.
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NANOSECONDS));
+            if (Thread.interrupted()) {
+                throw new RuntimeException(new InterruptedException("Interrupted while waiting for work"));
+            }
+            Epoch latest = epoch.get();
+            if (latest.isOver() || latest.getPhase() != phase) {
+                return null;
+            }
         }
+
+        workersWorking.incrementAndGet();
+
+        // The deadline is the arrival time, so the queue delay is how late
+        // this worker is on its own schedule
+        return new SubmittedProcedure(phase.chooseTransaction(), deadline);
     }
 
     public void finishedWork() {
-        synchronized (this) {
+        workersWorking.decrementAndGet();
+    }
 
-            --workersWorking;
-        }
+    /**
+     * @return the number of requests waiting for a worker, always 0 when
+     * workers generate their own arrivals
+     */
+    public int getQueueDepth() {
+        return workQueue.size();
     }
 
     public Phase getNextPhase() {
@@ -171,44 +273,63 @@ public class WorkloadState {
         return null;
     }
 
+    /**
+     * @param now the current time, as returned by System.nanoTime()
+     * @return the seconds since the current phase started, the offset rate
+     * profiles are evaluated at
+     */
+    public double getPhaseSeconds(long now) {
+        return Math.max(0, (now - epoch.get().getPhaseStartNanos()) / 1e9);
+    }
+
     public Phase getCurrentPhase() {
-        synchronized (benchmarkState) {
-            return currentPhase;
-        }
+        return epoch.get().getPhase();
     }
 
     /*
      * Called by workers to ask if they should stay awake in this phase
      */
     public void stayAwake() {
-        synchronized (this) {
+        // Nobody needs to sleep in most phases, don't take the lock then
+        if (workerNeedSleep <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
             while (workerNeedSleep > 0) {
                 workerNeedSleep--;
                 try {
-                    this.wait();
+                    phaseChanged.await();
                 } catch (InterruptedException e) {
                     LOG.error(e.getMessage(), e);
                 }
             }
+        } finally {
+            lock.unlock();
         }
     }
 
     public void switchToNextPhase() {
-        synchronized (this) {
-            this.currentPhase = this.getNextPhase();
+        lock.lock();
+        try {
+            Phase nextPhase = this.getNextPhase();
+            if (nextPhase != null) {
+                nextPhase.resetSerial();
+            }
+            long now = System.nanoTime();
+            epoch.updateAndGet(e -> e.withPhase(nextPhase, now));
 
             // Clear the work from the previous phase.
             workQueue.clear();
 
             // Determine how many workers need to sleep, then make sure they
             // do.
-            if (this.currentPhase == null)
+            if (nextPhase == null)
             // Benchmark is over---wake everyone up so they can terminate
             {
                 workerNeedSleep = 0;
             } else {
-                this.currentPhase.resetSerial();
-                if (this.currentPhase.isDisabled())
+                if (nextPhase.isDisabled())
                 // Phase disabled---everyone should sleep
                 {
                     workerNeedSleep = this.num_terminals;
@@ -216,14 +337,19 @@ public class WorkloadState {
                 // Phase running---activate the appropriate # of terminals
                 {
                     workerNeedSleep = this.num_terminals
-                            - this.currentPhase.getActiveTerminals();
+                            - nextPhase.getActiveTerminals();
                 }
 
             }
 
 
-            this.notifyAll();
+            phaseChanged.signalAll();
+        } finally {
+            lock.unlock();
         }
+
+        // Workers waiting for requests of the previous phase give up
+        workQueue.wakeAll();
     }
 
     /**
@@ -240,7 +366,7 @@ public class WorkloadState {
      * @return global state
      */
     public State getGlobalState() {
-        return benchmarkState.getState();
+        return epoch.get().getState();
     }
 
     public void signalLatencyComplete() {
@@ -20,8 +20,10 @@ package com.oltpbenchmark.api;
 
 import com.oltpbenchmark.WorkloadConfiguration;
 import com.oltpbenchmark.catalog.AbstractCatalog;
+import com.oltpbenchmark.jdbc.ConnectionPool;
 import com.oltpbenchmark.types.DatabaseType;
 import com.oltpbenchmark.util.ClassUtil;
+import com.oltpbenchmark.util.LatencyHistogram;
 import com.oltpbenchmark.util.SQLUtil;
 import com.oltpbenchmark.util.ScriptRunner;
 import com.oltpbenchmark.util.ThreadUtil;
@@ -35,6 +37,12 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Base class for all benchmark implementations
@@ -65,6 +73,11 @@ public abstract class BenchmarkModule {
 
     private AbstractCatalog catalog = null;
 
+    /**
+     * Created on first use if the workload configures a pool
+     */
+    private volatile ConnectionPool connectionPool = null;
+
     /**
      * Constructor!
      * @param workConf
@@ -90,6 +103,55 @@ public abstract class BenchmarkModule {
         }
     }
 
+    /**
+     * A connection for a worker: from the pool if the workload configures
+     * one, otherwise a new one. Must be given back with
+     * {@link #releaseConnection(Connection)}.
+     */
+    public final Connection acquireConnection() throws SQLException {
+        ConnectionPool pool = this.getConnectionPool();
+        return pool != null ? pool.acquire() : this.makeConnection();
+    }
+
+    /**
+     * Returns a connection from {@link #acquireConnection()} to the pool, or
+     * closes it if there is none
+     */
+    public final void releaseConnection(Connection conn) throws SQLException {
+        ConnectionPool pool = this.getConnectionPool();
+        if (pool != null) {
+            pool.release(conn);
+        } else {
+            conn.close();
+        }
+    }
+
+    private ConnectionPool getConnectionPool() {
+        ConnectionPool pool = this.connectionPool;
+        if (pool != null || workConf.getConnectionPoolSize() <= 0) {
+            return pool;
+        }
+        synchronized (this) {
+            if (this.connectionPool == null) {
+                this.connectionPool = new ConnectionPool(this::makeConnection, workConf.getConnectionPoolSize(),
+                        workConf.getConnectionValidationTimeout(), workConf.getConnectionMaxLifetime());
+            }
+            return this.connectionPool;
+        }
+    }
+
+    /**
+     * Closes the idle connections of the pool, if there is one
+     */
+    public final synchronized void closeConnectionPool() {
+        if (this.connectionPool != null) {
+            LOG.info("Connection pool: {} connections handed out, {} opened, {} retired",
+                    this.connectionPool.getAcquired(), this.connectionPool.getOpened(), this.connectionPool.getRetired());
+            this.connectionPool.close();
+            this.connectionPool = null;
+        }
+    }
+
     // --------------------------------------------------------------------------
     // IMPLEMENTING CLASS INTERFACE
     // --------------------------------------------------------------------------
@@ -185,8 +247,81 @@ public abstract class BenchmarkModule {
     }
 
 
+    /**
+     * Creates the workers and connects them in parallel, on up to
+     * connectThreads threads and at most connectRate connections per second.
+     * If any of them fails to connect, the others are disconnected again.
+     */
     public final List<Worker<? extends BenchmarkModule>> makeWorkers() throws IOException {
-        return (this.makeWorkersImpl());
+        List<Worker<? extends BenchmarkModule>> workers = this.makeWorkersImpl();
+        if (workers.isEmpty() || workConf.getNewConnectionPerTxn()) {
+            return (workers);
+        }
+
+        int threads = Math.max(1, Math.min(workConf.getConnectThreads(), workers.size()));
+        double rate = workConf.getConnectRate();
+        LOG.info("Connecting {} workers on {} threads{}...", workers.size(), threads,
+                rate > 0 ? String.format(" at up to %.0f connections/second", rate) : "");
+
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        AtomicBoolean failed = new AtomicBoolean();
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(workers.size());
+        for (int i = 0; i < workers.size(); i++) {
+            Worker<? extends BenchmarkModule> worker = workers.get(i);
+            // Every connection gets its own slot, so a burst of threads
+            // cannot exceed the rate
+            long slot = rate > 0 ? start + (long) (i * 1e9 / rate) : start;
+            futures.add(service.submit(() -> {
+                long wait;
+                while ((wait = slot - System.nanoTime()) > 0 && !failed.get()) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (!failed.get()) {
+                    worker.connect();
+                }
+                return null;
+            }));
+        }
+        service.shutdown();
+
+        Throwable failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                failed.set(true);
+                if (failure == null) {
+                    failure = ex.getCause();
+                }
+            } catch (InterruptedException ex) {
+                failed.set(true);
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+        if (failure != null) {
+            // Every task has finished, no worker can connect after this
+            for (Worker<? extends BenchmarkModule> worker : workers) {
+                worker.disconnect();
+            }
+            throw new RuntimeException("Failed to connect to database", failure);
+        }
+
+        LatencyHistogram setup = new LatencyHistogram();
+        for (Worker<? extends BenchmarkModule> worker : workers) {
+            if (worker.getSetupMicroseconds() >= 0) {
+                setup.add(worker.getSetupMicroseconds());
+            }
+        }
+        if (!setup.isEmpty()) {
+            LOG.info(String.format("Connected %d workers in %.2fs, setup time per connection median/p99/max: %.3f/%.3f/%.3f ms",
+                    setup.getCount(), (System.nanoTime() - start) / 1e9,
+                    setup.getValueAtPercentile(0.5) / 1000d, setup.getValueAtPercentile(0.99) / 1000d, setup.getMaximum() / 1000d));
+        }
+        return (workers);
     }
 
     public final void refreshCatalog() throws SQLException {
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark.api;
+
+import com.oltpbenchmark.types.TransactionStatus;
+import com.oltpbenchmark.util.Histogram;
+import com.oltpbenchmark.util.LatencyHistogram;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What a single Worker did while one phase was current: the outcome of every
+ * attempt and the latencies of the measured requests, by transaction type.
+ */
+public final class PhaseMeasurements {
+    private final Histogram<TransactionType> unknown = new Histogram<>();
+    private final Histogram<TransactionType> success = new Histogram<>();
+    private final Histogram<TransactionType> abort = new Histogram<>();
+    private final Histogram<TransactionType> retry = new Histogram<>();
+    private final Histogram<TransactionType> error = new Histogram<>();
+    private final Histogram<TransactionType> retryDifferent = new Histogram<>();
+    private final Map<TransactionType, LatencyHistogram> latencyHistograms = new HashMap<>();
+    private final Map<TransactionType, LatencyHistogram> responseTimeHistograms = new HashMap<>();
+    private final Map<TransactionType, LatencyHistogram> queueDelayHistograms = new HashMap<>();
+    private int requests = 0;
+
+    void recordOutcome(TransactionType transactionType, TransactionStatus status) {
+        switch (status) {
+            case UNKNOWN -> unknown.put(transactionType);
+            case SUCCESS -> success.put(transactionType);
+            case USER_ABORTED -> abort.put(transactionType);
+            case RETRY -> retry.put(transactionType);
+            case RETRY_DIFFERENT -> retryDifferent.put(transactionType);
+            case ERROR -> error.put(transactionType);
+        }
+    }
+
+    void recordLatency(TransactionType transactionType, long serviceMicroseconds, long queueMicroseconds, long backoffMicroseconds) {
+        latencyHistograms.computeIfAbsent(transactionType, t -> new LatencyHistogram()).add(serviceMicroseconds);
+        responseTimeHistograms.computeIfAbsent(transactionType, t -> new LatencyHistogram()).add(serviceMicroseconds + backoffMicroseconds + queueMicroseconds);
+        queueDelayHistograms.computeIfAbsent(transactionType, t -> new LatencyHistogram()).add(queueMicroseconds);
+        requests++;
+    }
+
+    public Histogram<TransactionType> getUnknown() {
+        return unknown;
+    }
+
+    public Histogram<TransactionType> getSuccess() {
+        return success;
+    }
+
+    public Histogram<TransactionType> getAbort() {
+        return abort;
+    }
+
+    public Histogram<TransactionType> getRetry() {
+        return retry;
+    }
+
+    public Histogram<TransactionType> getError() {
+        return error;
+    }
+
+    public Histogram<TransactionType> getRetryDifferent() {
+        return retryDifferent;
+    }
+
+    public Map<TransactionType, LatencyHistogram> getLatencyHistograms() {
+        return latencyHistograms;
+    }
+
+    public Map<TransactionType, LatencyHistogram> getResponseTimeHistograms() {
+        return responseTimeHistograms;
+    }
+
+    public Map<TransactionType, LatencyHistogram> getQueueDelayHistograms() {
+        return queueDelayHistograms;
+    }
+
+    /**
+     * @return the number of measured requests
+     */
+    public int getRequests() {
+        return requests;
+    }
+}
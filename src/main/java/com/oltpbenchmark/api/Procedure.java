@@ -18,6 +18,10 @@
 package com.oltpbenchmark.api;
 
 import com.oltpbenchmark.jdbc.AutoIncrementPreparedStatement;
+import com.oltpbenchmark.jdbc.InstrumentedPreparedStatement;
+import com.oltpbenchmark.jdbc.ParameterLog;
+import com.oltpbenchmark.jdbc.StatementCache;
+import com.oltpbenchmark.jdbc.StatementStatistics;
 import com.oltpbenchmark.types.DatabaseType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +34,7 @@ import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 public abstract class Procedure {
@@ -38,6 +43,10 @@ public abstract class Procedure {
     private final String procName;
     private DatabaseType dbType;
     private Map<String, SQLStmt> name_stmt_xref;
+    private final Map<SQLStmt, String> stmt_name_xref = new IdentityHashMap<>();
+    private StatementCache statementCache = null;
+    private StatementStatistics statementStatistics = null;
+    private ParameterLog parameterLog = null;
 
     /**
      * Constructor
@@ -57,6 +66,9 @@ public abstract class Procedure {
     protected final <T extends Procedure> T initialize(DatabaseType dbType) {
         this.dbType = dbType;
         this.name_stmt_xref = Procedure.getStatements(this);
+        for (Map.Entry<String, SQLStmt> e : this.name_stmt_xref.entrySet()) {
+            this.stmt_name_xref.put(e.getValue(), e.getKey());
+        }
 
         if (LOG.isDebugEnabled()) {
             LOG.debug(String.format("Initialized %s with %d SQLStmts: %s",
@@ -65,6 +77,30 @@ public abstract class Procedure {
         return ((T) this);
     }
 
+    /**
+     * Keep the statements of this Procedure prepared in the given cache of
+     * its Worker, instead of preparing them on every use
+     */
+    final void setStatementCache(StatementCache statementCache) {
+        this.statementCache = statementCache;
+    }
+
+    /**
+     * Time the statements of this Procedure into the given statistics of its
+     * Worker while they are enabled
+     */
+    final void setStatementStatistics(StatementStatistics statementStatistics) {
+        this.statementStatistics = statementStatistics;
+    }
+
+    /**
+     * Log the statements of this Procedure and their parameters into the
+     * given log of its Worker while it is enabled
+     */
+    final void setParameterLog(ParameterLog parameterLog) {
+        this.parameterLog = parameterLog;
+    }
+
     /**
      * Return the name of this Procedure
      */
@@ -104,6 +140,26 @@ public abstract class Procedure {
      * @throws SQLException
      */
     public final PreparedStatement getPreparedStatementReturnKeys(Connection conn, SQLStmt stmt, int[] is) throws SQLException {
+        PreparedStatement pStmt;
+        if (this.statementCache != null) {
+            pStmt = this.statementCache.get(conn, stmt, is, () -> this.prepareStatement(conn, stmt, is));
+        } else {
+            pStmt = this.prepareStatement(conn, stmt, is);
+        }
+        boolean timed = this.statementStatistics != null && this.statementStatistics.isEnabled();
+        boolean logged = this.parameterLog != null && this.parameterLog.isEnabled();
+        if (timed || logged) {
+            // Statements that are not public fields are known by their SQL
+            String stmtName = this.stmt_name_xref.getOrDefault(stmt, stmt.getSQL());
+            pStmt = new InstrumentedPreparedStatement(pStmt,
+                    timed ? this.statementStatistics.get(this.procName, stmtName) : null,
+                    stmtName,
+                    logged ? this.parameterLog : null);
+        }
+        return pStmt;
+    }
+
+    private PreparedStatement prepareStatement(Connection conn, SQLStmt stmt, int[] is) throws SQLException {
 
         PreparedStatement pStmt = null;
 
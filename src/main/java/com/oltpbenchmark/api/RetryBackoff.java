@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark.api;
+
+import java.util.SplittableRandom;
+
+/**
+ * Exponential backoff with full jitter between the attempts of a retried
+ * transaction: before retry n a Worker waits a uniformly random time between
+ * 0 and min(maximum, base * 2^n). Spreading the retries out keeps conflicting
+ * terminals from colliding again right away.
+ * <p>
+ * Not thread-safe, every Worker has its own.
+ */
+public final class RetryBackoff {
+
+    private final int baseMillis;
+    private final int maxMillis;
+    private final long baseNanoseconds;
+    private final long maxNanoseconds;
+    private final SplittableRandom random;
+
+    /**
+     * @param baseMillis backoff before the first retry, 0 to retry immediately
+     * @param maxMillis  the longest backoff
+     */
+    public RetryBackoff(int baseMillis, int maxMillis) {
+        this(baseMillis, maxMillis, new SplittableRandom());
+    }
+
+    RetryBackoff(int baseMillis, int maxMillis, SplittableRandom random) {
+        if (baseMillis < 0 || maxMillis < baseMillis) {
+            throw new IllegalArgumentException(String.format("Invalid retry backoff: base %d ms, maximum %d ms", baseMillis, maxMillis));
+        }
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+        this.baseNanoseconds = baseMillis * 1000000L;
+        this.maxNanoseconds = maxMillis * 1000000L;
+        this.random = random;
+    }
+
+    /**
+     * @return a backoff with the same settings and its own random generator,
+     * for another Worker
+     */
+    public RetryBackoff copy() {
+        return new RetryBackoff(baseMillis, maxMillis);
+    }
+
+    /**
+     * @param retry the number of the retry, starting at 0
+     * @return how long to wait before it, in nanoseconds
+     */
+    public long nextDelay(int retry) {
+        if (baseNanoseconds == 0) {
+            return 0;
+        }
+        long ceiling = maxNanoseconds;
+        if (retry < 62 && baseNanoseconds <= (maxNanoseconds >> retry)) {
+            ceiling = baseNanoseconds << retry;
+        }
+        return random.nextLong(ceiling + 1);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark.api;
+
+import com.oltpbenchmark.types.DatabaseType;
+
+import java.sql.SQLException;
+
+/**
+ * The built-in retry policies, one per family of databases. They only retry
+ * conflicts the database resolved by rolling the transaction back, such as
+ * deadlocks and serialization failures.
+ */
+public enum RetryPolicies implements RetryPolicy {
+
+    /**
+     * What every Worker retried before policies were configurable: MySQL
+     * deadlocks and lock wait timeouts, and Postgres serialization failures
+     */
+    DEFAULT {
+        @Override
+        public boolean isRetryable(SQLException ex) {
+            return MYSQL.isRetryable(ex) || POSTGRES.isRetryable(ex);
+        }
+    },
+
+    /**
+     * https://dev.mysql.com/doc/connector-j/8.0/en/connector-j-reference-error-sqlstates.html
+     */
+    MYSQL {
+        @Override
+        public boolean isRetryable(SQLException ex) {
+            // ER_LOCK_DEADLOCK and ER_LOCK_WAIT_TIMEOUT
+            return "40001".equals(ex.getSQLState()) && (ex.getErrorCode() == 1213 || ex.getErrorCode() == 1205);
+        }
+    },
+
+    /**
+     * https://www.postgresql.org/docs/current/errcodes-appendix.html
+     */
+    POSTGRES {
+        @Override
+        public boolean isRetryable(SQLException ex) {
+            // serialization_failure
+            return ex.getErrorCode() == 0 && "40001".equals(ex.getSQLState());
+        }
+    },
+
+    /**
+     * https://www.cockroachlabs.com/docs/stable/transaction-retry-error-reference
+     */
+    COCKROACHDB {
+        @Override
+        public boolean isRetryable(SQLException ex) {
+            // Every transaction retry error, whatever the reason
+            return "40001".equals(ex.getSQLState());
+        }
+    },
+
+    /**
+     * https://learn.microsoft.com/en-us/sql/relational-databases/errors-events/database-engine-events-and-errors
+     */
+    SQLSERVER {
+        @Override
+        public boolean isRetryable(SQLException ex) {
+            return switch (ex.getErrorCode()) {
+                // deadlock victim, snapshot isolation update conflict
+                case 1205, 3960 -> true;
+                default -> "40001".equals(ex.getSQLState());
+            };
+        }
+    },
+
+    /**
+     * Never retries, every failure is final
+     */
+    NONE {
+        @Override
+        public boolean isRetryable(SQLException ex) {
+            return false;
+        }
+    };
+
+    public static RetryPolicy forDatabase(DatabaseType dbType) {
+        if (dbType == null) {
+            return DEFAULT;
+        }
+        return switch (dbType) {
+            case MYSQL, MARIADB, MYROCKS, SINGLESTORE -> MYSQL;
+            case POSTGRES -> POSTGRES;
+            case COCKROACHDB -> COCKROACHDB;
+            case SQLSERVER, SQLAZURE -> SQLSERVER;
+            default -> DEFAULT;
+        };
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark.api;
+
+import com.oltpbenchmark.types.DatabaseType;
+import com.oltpbenchmark.util.ClassUtil;
+
+import java.sql.SQLException;
+
+/**
+ * Decides which failed transactions a Worker retries. Select one with
+ * {@code <retry><policy>...</policy></retry>} in the workload configuration:
+ * the name of one of the {@link RetryPolicies}, or the class name of an
+ * implementation with a public no-argument constructor.
+ */
+public interface RetryPolicy {
+
+    /**
+     * @return true if the transaction that failed with {@code ex} was rolled
+     * back and may succeed when it is attempted again
+     */
+    boolean isRetryable(SQLException ex);
+
+    /**
+     * @param name   a policy name, a class name, or null for the default of the database
+     * @param dbType the database the workload runs against
+     */
+    static RetryPolicy forName(String name, DatabaseType dbType) {
+        if (name == null || name.isEmpty()) {
+            return RetryPolicies.forDatabase(dbType);
+        }
+        for (RetryPolicies policy : RetryPolicies.values()) {
+            if (policy.name().equalsIgnoreCase(name)) {
+                return policy;
+            }
+        }
+        return ClassUtil.newInstance(name, new Object[0], new Class<?>[0]);
+    }
+}
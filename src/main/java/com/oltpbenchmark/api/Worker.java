@@ -19,13 +19,21 @@ package com.oltpbenchmark.api;
 
 import com.oltpbenchmark.*;
 import com.oltpbenchmark.api.Procedure.UserAbortException;
+import com.oltpbenchmark.jdbc.ParameterLog;
+import com.oltpbenchmark.jdbc.StatementCache;
+import com.oltpbenchmark.jdbc.StatementStatistics;
 import com.oltpbenchmark.types.DatabaseType;
 import com.oltpbenchmark.types.State;
 import com.oltpbenchmark.types.TransactionStatus;
 import com.oltpbenchmark.util.Histogram;
+import com.oltpbenchmark.util.LatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -34,6 +42,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import static com.oltpbenchmark.types.State.MEASURE;
 
@@ -43,11 +52,29 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
 
     private WorkloadState workloadState;
     private LatencyRecord latencies;
+    private final Map<TransactionType, LatencyHistogram> latencyHistograms = new HashMap<>();
+    private final Map<TransactionType, LatencyHistogram> responseTimeHistograms = new HashMap<>();
+    private final Map<TransactionType, LatencyHistogram> queueDelayHistograms = new HashMap<>();
+    private final Map<Integer, PhaseMeasurements> phaseMeasurements = new HashMap<>();
+    // How long opening and closing connections took during measurement, in
+    // microseconds, when connecting for every transaction
+    private final LatencyHistogram connectHistogram = new LatencyHistogram();
+    private final LatencyHistogram disconnectHistogram = new LatencyHistogram();
+    private PhaseMeasurements currentPhaseMeasurements;
+    // Whether the transaction being executed started while measuring
+    private boolean measuring = false;
+    private int requests = 0;
     private final Statement currStatement;
 
     // Interval requests used by the monitor
     private final AtomicInteger intervalRequests = new AtomicInteger(0);
 
+    // Interval latencies and outcomes used by the monitor
+    private final IntervalRecorder intervalRecorder = new IntervalRecorder();
+
+    // Warmup latencies, only recorded for an adaptive warmup to look at
+    private final IntervalRecorder warmupRecorder = new IntervalRecorder();
+
     private final int id;
     private final T benchmark;
     protected Connection conn = null;
@@ -57,6 +84,16 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
     protected final Map<String, Procedure> name_procedures = new HashMap<>();
     protected final Map<Class<? extends Procedure>, Procedure> class_procedures = new HashMap<>();
 
+    // Prepared statements of the procedures on this.conn, null if disabled
+    private final StatementCache statementCache;
+
+    // Per-statement timings of the measured transactions, null if disabled
+    private final StatementStatistics statementStatistics;
+
+    // Slowest measured transactions and the statements of the current one, null if disabled
+    private final Outliers outliers;
+    private final ParameterLog parameterLog;
+
     private final Histogram<TransactionType> txnUnknown = new Histogram<>();
     private final Histogram<TransactionType> txnSuccess = new Histogram<>();
     private final Histogram<TransactionType> txnAbort = new Histogram<>();
@@ -64,30 +101,57 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
     private final Histogram<TransactionType> txnErrors = new Histogram<>();
     private final Histogram<TransactionType> txtRetryDifferent = new Histogram<>();
 
+    // Which errors are retried and how long to wait before retrying them
+    private final RetryPolicy retryPolicy;
+    private final RetryBackoff retryBackoff;
+
+    // Attempts made and time spent backing off (in microseconds) by the
+    // measured transactions, by transaction type
+    private final Histogram<TransactionType> attempts = new Histogram<>();
+    private final Map<TransactionType, LatencyHistogram> backoffHistograms = new HashMap<>();
+
+    // Where the response time of the measured transactions went, by transaction type
+    private final Map<TransactionType, LatencyBreakdown> latencyBreakdowns = new HashMap<>();
+
+    // Attempts, backoff, commit, rollback, connect and close times of the
+    // last doWork() call
+    private int lastAttempts = 0;
+    private long lastBackoffNanoseconds = 0;
+    private long lastConnectNanoseconds = 0;
+    private long lastDisconnectNanoseconds = 0;
+    private long lastCommitNanoseconds = 0;
+    private long lastRollbackNanoseconds = 0;
+
     private boolean seenDone = false;
 
+    // How long connect() took, in microseconds, -1 if it did not connect
+    private long setupMicroseconds = -1;
+
+    // Own arrival schedule, used when workers generate their own arrivals
+    private final WorkerArrivals arrivals = new WorkerArrivals();
+
     public Worker(T benchmark, int id) {
         this.id = id;
         this.benchmark = benchmark;
         this.configuration = this.benchmark.getWorkloadConfiguration();
+        this.retryPolicy = this.configuration.getRetryPolicy();
+        this.retryBackoff = this.configuration.getRetryBackoff().copy();
         this.workloadState = this.configuration.getWorkloadState();
         this.currStatement = null;
         this.transactionTypes = this.configuration.getTransTypes();
 
-        if (!this.configuration.getNewConnectionPerTxn()) {
-            try {
-                this.conn = this.benchmark.makeConnection();
-                this.conn.setAutoCommit(false);
-                this.conn.setTransactionIsolation(this.configuration.getIsolationMode());
-            } catch (SQLException ex) {
-                throw new RuntimeException("Failed to connect to database", ex);
-            }
-        }
+        this.statementCache = this.configuration.getStatementCache() ? new StatementCache() : null;
+        this.statementStatistics = this.configuration.getInstrumentStatements() ? new StatementStatistics() : null;
+        this.outliers = this.configuration.getOutlierCount() > 0 ? new Outliers(this.configuration.getOutlierCount()) : null;
+        this.parameterLog = this.outliers != null ? new ParameterLog() : null;
 
         // Generate all the Procedures that we're going to need
         this.procedures.putAll(this.benchmark.getProcedures());
         for (Entry<TransactionType, Procedure> e : this.procedures.entrySet()) {
             Procedure proc = e.getValue();
+            proc.setStatementCache(this.statementCache);
+            proc.setStatementStatistics(this.statementStatistics);
+            proc.setParameterLog(this.parameterLog);
             this.name_procedures.put(e.getKey().getName(), proc);
             this.class_procedures.put(proc.getClass(), proc);
         }
@@ -121,17 +185,112 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
     }
 
     public final int getRequests() {
-        return latencies.size();
+        return requests;
     }
 
     public final int getAndResetIntervalRequests() {
         return intervalRequests.getAndSet(0);
     }
 
-    public final Iterable<LatencyRecord.Sample> getLatencyRecords() {
+    public final IntervalRecorder getIntervalRecorder() {
+        return intervalRecorder;
+    }
+
+    /**
+     * Latencies of the warmup transactions, kept apart from the measured ones
+     * and only recorded if the workload has an adaptive warmup
+     */
+    public final IntervalRecorder getWarmupRecorder() {
+        return warmupRecorder;
+    }
+
+    public final LatencyRecord getLatencyRecords() {
         return latencies;
     }
 
+    /**
+     * Latency histograms (in microseconds) of the measured requests, by transaction type
+     */
+    public final Map<TransactionType, LatencyHistogram> getLatencyHistograms() {
+        return latencyHistograms;
+    }
+
+    /**
+     * Response time histograms (queue delay plus service time, in microseconds), by transaction type
+     */
+    public final Map<TransactionType, LatencyHistogram> getResponseTimeHistograms() {
+        return responseTimeHistograms;
+    }
+
+    /**
+     * Queue delay histograms (in microseconds), by transaction type
+     */
+    public final Map<TransactionType, LatencyHistogram> getQueueDelayHistograms() {
+        return queueDelayHistograms;
+    }
+
+    /**
+     * Time (in microseconds) spent backing off between the attempts of the
+     * measured requests, by transaction type
+     */
+    public final Map<TransactionType, LatencyHistogram> getBackoffHistograms() {
+        return backoffHistograms;
+    }
+
+    /**
+     * Execution, commit, rollback, backoff and queue times of the measured
+     * requests, by transaction type
+     */
+    public final Map<TransactionType, LatencyBreakdown> getLatencyBreakdowns() {
+        return latencyBreakdowns;
+    }
+
+    /**
+     * Number of attempts made by the measured requests, by transaction type
+     */
+    public final Histogram<TransactionType> getAttemptsHistogram() {
+        return attempts;
+    }
+
+    /**
+     * Execution and fetch times of the statements used by the measured
+     * transactions, null unless statements are instrumented
+     */
+    public final StatementStatistics getStatementStatistics() {
+        return statementStatistics;
+    }
+
+    /**
+     * The slowest measured transactions, null unless outliers are kept
+     */
+    public final Outliers getOutliers() {
+        return outliers;
+    }
+
+    /**
+     * Time (in microseconds) it took to connect before measured transactions,
+     * only recorded when connecting for every transaction
+     */
+    public final LatencyHistogram getConnectHistogram() {
+        return connectHistogram;
+    }
+
+    /**
+     * Time (in microseconds) it took to close the connection after measured
+     * transactions, only recorded when connecting for every transaction
+     */
+    public final LatencyHistogram getDisconnectHistogram() {
+        return disconnectHistogram;
+    }
+
+    /**
+     * Outcomes and latencies broken down by the phase that was current when
+     * the transaction started, keyed by phase id
+     */
+    public final Map<Integer, PhaseMeasurements> getPhaseMeasurements() {
+        return phaseMeasurements;
+    }
+
     public final Procedure getProcedure(TransactionType type) {
         return (this.procedures.get(type));
     }
@@ -189,7 +348,23 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
         t.setName(this.toString());
 
         // In case of reuse reset the measurements
-        latencies = new LatencyRecord(workloadState.getTestStartNs());
+        latencies = createLatencyRecord();
+        latencyHistograms.clear();
+        responseTimeHistograms.clear();
+        queueDelayHistograms.clear();
+        backoffHistograms.clear();
+        attempts.clear();
+        latencyBreakdowns.clear();
+        if (statementStatistics != null) {
+            statementStatistics.reset();
+        }
+        if (outliers != null) {
+            outliers.clear();
+        }
+        connectHistogram.reset();
+        disconnectHistogram.reset();
+        phaseMeasurements.clear();
+        requests = 0;
 
         // Invoke initialize callback
         try {
@@ -232,14 +407,26 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
             // Grab some work and update the state, in case it changed while we
             // waited.
 
-            SubmittedProcedure pieceOfWork = workloadState.fetchWork();
+            SubmittedProcedure pieceOfWork = workloadState.fetchWork(arrivals);
+
+            // We gave up waiting, the phase changed or the benchmark is over
+            if (pieceOfWork == null) {
+                continue;
+            }
+
+            // In rate-limited phases the work may have been waiting in the
+            // queue for a while. That time is part of the response time an
+            // open-loop client would see, so keep track of it.
+            long queueDelay = Math.max(0, System.nanoTime() - pieceOfWork.getStartTime());
 
-            prePhase = workloadState.getCurrentPhase();
+            // One read gives a consistent phase and state
+            Epoch preEpoch = workloadState.getEpoch();
+            prePhase = preEpoch.getPhase();
             if (prePhase == null) {
                 continue;
             }
 
-            preState = workloadState.getGlobalState();
+            preState = preEpoch.getState();
 
             switch (preState) {
                 case DONE, EXIT, LATENCY_COMPLETE -> {
@@ -277,15 +464,27 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
                     }
                 }
 
+                currentPhaseMeasurements = phaseMeasurements.computeIfAbsent(prePhase.getId(), id -> new PhaseMeasurements());
+                measuring = preState == MEASURE;
+
+                if (statementStatistics != null) {
+                    statementStatistics.setEnabled(preState == MEASURE);
+                }
+                if (parameterLog != null) {
+                    parameterLog.clear();
+                    parameterLog.setEnabled(preState == MEASURE);
+                }
+
                 long start = System.nanoTime();
 
-                doWork(configuration.getDatabaseType(), transactionType);
+                TransactionStatus status = doWork(configuration.getDatabaseType(), transactionType);
 
                 long end = System.nanoTime();
 
                 // PART 4: Record results
 
-                State postState = workloadState.getGlobalState();
+                Epoch postEpoch = workloadState.getEpoch();
+                State postState = postEpoch.getState();
 
                 switch (postState) {
                     case MEASURE:
@@ -294,7 +493,7 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
                         // changed, otherwise we're recording results for a query
                         // that either started during the warmup phase or ended
                         // after the timer went off.
-                        Phase postPhase = workloadState.getCurrentPhase();
+                        Phase postPhase = postEpoch.getPhase();
 
                         if (postPhase == null) {
                             // Need a null check on postPhase since current phase being null is used in WorkloadState
@@ -304,13 +503,21 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
                             break;
                         }
                         if (preState == MEASURE && postPhase.getId() == prePhase.getId()) {
-                            latencies.addLatency(transactionType.getId(), start, end, this.id, prePhase.getId());
-                            intervalRequests.incrementAndGet();
+                            recordLatency(transactionType, start, end, queueDelay, status, prePhase);
                         }
                         if (prePhase.isLatencyRun()) {
                             workloadState.startColdQuery();
                         }
                         break;
+                    case WARMUP:
+                        // Not measured, but an adaptive warmup watches the
+                        // intervals to see when the run has stabilized
+                        if (preState == State.WARMUP && configuration.getWarmupDetector() != null) {
+                            // The same service time that is measured later
+                            long serviceMicroseconds = Math.max(0, (getServiceNanoseconds(start, end) + 500) / 1000 - (lastBackoffNanoseconds + 500) / 1000);
+                            warmupRecorder.recordLatency(transactionType.getId(), serviceMicroseconds, (queueDelay + 500) / 1000);
+                        }
+                        break;
                     case COLD_QUERY:
                         // No recording for cold runs, but next time we will since
                         // it'll be a hot run.
@@ -343,6 +550,68 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
         LOG.debug("worker calling teardown");
 
         tearDown();
+
+        latencies.seal();
+        if (latencies.getSpillStalls() > 0) {
+            LOG.warn("{} waited {} times for its latency samples to be written to disk", this, latencies.getSpillStalls());
+        }
+    }
+
+    private LatencyRecord createLatencyRecord() {
+        String spillDirectory = configuration.getLatencySpillDirectory();
+        if (spillDirectory == null || !configuration.getRetainLatencySamples()) {
+            return new LatencyRecord(workloadState.getTestStartNs());
+        }
+        try {
+            Path directory = Files.createDirectories(Paths.get(spillDirectory));
+            Path file = Files.createTempFile(directory, "worker-" + this.id + "-", ".raw.bin");
+            return LatencyRecord.spillingTo(workloadState.getTestStartNs(), file);
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to create latency spill file for " + this + " in " + spillDirectory, ex);
+        }
+    }
+
+    /**
+     * @return the time the last doWork() call spent on its attempts and
+     * backing off between them, without connecting and closing the
+     * connection, which is reported as connection churn instead
+     */
+    private long getServiceNanoseconds(long start, long end) {
+        return Math.max(0, end - start - lastConnectNanoseconds - lastDisconnectNanoseconds);
+    }
+
+    private void recordLatency(TransactionType transactionType, long start, long end, long queueDelay, TransactionStatus status, Phase phase) {
+        long elapsed = getServiceNanoseconds(start, end);
+        if (configuration.getRetainLatencySamples()) {
+            latencies.addLatency(transactionType.getId(), start, start + elapsed, queueDelay, lastCommitNanoseconds, lastRollbackNanoseconds, lastBackoffNanoseconds, status, this.id, phase.getId());
+        }
+        // The service time leaves out the backoff between attempts, the
+        // response time includes it like the client would experience it
+        long backoffMicroseconds = (lastBackoffNanoseconds + 500) / 1000;
+        long serviceMicroseconds = Math.max(0, (elapsed + 500) / 1000 - backoffMicroseconds);
+        long queueMicroseconds = (queueDelay + 500) / 1000;
+        latencyHistograms.computeIfAbsent(transactionType, t -> new LatencyHistogram()).add(serviceMicroseconds);
+        responseTimeHistograms.computeIfAbsent(transactionType, t -> new LatencyHistogram()).add(serviceMicroseconds + backoffMicroseconds + queueMicroseconds);
+        queueDelayHistograms.computeIfAbsent(transactionType, t -> new LatencyHistogram()).add(queueMicroseconds);
+        if (lastAttempts > 0) {
+            attempts.put(transactionType, lastAttempts);
+        }
+        if (lastAttempts > 1) {
+            backoffHistograms.computeIfAbsent(transactionType, t -> new LatencyHistogram()).add(backoffMicroseconds);
+        }
+        long commitMicroseconds = (lastCommitNanoseconds + 500) / 1000;
+        long rollbackMicroseconds = (lastRollbackNanoseconds + 500) / 1000;
+        long executionMicroseconds = Math.max(0, serviceMicroseconds - commitMicroseconds - rollbackMicroseconds);
+        latencyBreakdowns.computeIfAbsent(transactionType, t -> new LatencyBreakdown())
+                .record(executionMicroseconds, commitMicroseconds, rollbackMicroseconds, backoffMicroseconds, queueMicroseconds);
+        phaseMeasurements.computeIfAbsent(phase.getId(), id -> new PhaseMeasurements()).recordLatency(transactionType, serviceMicroseconds, queueMicroseconds, backoffMicroseconds);
+        if (outliers != null && outliers.admits(serviceMicroseconds)) {
+            outliers.add(new Outliers.Outlier(transactionType, start, serviceMicroseconds, serviceMicroseconds + backoffMicroseconds + queueMicroseconds,
+                    lastAttempts, status, this.id, phase.getId(), parameterLog.describe()));
+        }
+        intervalRecorder.recordLatency(transactionType.getId(), serviceMicroseconds, queueMicroseconds);
+        requests++;
+        intervalRequests.incrementAndGet();
     }
 
     private TransactionType getTransactionType(SubmittedProcedure pieceOfWork, Phase phase, State state, WorkloadState workloadState) {
@@ -382,8 +651,17 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
      *
      * @param databaseType TODO
      * @param transactionType TODO
+     * @return the status of the last attempt, or UNKNOWN if none was made
      */
-    protected final void doWork(DatabaseType databaseType, TransactionType transactionType) {
+    protected final TransactionStatus doWork(DatabaseType databaseType, TransactionType transactionType) {
+
+        TransactionStatus finalStatus = TransactionStatus.UNKNOWN;
+        lastAttempts = 0;
+        lastBackoffNanoseconds = 0;
+        lastConnectNanoseconds = 0;
+        lastDisconnectNanoseconds = 0;
+        lastCommitNanoseconds = 0;
+        lastRollbackNanoseconds = 0;
 
         try {
             int retryCount = 0;
@@ -395,9 +673,7 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
 
                 if (this.conn == null) {
                     try {
-                        this.conn = this.benchmark.makeConnection();
-                        this.conn.setAutoCommit(false);
-                        this.conn.setTransactionIsolation(this.configuration.getIsolationMode());
+                        openConnection();
                     } catch (SQLException ex) {
                         if (LOG.isDebugEnabled()) {
                             LOG.debug(String.format("%s failed to open a connection...", this));
@@ -409,6 +685,8 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
 
                 try {
 
+                    lastAttempts++;
+
                     if (LOG.isDebugEnabled()) {
                         LOG.debug(String.format("%s %s attempting...", this, transactionType));
                     }
@@ -423,12 +701,12 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
                         LOG.debug(String.format("%s %s committing...", this, transactionType));
                     }
 
-                    conn.commit();
+                    commit();
 
                     break;
 
                 } catch (UserAbortException ex) {
-                    conn.rollback();
+                    rollback();
 
                     ABORT_LOG.debug(String.format("%s Aborted", transactionType), ex);
 
@@ -437,13 +715,19 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
                     break;
 
                 } catch (SQLException ex) {
-                    conn.rollback();
+                    rollback();
 
-                    if (isRetryable(ex)) {
+                    LOG.debug("sql state [{}] and error code [{}]", ex.getSQLState(), ex.getErrorCode());
+
+                    if (ex.getSQLState() != null && retryPolicy.isRetryable(ex)) {
                         LOG.debug(String.format("Retryable SQLException occurred during [%s]... current retry attempt [%d], max retry attempts [%d], sql state [%s], error code [%d].", transactionType, retryCount, maxRetryCount, ex.getSQLState(), ex.getErrorCode()), ex);
 
                         status = TransactionStatus.RETRY;
 
+                        if (retryCount + 1 < maxRetryCount) {
+                            backOff(retryCount);
+                        }
+
                         retryCount++;
                     } else {
                         LOG.warn(String.format("SQLException occurred during [%s] and will not be retried... sql state [%s], error code [%d].", transactionType, ex.getSQLState(), ex.getErrorCode()), ex);
@@ -455,12 +739,7 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
 
                 } finally {
                     if (this.configuration.getNewConnectionPerTxn() && this.conn != null) {
-                        try {
-                            this.conn.close();
-                            this.conn = null;
-                        } catch (SQLException e) {
-                            LOG.error("Connection couldn't be closed.", e);
-                        }
+                        closeConnection();
                     }
 
                     switch (status) {
@@ -472,6 +751,18 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
                         case ERROR -> this.txnErrors.put(transactionType);
                     }
 
+                    // Like their latencies, the outcomes of warmup
+                    // transactions are not part of the interval statistics
+                    if (this.measuring) {
+                        this.intervalRecorder.recordOutcome(transactionType.getId(), status);
+                    }
+
+                    if (this.currentPhaseMeasurements != null) {
+                        this.currentPhaseMeasurements.recordOutcome(transactionType, status);
+                    }
+
+                    finalStatus = status;
+
                 }
 
             }
@@ -481,35 +772,38 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
             throw new RuntimeException(msg, ex);
         }
 
+        return finalStatus;
     }
 
-    private boolean isRetryable(SQLException ex) {
-
-        String sqlState = ex.getSQLState();
-        int errorCode = ex.getErrorCode();
-
-        LOG.debug("sql state [{}] and error code [{}]", sqlState, errorCode);
-
-        if (sqlState == null) {
-            return false;
+    private void commit() throws SQLException {
+        if (statementCache != null) {
+            statementCache.checkClosed();
+        }
+        long start = System.nanoTime();
+        try {
+            conn.commit();
+        } finally {
+            lastCommitNanoseconds += System.nanoTime() - start;
         }
+    }
 
-        // ------------------
-        // MYSQL: https://dev.mysql.com/doc/connector-j/8.0/en/connector-j-reference-error-sqlstates.html
-        // ------------------
-        if (errorCode == 1213 && sqlState.equals("40001")) {
-            // MySQL ER_LOCK_DEADLOCK
-            return true;
-        } else if (errorCode == 1205 && sqlState.equals("40001")) {
-            // MySQL ER_LOCK_WAIT_TIMEOUT
-            return true;
+    private void rollback() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            conn.rollback();
+        } finally {
+            lastRollbackNanoseconds += System.nanoTime() - start;
         }
+    }
 
-        // ------------------
-        // POSTGRES: https://www.postgresql.org/docs/current/errcodes-appendix.html
-        // ------------------
-        // Postgres serialization_failure
-        return errorCode == 0 && sqlState.equals("40001");
+    private void backOff(int retry) {
+        long delay = retryBackoff.nextDelay(retry);
+        if (delay <= 0 || this.workloadState.getGlobalState() == State.DONE) {
+            return;
+        }
+        long start = System.nanoTime();
+        LockSupport.parkNanos(delay);
+        lastBackoffNanoseconds += System.nanoTime() - start;
     }
 
     /**
@@ -535,13 +829,101 @@ public abstract class Worker<T extends BenchmarkModule> implements Runnable {
      * Called at the end of the test to do any clean up that may be required.
      */
     public void tearDown() {
+        if (this.statementCache != null) {
+            LOG.debug("{} statement cache: {} hits, {} misses", this, this.statementCache.getHits(), this.statementCache.getMisses());
+        }
         if (!this.configuration.getNewConnectionPerTxn() && this.conn != null) {
-            try {
-                conn.close();
-            } catch (SQLException e) {
-                LOG.error("Connection couldn't be closed.", e);
+            closeConnection();
+        }
+    }
+
+    /**
+     * Opens the connection the worker keeps for the whole run. Called by
+     * {@link BenchmarkModule#makeWorkers()}, possibly from another thread;
+     * workers that connect for every transaction, or that were not connected,
+     * connect when they need to.
+     */
+    public final void connect() throws SQLException {
+        if (this.configuration.getNewConnectionPerTxn() || this.conn != null) {
+            return;
+        }
+        long start = System.nanoTime();
+        openConnection();
+        this.setupMicroseconds = (System.nanoTime() - start + 500) / 1000;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} connected in {} ms", this, this.setupMicroseconds / 1000d);
+        }
+    }
+
+    /**
+     * Closes the connection of a worker that will not run, e.g. because
+     * another one failed to connect
+     */
+    public final void disconnect() {
+        if (this.conn != null) {
+            closeConnection();
+        }
+    }
+
+    /**
+     * @return how long {@link #connect()} took including the connection
+     * setup, in microseconds, -1 if it did not connect
+     */
+    public final long getSetupMicroseconds() {
+        return this.setupMicroseconds;
+    }
+
+    /**
+     * Connects this.conn, from the pool if there is one
+     */
+    private void openConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            this.conn = this.benchmark.acquireConnection();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            this.lastConnectNanoseconds += elapsed;
+            if (this.conn != null) {
+                recordConnectionTime(this.connectHistogram, elapsed);
             }
         }
+        this.conn.setAutoCommit(false);
+        this.conn.setTransactionIsolation(this.configuration.getIsolationMode());
+    }
+
+    /**
+     * Closes this.conn, or returns it to the pool
+     */
+    private void closeConnection() {
+        clearStatementCache();
+        long start = System.nanoTime();
+        try {
+            this.benchmark.releaseConnection(this.conn);
+        } catch (SQLException e) {
+            LOG.error("Connection couldn't be closed.", e);
+        }
+        this.conn = null;
+        long elapsed = System.nanoTime() - start;
+        this.lastDisconnectNanoseconds += elapsed;
+        recordConnectionTime(this.disconnectHistogram, elapsed);
+    }
+
+    private void recordConnectionTime(LatencyHistogram histogram, long nanoseconds) {
+        // Connecting once per worker is not worth reporting, connection churn is
+        if (this.configuration.getNewConnectionPerTxn() && this.workloadState != null
+                && this.workloadState.getGlobalState() == MEASURE) {
+            histogram.add((nanoseconds + 500) / 1000);
+        }
+    }
+
+    /**
+     * Closes the cached statements, must be called before this.conn is closed
+     * or replaced
+     */
+    protected final void clearStatementCache() {
+        if (this.statementCache != null) {
+            this.statementCache.clear();
+        }
     }
 
     public void initializeState() {
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.oltpbenchmark.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small pool of physical connections, so that workers that connect for
+ * every transaction can be benchmarked with and without a pooler in front of
+ * the database.
+ * <p>
+ * At most {@code size} connections are handed out at once, {@link #acquire()}
+ * blocks until one is released. Idle connections are reused most recently
+ * released first. A connection that is older than the maximum lifetime is
+ * closed instead of being reused, and with a validation timeout an idle
+ * connection is checked with {@link Connection#isValid(int)} before it is
+ * handed out again.
+ */
+public final class ConnectionPool implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
+
+    /**
+     * Opens a new physical connection
+     */
+    @FunctionalInterface
+    public interface Connector {
+        Connection connect() throws SQLException;
+    }
+
+    private final Connector connector;
+    private final int size;
+    private final int validationTimeout;
+    private final long maxLifetimeNanos;
+
+    private final Semaphore permits;
+    private final BlockingDeque<Connection> idle = new LinkedBlockingDeque<>();
+    // When each open connection was created, as returned by System.nanoTime()
+    private final Map<Connection, Long> created = new ConcurrentHashMap<>();
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong retired = new AtomicLong();
+    private volatile boolean closed = false;
+
+    /**
+     * @param connector         opens physical connections
+     * @param size              the most connections handed out at once
+     * @param validationTimeout seconds to wait for an idle connection to be validated, 0 to not validate
+     * @param maxLifetime       seconds after which a connection is closed instead of reused, 0 for no limit
+     */
+    public ConnectionPool(Connector connector, int size, int validationTimeout, int maxLifetime) {
+        if (size < 1 || validationTimeout < 0 || maxLifetime < 0) {
+            throw new IllegalArgumentException(String.format("Invalid connection pool: size %d, validation timeout %d, maximum lifetime %d", size, validationTimeout, maxLifetime));
+        }
+        this.connector = connector;
+        this.size = size;
+        this.validationTimeout = validationTimeout;
+        this.maxLifetimeNanos = maxLifetime * 1000000000L;
+        this.permits = new Semaphore(size, true);
+    }
+
+    /**
+     * @return an idle connection, or a new one if none can be reused
+     */
+    public Connection acquire() throws SQLException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        }
+        try {
+            acquired.incrementAndGet();
+            Connection conn;
+            while ((conn = idle.pollFirst()) != null) {
+                if (isExpired(conn)) {
+                    retire(conn);
+                } else if (validationTimeout > 0 && !conn.isValid(validationTimeout)) {
+                    LOG.debug("Pooled connection failed validation");
+                    retire(conn);
+                } else {
+                    return conn;
+                }
+            }
+            conn = connector.connect();
+            created.put(conn, System.nanoTime());
+            opened.incrementAndGet();
+            return conn;
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns a connection from {@link #acquire()} to the pool
+     */
+    public void release(Connection conn) {
+        try {
+            if (closed || conn.isClosed() || isExpired(conn)) {
+                retire(conn);
+            } else {
+                idle.offerFirst(conn);
+            }
+        } catch (SQLException ex) {
+            retire(conn);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isExpired(Connection conn) {
+        Long createdNanos = created.get(conn);
+        return maxLifetimeNanos > 0 && createdNanos != null && System.nanoTime() - createdNanos >= maxLifetimeNanos;
+    }
+
+    private void retire(Connection conn) {
+        created.remove(conn);
+        retired.incrementAndGet();
+        try {
+            conn.close();
+        } catch (SQLException ex) {
+            LOG.debug("Pooled connection couldn't be closed.", ex);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of connections handed out so far
+     */
+    public long getAcquired() {
+        return acquired.get();
+    }
+
+    /**
+     * @return the number of physical connections opened so far
+     */
+    public long getOpened() {
+        return opened.get();
+    }
+
+    /**
+     * @return the number of physical connections closed because they expired or broke
+     */
+    public long getRetired() {
+        return retired.get();
+    }
+
+    /**
+     * Closes the idle connections. Connections that are still handed out are
+     * closed when they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Connection conn;
+        while ((conn = idle.pollFirst()) != null) {
+            created.remove(conn);
+            try {
+                conn.close();
+            } catch (SQLException ex) {
+                LOG.debug("Pooled connection couldn't be closed.", ex);
+            }
+        }
+    }
+}
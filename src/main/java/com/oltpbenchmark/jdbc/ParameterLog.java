@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.oltpbenchmark.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The statements a Worker executed in its current transaction with the
+ * parameters bound to them, so that its slowest transactions can be
+ * reproduced. {@link InstrumentedPreparedStatement} adds an entry whenever it
+ * executes. Only the first {@link #MAX_STATEMENTS} executions of a
+ * transaction are kept, later ones are only counted. The entries are reused
+ * from one transaction to the next.
+ * <p>
+ * Not thread-safe, every Worker has its own.
+ */
+public class ParameterLog {
+
+    static final int MAX_STATEMENTS = 32;
+
+    /**
+     * Longest description of a single parameter value
+     */
+    static final int MAX_VALUE_LENGTH = 64;
+
+    private final String[] statements = new String[MAX_STATEMENTS];
+    private final Object[][] parameters = new Object[MAX_STATEMENTS][];
+    private final int[] parameterCounts = new int[MAX_STATEMENTS];
+    private int size = 0;
+    private int dropped = 0;
+    private boolean enabled = false;
+
+    /**
+     * Whether statements used now should log their parameters, the Worker
+     * only enables it for the transactions it measures
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Forget the statements of the previous transaction
+     */
+    public void clear() {
+        this.size = 0;
+        this.dropped = 0;
+    }
+
+    void record(String statement, Object[] values, int count) {
+        if (this.size == MAX_STATEMENTS) {
+            this.dropped++;
+            return;
+        }
+        Object[] copy = this.parameters[this.size];
+        if (copy == null || copy.length < count) {
+            copy = new Object[Math.max(count, 8)];
+            this.parameters[this.size] = copy;
+        }
+        if (count > 0) {
+            System.arraycopy(values, 0, copy, 0, count);
+        }
+        this.statements[this.size] = statement;
+        this.parameterCounts[this.size] = count;
+        this.size++;
+    }
+
+    /**
+     * @return every logged execution of the transaction, as the statement
+     * name followed by its parameters, e.g. {@code GetDistrict(3, 7)}
+     */
+    public List<String> describe() {
+        List<String> descriptions = new ArrayList<>(this.size + 1);
+        for (int i = 0; i < this.size; i++) {
+            StringBuilder sb = new StringBuilder(this.statements[i]).append('(');
+            for (int p = 0; p < this.parameterCounts[i]; p++) {
+                if (p > 0) {
+                    sb.append(", ");
+                }
+                sb.append(describe(this.parameters[i][p]));
+            }
+            descriptions.add(sb.append(')').toString());
+        }
+        if (this.dropped > 0) {
+            descriptions.add(String.format("... %d more", this.dropped));
+        }
+        return descriptions;
+    }
+
+    static String describe(Object value) {
+        String s;
+        if (value == null) {
+            return "null";
+        } else if (value instanceof String) {
+            s = "'" + value + "'";
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof java.util.Date) {
+            s = value.toString();
+        } else if (value instanceof byte[] bytes) {
+            return String.format("<%d bytes>", bytes.length);
+        } else if (value instanceof Object[] array) {
+            s = Arrays.toString(array);
+        } else {
+            // Streams, readers and LOBs are not read
+            return "<" + value.getClass().getSimpleName() + ">";
+        }
+        return s.length() <= MAX_VALUE_LENGTH ? s : s.substring(0, MAX_VALUE_LENGTH) + "...";
+    }
+}
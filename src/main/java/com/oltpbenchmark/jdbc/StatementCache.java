@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.oltpbenchmark.jdbc;
+
+import com.oltpbenchmark.api.SQLStmt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the PreparedStatements of one Worker prepared across transactions,
+ * so they are not parsed and prepared again on every use.
+ * <p>
+ * Statements are keyed by the identity of their SQLStmt, the SQL of the
+ * dialect and the generated key columns. A cache belongs to a single
+ * connection: when it is asked for a statement on another connection, or is
+ * cleared because the Worker closes its connection, every cached statement is
+ * closed. A statement that is still in use, for example when a procedure
+ * opens the same SQLStmt twice, is prepared without caching.
+ * <p>
+ * Not thread-safe, a cache belongs to the thread of its Worker.
+ */
+public final class StatementCache {
+    private static final Logger LOG = LoggerFactory.getLogger(StatementCache.class);
+
+    /**
+     * Prepares a statement that is not cached yet
+     */
+    @FunctionalInterface
+    public interface Preparer {
+        PreparedStatement prepare() throws SQLException;
+    }
+
+    // Cached statements by the identity of their SQLStmt, most have a single
+    // variant, more only if the SQL or the generated key columns differ
+    private final Map<SQLStmt, List<Entry>> statements = new IdentityHashMap<>();
+    private Connection connection = null;
+    private long hits = 0;
+    private long misses = 0;
+    private boolean warnedInUse = false;
+
+    /**
+     * @param conn     the connection the statement is used on
+     * @param stmt     the statement handle of the procedure
+     * @param keys     the generated key columns, or null
+     * @param preparer prepares the statement if it is not cached
+     * @return a statement that returns to the cache when it is closed
+     */
+    public PreparedStatement get(Connection conn, SQLStmt stmt, int[] keys, Preparer preparer) throws SQLException {
+        if (conn != this.connection) {
+            clear();
+            this.connection = conn;
+        }
+        String sql = stmt.getSQL();
+        List<Entry> entries = this.statements.get(stmt);
+        Entry entry = null;
+        if (entries != null) {
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i).matches(sql, keys)) {
+                    entry = entries.get(i);
+                    break;
+                }
+            }
+        }
+        if (entry != null && entry.statement.reuse()) {
+            this.hits++;
+            return entry.statement;
+        }
+        this.misses++;
+        if (entry != null && !entry.statement.isClosed()) {
+            // Still open in the caller, hand out a private one
+            return preparer.prepare();
+        }
+        CachedPreparedStatement cached = new CachedPreparedStatement(preparer.prepare());
+        if (entry != null) {
+            entry.statement = cached;
+        } else {
+            this.statements.computeIfAbsent(stmt, s -> new ArrayList<>(1)).add(new Entry(sql, keys, cached));
+        }
+        return cached;
+    }
+
+    /**
+     * Logs a warning, once, if a cached statement is still open. Called when
+     * a transaction commits: a statement its procedure does not close is never
+     * reused, every later use is a miss and prepares it again, so a run with
+     * the cache would not measure what it is meant to.
+     */
+    public void checkClosed() {
+        if (this.warnedInUse) {
+            return;
+        }
+        for (List<Entry> entries : this.statements.values()) {
+            for (Entry entry : entries) {
+                if (entry.statement.isInUse()) {
+                    LOG.warn("A cached statement is still open when its transaction commits, it will be prepared again on every use: {}", entry.sql);
+                    this.warnedInUse = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes every cached statement. Called before the connection they were
+     * prepared on is closed or replaced.
+     */
+    public void clear() {
+        for (List<Entry> entries : this.statements.values()) {
+            for (Entry entry : entries) {
+                try {
+                    entry.statement.discard();
+                } catch (SQLException ex) {
+                    LOG.debug("Cached statement couldn't be closed.", ex);
+                }
+            }
+        }
+        this.statements.clear();
+        this.connection = null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (List<Entry> entries : this.statements.values()) {
+            size += entries.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return how often a prepared statement was reused
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return how often a statement had to be prepared
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    private static final class Entry {
+        private final String sql;
+        private final int[] keys;
+        private CachedPreparedStatement statement;
+
+        private Entry(String sql, int[] keys, CachedPreparedStatement statement) {
+            this.sql = sql;
+            this.keys = keys;
+            this.statement = statement;
+        }
+
+        private boolean matches(String sql, int[] keys) {
+            return this.sql.equals(sql) && Arrays.equals(this.keys, keys);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.oltpbenchmark.jdbc;
+
+import com.oltpbenchmark.util.LatencyHistogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * How long the statements of every Procedure took to execute and to fetch
+ * their results, by procedure and statement name. Every Worker keeps its own
+ * while it measures and they are merged with {@link #add(StatementStatistics)}.
+ * <p>
+ * Not thread-safe.
+ */
+public class StatementStatistics {
+
+    /**
+     * Times (in microseconds) of a single statement
+     */
+    public static final class Timing {
+        private final LatencyHistogram executeTimes = new LatencyHistogram();
+        private final LatencyHistogram fetchTimes = new LatencyHistogram();
+        private long rows = 0;
+
+        void recordExecute(long nanoseconds) {
+            this.executeTimes.add((nanoseconds + 500) / 1000);
+        }
+
+        void recordFetch(long nanoseconds, long rows) {
+            this.fetchTimes.add((nanoseconds + 500) / 1000);
+            this.rows += rows;
+        }
+
+        /**
+         * Time spent in execute, executeQuery, executeUpdate and executeBatch
+         */
+        public LatencyHistogram getExecuteTimes() {
+            return executeTimes;
+        }
+
+        /**
+         * Time spent iterating over each result set
+         */
+        public LatencyHistogram getFetchTimes() {
+            return fetchTimes;
+        }
+
+        /**
+         * Rows read from the result sets
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        void add(Timing other) {
+            this.executeTimes.add(other.executeTimes);
+            this.fetchTimes.add(other.fetchTimes);
+            this.rows += other.rows;
+        }
+    }
+
+    private final Map<String, Map<String, Timing>> timings = new TreeMap<>();
+    private boolean enabled = false;
+
+    /**
+     * @return the times of a statement, created on first use
+     */
+    public Timing get(String procedure, String statement) {
+        return this.timings.computeIfAbsent(procedure, p -> new TreeMap<>()).computeIfAbsent(statement, s -> new Timing());
+    }
+
+    /**
+     * Timings by procedure and statement name, both sorted
+     */
+    public Map<String, Map<String, Timing>> getTimings() {
+        return this.timings;
+    }
+
+    /**
+     * Whether statements used now should be timed, the Worker only enables
+     * it for the transactions it measures
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEmpty() {
+        return this.timings.isEmpty();
+    }
+
+    /**
+     * Merge the timings of another Worker into these
+     */
+    public void add(StatementStatistics other) {
+        for (Map.Entry<String, Map<String, Timing>> p : other.timings.entrySet()) {
+            for (Map.Entry<String, Timing> s : p.getValue().entrySet()) {
+                get(p.getKey(), s.getKey()).add(s.getValue());
+            }
+        }
+    }
+
+    /**
+     * Forget all timings
+     */
+    public void reset() {
+        this.timings.clear();
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.oltpbenchmark.types;
+
+/**
+ * Who generates the arrivals of rate-limited phases
+ */
+public enum ArrivalScheduling {
+    /**
+     * ThreadBench paces every arrival and hands them out through the shared
+     * work queue
+     */
+    CENTRAL,
+    /**
+     * Every active worker paces its own share of the rate and executes
+     * against its own deadlines
+     */
+    WORKER
+}
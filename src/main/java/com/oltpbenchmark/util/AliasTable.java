@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark.util;
+
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples indexes in proportion to their weights in constant time, using
+ * Vose's alias method.
+ * <p>
+ * Building the table splits the total weight into {@code n} columns of equal
+ * height. Every column holds at most two indexes: its own, with probability
+ * {@code probability[i]}, and an alias that fills up the rest. Sampling picks
+ * a column uniformly and then one of its two indexes, so it takes two random
+ * numbers whatever the number of weights. Fractional weights are exact.
+ * <p>
+ * The table is immutable once built and can be shared between threads; every
+ * thread should pass its own generator.
+ */
+public final class AliasTable {
+
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * @param weights non-negative weights, at least one of them positive
+     */
+    public AliasTable(List<Double> weights) {
+        int n = weights.size();
+        double total = 0;
+        int heaviest = 0;
+        for (int i = 0; i < n; i++) {
+            double weight = weights.get(i);
+            if (weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Weights must be finite and non-negative: " + weights);
+            }
+            total += weight;
+            if (weight > weights.get(heaviest)) {
+                heaviest = i;
+            }
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("At least one weight must be positive: " + weights);
+        }
+
+        this.probability = new double[n];
+        this.alias = new int[n];
+
+        // Scale the weights so the average column is 1, then pair every
+        // column below 1 with one above it
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights.get(i) * n / total;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // Whatever is left is 1 up to rounding errors, but an index with
+        // a weight of 0 must never be sampled
+        while (largeCount > 0) {
+            int i = large[--largeCount];
+            probability[i] = 1;
+            alias[i] = i;
+        }
+        while (smallCount > 0) {
+            int i = small[--smallCount];
+            probability[i] = weights.get(i) > 0 ? 1 : 0;
+            alias[i] = weights.get(i) > 0 ? i : heaviest;
+        }
+    }
+
+    /**
+     * @return an index between 0 and the number of weights (exclusive)
+     */
+    public int sample(RandomGenerator random) {
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+
+    public int size() {
+        return probability.length;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark.util;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable, log-linear histogram of latencies (in the spirit of HdrHistogram).
+ * <p>
+ * Values below {@code 2^SUB_BUCKET_BITS} are counted exactly. Larger values are
+ * grouped into buckets whose width doubles every power of two, with
+ * {@code 2^(SUB_BUCKET_BITS - 1)} linear sub-buckets per power of two, so the
+ * value reported for any percentile is within {@link #RELATIVE_ERROR} of the
+ * true sample. Count, minimum, maximum, mean and standard deviation are exact.
+ * <p>
+ * The counts array is grown lazily up to the highest bucket seen, so a histogram
+ * of sub-second latencies costs a few kilobytes. Instances are not thread-safe:
+ * each Worker records into its own and they are merged with {@link #add(LatencyHistogram)}.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+    /**
+     * Upper bound on the error of any reported percentile, relative to the value
+     */
+    public static final double RELATIVE_ERROR = 1.0 / SUB_BUCKET_COUNT;
+
+    private long[] counts = new long[SUB_BUCKET_COUNT];
+    private long count = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private double sum = 0;
+    private double sumOfSquares = 0;
+
+    /**
+     * Record a single value (usually in microseconds). Negative values are
+     * recorded as zero.
+     */
+    public void add(long value) {
+        add(value, 1);
+    }
+
+    /**
+     * Record the same value multiple times
+     */
+    public void add(long value, long times) {
+        if (times <= 0) {
+            return;
+        }
+        if (value < 0) {
+            value = 0;
+        }
+        int index = indexOf(value);
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length + SUB_BUCKET_HALF_COUNT));
+        }
+        counts[index] += times;
+        count += times;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += (double) value * times;
+        sumOfSquares += (double) value * value * times;
+    }
+
+    /**
+     * Merge all the values recorded in another histogram into this one
+     */
+    public void add(LatencyHistogram other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+    }
+
+    /**
+     * Forget all recorded values
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+        sum = 0;
+        sumOfSquares = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public long getMinimum() {
+        return count == 0 ? -1 : min;
+    }
+
+    public long getMaximum() {
+        return count == 0 ? -1 : max;
+    }
+
+    public double getMean() {
+        return count == 0 ? -1 : sum / count;
+    }
+
+    /**
+     * @return the sample standard deviation
+     */
+    public double getStandardDeviation() {
+        if (count < 2) {
+            return count == 0 ? -1 : 0;
+        }
+        double mean = sum / count;
+        double variance = (sumOfSquares - mean * sum) / (count - 1);
+        return Math.sqrt(Math.max(0, variance));
+    }
+
+    /**
+     * Returns the value at the given percentile, using the same closest-rank
+     * selection as {@link com.oltpbenchmark.DistributionStatistics}: the sample
+     * at index {@code (int) (percentile * count)} of the sorted values.
+     *
+     * @param percentile a fraction between 0.0 and 1.0 (e.g. 0.999 for p99.9)
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return -1;
+        }
+        long rank = (long) (percentile * count);
+        if (rank >= count) {
+            rank = count - 1;
+        }
+        if (rank <= 0) {
+            return min;
+        } else if (rank == count - 1) {
+            return max;
+        }
+
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                long value = lowestValueAt(i) + (bucketWidthAt(i) - 1) / 2;
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns how many recorded values are at or below the given value. The
+     * bucket containing the value is counted in full, so the answer has the
+     * same resolution as the percentiles.
+     */
+    public long getCountAtOrBelow(long value) {
+        if (count == 0 || value < min) {
+            return 0;
+        } else if (value >= max) {
+            return count;
+        }
+        int last = Math.min(indexOf(value), counts.length - 1);
+        long seen = 0;
+        for (int i = 0; i <= last; i++) {
+            seen += counts[i];
+        }
+        return seen;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        int mantissa = (int) (value >>> exponent);
+        return exponent * SUB_BUCKET_HALF_COUNT + mantissa;
+    }
+
+    static long lowestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKET_HALF_COUNT - 1;
+        long mantissa = index - (long) exponent * SUB_BUCKET_HALF_COUNT;
+        return mantissa << exponent;
+    }
+
+    static long bucketWidthAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return 1;
+        }
+        return 1L << (index / SUB_BUCKET_HALF_COUNT - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram[count=" + count + ", min=" + getMinimum() + ", mean=" + getMean() + ", max=" + getMaximum() + "]";
+    }
+}
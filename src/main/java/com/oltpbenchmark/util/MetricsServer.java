@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark.util;
+
+import com.oltpbenchmark.types.TransactionStatus;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the latest {@link MetricsSnapshot} in the Prometheus text exposition
+ * format on {@code /metrics}, using the HTTP server built into the JDK.
+ * <p>
+ * Snapshots are published through a volatile field, so a scrape never takes a
+ * lock that a worker could be waiting on.
+ */
+public final class MetricsServer {
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsServer.class);
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile MetricsSnapshot snapshot = MetricsSnapshot.EMPTY;
+
+    public MetricsServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "MetricsServer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.server.setExecutor(executor);
+        this.server.createContext("/metrics", this::handle);
+    }
+
+    public void start() {
+        server.start();
+        LOG.info("Serving live metrics on http://{}:{}/metrics", server.getAddress().getHostString(), getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void publish(MetricsSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public MetricsSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = format(snapshot).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Renders a snapshot in the Prometheus text exposition format
+     */
+    static String format(MetricsSnapshot snapshot) {
+        StringBuilder sb = new StringBuilder(4096);
+
+        header(sb, "benchbase_state", "gauge", "Current benchmark state (1 for the active state)");
+        sb.append("benchbase_state{state=\"").append(escape(snapshot.getState())).append("\"} 1\n");
+
+        header(sb, "benchbase_throughput_requests_per_second", "gauge", "Measured requests per second over the last monitoring interval");
+        sample(sb, "benchbase_throughput_requests_per_second", "", snapshot.getThroughput());
+
+        header(sb, "benchbase_phase", "gauge", "Id of the current phase");
+        for (MetricsSnapshot.Workload w : snapshot.getWorkloads()) {
+            sample(sb, "benchbase_phase", benchmarkLabel(w), w.getPhaseId());
+        }
+        header(sb, "benchbase_rate_target_requests_per_second", "gauge", "Target rate of the current phase, if rate limited");
+        for (MetricsSnapshot.Workload w : snapshot.getWorkloads()) {
+            if (w.isRateLimited()) {
+                sample(sb, "benchbase_rate_target_requests_per_second", benchmarkLabel(w), w.getRate());
+            }
+        }
+        header(sb, "benchbase_queue_depth", "gauge", "Requests waiting for a worker");
+        for (MetricsSnapshot.Workload w : snapshot.getWorkloads()) {
+            sample(sb, "benchbase_queue_depth", benchmarkLabel(w), w.getQueueDepth());
+        }
+
+        header(sb, "benchbase_transactions_total", "counter", "Transaction attempts by outcome");
+        for (MetricsSnapshot.Transaction t : snapshot.getTransactions()) {
+            for (TransactionStatus status : TransactionStatus.values()) {
+                String labels = transactionLabels(t) + ",status=\"" + status.name().toLowerCase(Locale.ROOT) + "\"";
+                sample(sb, "benchbase_transactions_total", labels, t.getOutcome(status));
+            }
+        }
+
+        header(sb, "benchbase_latency_seconds", "histogram", "Latency of measured transactions");
+        for (MetricsSnapshot.Transaction t : snapshot.getTransactions()) {
+            String name = transactionLabels(t);
+            for (int i = 0; i < MetricsSnapshot.LATENCY_BUCKETS_MICROSECONDS.length; i++) {
+                String le = seconds(MetricsSnapshot.LATENCY_BUCKETS_MICROSECONDS[i]);
+                sample(sb, "benchbase_latency_seconds_bucket", name + ",le=\"" + le + "\"", t.getLatencyBucket(i));
+            }
+            sample(sb, "benchbase_latency_seconds_bucket", name + ",le=\"+Inf\"", t.getLatencyCount());
+            sample(sb, "benchbase_latency_seconds_sum", name, t.getLatencySumMicroseconds() / 1e6);
+            sample(sb, "benchbase_latency_seconds_count", name, t.getLatencyCount());
+        }
+        return sb.toString();
+    }
+
+    private static String transactionLabels(MetricsSnapshot.Transaction t) {
+        return "benchmark=\"" + escape(t.getBenchmarkName()) + "\",transaction=\"" + escape(t.getName()) + "\"";
+    }
+
+    private static String benchmarkLabel(MetricsSnapshot.Workload w) {
+        return "benchmark=\"" + escape(w.getBenchmarkName()) + "\"";
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name);
+        if (!labels.isEmpty()) {
+            sb.append('{').append(labels).append('}');
+        }
+        sb.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    private static String seconds(long microseconds) {
+        return BigDecimal.valueOf(microseconds, 6).stripTrailingZeros().toPlainString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark.util;
+
+import com.oltpbenchmark.types.TransactionStatus;
+
+import java.util.List;
+
+/**
+ * An immutable view of the live metrics of a run. The monitor builds a new one
+ * every interval and publishes it to the {@link MetricsServer}, so a scrape
+ * only ever reads finished objects and never touches worker state.
+ */
+public final class MetricsSnapshot {
+
+    /**
+     * Upper bounds (inclusive, in microseconds) of the exported latency buckets
+     */
+    public static final long[] LATENCY_BUCKETS_MICROSECONDS = {
+            500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000, 1000000, 2500000, 5000000, 10000000
+    };
+
+    public static final MetricsSnapshot EMPTY = new MetricsSnapshot(0, "INIT", 0, List.of(), List.of());
+
+    /**
+     * The current phase and request queue of one benchmark
+     */
+    public static final class Workload {
+        private final String benchmarkName;
+        private final int phaseId;
+        private final boolean rateLimited;
+        private final int rate;
+        private final int queueDepth;
+
+        public Workload(String benchmarkName, int phaseId, boolean rateLimited, int rate, int queueDepth) {
+            this.benchmarkName = benchmarkName;
+            this.phaseId = phaseId;
+            this.rateLimited = rateLimited;
+            this.rate = rate;
+            this.queueDepth = queueDepth;
+        }
+
+        public String getBenchmarkName() {
+            return benchmarkName;
+        }
+
+        public int getPhaseId() {
+            return phaseId;
+        }
+
+        public boolean isRateLimited() {
+            return rateLimited;
+        }
+
+        /**
+         * @return the target rate in requests per second, only meaningful if rate limited
+         */
+        public int getRate() {
+            return rate;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+    }
+
+    /**
+     * Cumulative outcome counters and latency buckets of one transaction type
+     */
+    public static final class Transaction {
+        private final String benchmarkName;
+        private final String name;
+        private final long[] outcomes;
+        private final long[] latencyBuckets;
+        private final long latencyCount;
+        private final double latencySumMicroseconds;
+
+        /**
+         * @param outcomes       attempts by {@link TransactionStatus} ordinal
+         * @param latencyBuckets cumulative counts for each of {@link #LATENCY_BUCKETS_MICROSECONDS}
+         */
+        public Transaction(String benchmarkName, String name, long[] outcomes, long[] latencyBuckets, long latencyCount, double latencySumMicroseconds) {
+            this.benchmarkName = benchmarkName;
+            this.name = name;
+            this.outcomes = outcomes.clone();
+            this.latencyBuckets = latencyBuckets.clone();
+            this.latencyCount = latencyCount;
+            this.latencySumMicroseconds = latencySumMicroseconds;
+        }
+
+        /**
+         * Builds the counters from cumulative outcomes and latencies
+         */
+        public Transaction(String benchmarkName, String name, long[] outcomes, LatencyHistogram latencies) {
+            this(benchmarkName, name, outcomes, buckets(latencies), latencies.getCount(), latencies.isEmpty() ? 0 : latencies.getMean() * latencies.getCount());
+        }
+
+        private static long[] buckets(LatencyHistogram latencies) {
+            long[] buckets = new long[LATENCY_BUCKETS_MICROSECONDS.length];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = latencies.getCountAtOrBelow(LATENCY_BUCKETS_MICROSECONDS[i]);
+            }
+            return buckets;
+        }
+
+        public String getBenchmarkName() {
+            return benchmarkName;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getOutcome(TransactionStatus status) {
+            return outcomes[status.ordinal()];
+        }
+
+        public long getLatencyBucket(int index) {
+            return latencyBuckets[index];
+        }
+
+        public long getLatencyCount() {
+            return latencyCount;
+        }
+
+        public double getLatencySumMicroseconds() {
+            return latencySumMicroseconds;
+        }
+    }
+
+    private final long timestampMillis;
+    private final String state;
+    private final double throughput;
+    private final List<Workload> workloads;
+    private final List<Transaction> transactions;
+
+    public MetricsSnapshot(long timestampMillis, String state, double throughput, List<Workload> workloads, List<Transaction> transactions) {
+        this.timestampMillis = timestampMillis;
+        this.state = state;
+        this.throughput = throughput;
+        this.workloads = List.copyOf(workloads);
+        this.transactions = List.copyOf(transactions);
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * @return the name of the global benchmark state
+     */
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * @return measured requests per second over the last interval
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public List<Workload> getWorkloads() {
+        return workloads;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+}
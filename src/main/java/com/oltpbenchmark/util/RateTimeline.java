@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark.util;
+
+import java.util.Arrays;
+
+/**
+ * The intended rate of a run over time, as a step function: every recorded
+ * rate holds until the next one. Used to put the rate the workload asked for
+ * next to the throughput it achieved.
+ */
+public final class RateTimeline {
+
+    private long[] times = new long[16];
+    private double[] rates = new double[16];
+    private int size = 0;
+
+    /**
+     * Records that the intended rate is {@code rate} from {@code nanosecond}
+     * on. Times must not decrease, repeating the current rate is a no-op.
+     */
+    public void record(long nanosecond, double rate) {
+        if (size > 0 && rates[size - 1] == rate) {
+            return;
+        }
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            rates = Arrays.copyOf(rates, size * 2);
+        }
+        times[size] = nanosecond;
+        rates[size] = rate;
+        size++;
+    }
+
+    /**
+     * Appends the points of another timeline that start after the last point of this one
+     */
+    public void add(RateTimeline other) {
+        for (int i = 0; i < other.size; i++) {
+            if (size == 0 || other.times[i] >= times[size - 1]) {
+                record(other.times[i], other.rates[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the time-weighted average of the intended rate over
+     * {@code [from, to)}, 0 for the time before the first point
+     */
+    public double average(long from, long to) {
+        if (to <= from) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            long start = Math.max(from, times[i]);
+            long end = Math.min(to, i + 1 < size ? times[i + 1] : Long.MAX_VALUE);
+            if (end > start) {
+                sum += rates[i] * (end - start);
+            }
+        }
+        return sum / (to - from);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Converts a binary raw sample file back into the raw CSV layout written by
+ * {@link ResultWriter#writeRaw}.
+ * <p>
+ * Usage: {@code RawSampleConverter <input.raw.bin> [<output.raw.csv>]}. Without
+ * an output path the CSV is written next to the input.
+ */
+public final class RawSampleConverter {
+    private static final Logger LOG = LoggerFactory.getLogger(RawSampleConverter.class);
+
+    private static final String BINARY_SUFFIX = ".raw.bin";
+    private static final String CSV_SUFFIX = ".raw.csv";
+
+    private RawSampleConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: " + RawSampleConverter.class.getName() + " <input" + BINARY_SUFFIX + "> [<output" + CSV_SUFFIX + ">]");
+            System.exit(1);
+        }
+
+        Path input = Paths.get(args[0]);
+        Path output = args.length > 1 ? Paths.get(args[1]) : defaultOutput(input);
+
+        long count = convert(input, output);
+        LOG.info("Converted {} samples from {} into {}", count, input, output);
+    }
+
+    /**
+     * @return the number of samples converted
+     */
+    public static long convert(Path input, Path output) throws IOException {
+        try (RawSampleReader reader = new RawSampleReader(input);
+             PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(output.toFile()), RawSampleWriter.BUFFER_SIZE))) {
+            RawSampleHeader header = reader.getHeader();
+            ResultWriter.writeRaw(reader, header::getTransactionName, header.getEpochOffsetNanosecond(), out);
+            return reader.getCount();
+        }
+    }
+
+    static Path defaultOutput(Path input) {
+        String name = input.getFileName().toString();
+        if (name.endsWith(BINARY_SUFFIX)) {
+            name = name.substring(0, name.length() - BINARY_SUFFIX.length());
+        }
+        return input.resolveSibling(name + CSV_SUFFIX);
+    }
+}
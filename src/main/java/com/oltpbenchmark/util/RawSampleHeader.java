@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark.util;
+
+import com.oltpbenchmark.Phase;
+import com.oltpbenchmark.api.TransactionType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Describes the samples stored in a binary raw file: the transaction type
+ * table, the phases of the run and how to convert the System.nanoTime() based
+ * start times into wall clock time.
+ */
+public final class RawSampleHeader {
+
+    /**
+     * The parts of a {@link Phase} needed to interpret its samples offline
+     */
+    public static final class PhaseDescription {
+        private final int id;
+        private final String benchmarkName;
+        private final int time;
+        private final int warmupTime;
+        private final int rate;
+        private final String arrival;
+
+        public PhaseDescription(int id, String benchmarkName, int time, int warmupTime, int rate, String arrival) {
+            this.id = id;
+            this.benchmarkName = benchmarkName;
+            this.time = time;
+            this.warmupTime = warmupTime;
+            this.rate = rate;
+            this.arrival = arrival;
+        }
+
+        public PhaseDescription(Phase phase) {
+            this(phase.getId(), phase.getBenchmarkName(), phase.getTime(), phase.getWarmupTime(), phase.getRate(), phase.getArrival().name());
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getBenchmarkName() {
+            return benchmarkName;
+        }
+
+        public int getTime() {
+            return time;
+        }
+
+        public int getWarmupTime() {
+            return warmupTime;
+        }
+
+        public int getRate() {
+            return rate;
+        }
+
+        public String getArrival() {
+            return arrival;
+        }
+    }
+
+    private final long baseNanosecond;
+    private final long epochOffsetNanosecond;
+    private final SortedMap<Integer, String> transactionNames;
+    private final List<PhaseDescription> phases;
+
+    /**
+     * @param baseNanosecond        start times are delta-encoded starting from this System.nanoTime() value
+     * @param epochOffsetNanosecond added to a System.nanoTime() value to obtain nanoseconds since the epoch
+     */
+    public RawSampleHeader(long baseNanosecond, long epochOffsetNanosecond, Map<Integer, String> transactionNames, List<PhaseDescription> phases) {
+        this.baseNanosecond = baseNanosecond;
+        this.epochOffsetNanosecond = epochOffsetNanosecond;
+        this.transactionNames = Collections.unmodifiableSortedMap(new TreeMap<>(transactionNames));
+        this.phases = List.copyOf(phases);
+    }
+
+    /**
+     * Builds the header for the samples of the current run.
+     *
+     * @param activeTXTypes the transaction types, in id order starting at 1
+     */
+    public static RawSampleHeader forRun(long baseNanosecond, List<TransactionType> activeTXTypes, List<Phase> phases) {
+        // nanoTime() has an arbitrary origin, so ground it to the wall clock
+        long epochOffset = System.currentTimeMillis() * 1000000L - System.nanoTime();
+
+        Map<Integer, String> names = new TreeMap<>();
+        for (int i = 0; i < activeTXTypes.size(); i++) {
+            // Important! The TxnType offsets start at 1!
+            names.put(i + 1, activeTXTypes.get(i).getName());
+        }
+        List<PhaseDescription> descriptions = new ArrayList<>(phases.size());
+        for (Phase phase : phases) {
+            descriptions.add(new PhaseDescription(phase));
+        }
+        return new RawSampleHeader(baseNanosecond, epochOffset, names, descriptions);
+    }
+
+    public long getBaseNanosecond() {
+        return baseNanosecond;
+    }
+
+    public long getEpochOffsetNanosecond() {
+        return epochOffsetNanosecond;
+    }
+
+    public SortedMap<Integer, String> getTransactionNames() {
+        return transactionNames;
+    }
+
+    public String getTransactionName(int transactionTypeId) {
+        String name = transactionNames.get(transactionTypeId);
+        return name != null ? name : TransactionType.INVALID.getName();
+    }
+
+    public List<PhaseDescription> getPhases() {
+        return phases;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeLong(baseNanosecond);
+        out.writeLong(epochOffsetNanosecond);
+        out.writeInt(transactionNames.size());
+        for (Map.Entry<Integer, String> e : transactionNames.entrySet()) {
+            out.writeInt(e.getKey());
+            out.writeUTF(e.getValue());
+        }
+        out.writeInt(phases.size());
+        for (PhaseDescription phase : phases) {
+            out.writeInt(phase.id);
+            out.writeUTF(phase.benchmarkName);
+            out.writeInt(phase.time);
+            out.writeInt(phase.warmupTime);
+            out.writeInt(phase.rate);
+            out.writeUTF(phase.arrival);
+        }
+    }
+
+    static RawSampleHeader read(DataInput in) throws IOException {
+        long baseNanosecond = in.readLong();
+        long epochOffsetNanosecond = in.readLong();
+        int transactionCount = in.readInt();
+        Map<Integer, String> names = new TreeMap<>();
+        for (int i = 0; i < transactionCount; i++) {
+            int id = in.readInt();
+            names.put(id, in.readUTF());
+        }
+        int phaseCount = in.readInt();
+        List<PhaseDescription> phases = new ArrayList<>(phaseCount);
+        for (int i = 0; i < phaseCount; i++) {
+            phases.add(new PhaseDescription(in.readInt(), in.readUTF(), in.readInt(), in.readInt(), in.readInt(), in.readUTF()));
+        }
+        return new RawSampleHeader(baseNanosecond, epochOffsetNanosecond, names, phases);
+    }
+}
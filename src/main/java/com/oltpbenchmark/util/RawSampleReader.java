@@ -0,0 +1,231 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark.util;
+
+import com.oltpbenchmark.LatencyRecord;
+import com.oltpbenchmark.types.TransactionStatus;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the samples of a binary raw file written by {@link RawSampleWriter}.
+ * <p>
+ * The reader is itself a {@link LatencyRecord.Cursor}, so the samples of a
+ * finished run can be fed straight into
+ * {@link com.oltpbenchmark.WindowedStatistics#compute} or a
+ * {@link LatencyHistogram} without loading the whole file.
+ */
+public final class RawSampleReader implements LatencyRecord.Cursor, Closeable {
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(RawSampleWriter.BUFFER_SIZE);
+    private final RawSampleHeader header;
+    private final long count;
+    private final int version;
+    private long read;
+    private boolean eof;
+
+    private long start;
+    private int transactionType;
+    private int latency;
+    private int queueDelay;
+    private int commit;
+    private int rollback;
+    private int backoff;
+    private TransactionStatus status;
+    private int workerId;
+    private int phaseId;
+
+    public RawSampleReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer prefix = ByteBuffer.allocate(20);
+            readFully(prefix);
+            if (prefix.getInt(0) != RawSampleWriter.MAGIC) {
+                throw new IOException(path + " is not a binary raw sample file");
+            }
+            this.version = prefix.getInt(4);
+            // Version 1 files have no commit, rollback and backoff times
+            if (version != 1 && version != RawSampleWriter.VERSION) {
+                throw new IOException(String.format("Unsupported raw sample file version %d in %s", version, path));
+            }
+            this.count = prefix.getLong(RawSampleWriter.COUNT_POSITION);
+
+            ByteBuffer headerBytes = ByteBuffer.allocate(prefix.getInt(16));
+            readFully(headerBytes);
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(headerBytes.array()))) {
+                this.header = RawSampleHeader.read(in);
+            }
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        this.start = header.getBaseNanosecond();
+        this.buffer.flip();
+    }
+
+    public RawSampleHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * @return the number of samples in the file
+     */
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public boolean next() {
+        if (read == count) {
+            return false;
+        }
+        try {
+            fill();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        long zigzag = getVarLong();
+        start += (zigzag >>> 1) ^ -(zigzag & 1);
+        transactionType = getVarInt();
+        latency = getVarInt();
+        queueDelay = getVarInt();
+        status = STATUSES[getVarInt()];
+        workerId = getVarInt();
+        phaseId = getVarInt();
+        if (version > 1) {
+            commit = getVarInt();
+            rollback = getVarInt();
+            backoff = getVarInt();
+        }
+        ++read;
+        return true;
+    }
+
+    /**
+     * Makes sure at least one full sample is buffered, unless the file ends first
+     */
+    private void fill() throws IOException {
+        if (buffer.remaining() >= RawSampleWriter.MAX_SAMPLE_BYTES || eof) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                eof = true;
+                break;
+            }
+        }
+        buffer.flip();
+        if (!buffer.hasRemaining()) {
+            throw new EOFException(String.format("Raw sample file ends after %d of %d samples", read, count));
+        }
+    }
+
+    private void readFully(ByteBuffer target) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target) < 0) {
+                throw new EOFException("Truncated raw sample file header");
+            }
+        }
+    }
+
+    private int getVarInt() {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private long getVarLong() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public int getTransactionType() {
+        return transactionType;
+    }
+
+    @Override
+    public long getStartNanosecond() {
+        return start;
+    }
+
+    @Override
+    public int getLatencyMicrosecond() {
+        return latency;
+    }
+
+    @Override
+    public int getQueueDelayMicrosecond() {
+        return queueDelay;
+    }
+
+    @Override
+    public int getCommitMicrosecond() {
+        return commit;
+    }
+
+    @Override
+    public int getRollbackMicrosecond() {
+        return rollback;
+    }
+
+    @Override
+    public int getBackoffMicrosecond() {
+        return backoff;
+    }
+
+    @Override
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public int getWorkerId() {
+        return workerId;
+    }
+
+    @Override
+    public int getPhaseId() {
+        return phaseId;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2020 by OLTPBenchmark Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.oltpbenchmark.util;
+
+import com.oltpbenchmark.LatencyRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes latency samples in the compact binary raw format.
+ * <p>
+ * The file starts with a fixed prefix (magic, version, sample count, header
+ * length) followed by the {@link RawSampleHeader}. Each sample is then encoded
+ * as variable-length integers: the zig-zag encoded difference between its start
+ * time and the previous one, the transaction type, latency and queue delay in
+ * microseconds, the status ordinal, the worker id, the phase id, and the
+ * commit, rollback and backoff times in microseconds. A typical
+ * sample takes 10 to 15 bytes instead of the ~80 characters of a raw CSV row.
+ * <p>
+ * Samples go through a direct buffer that is flushed to a FileChannel when it
+ * fills up; the sample count is patched into the prefix on {@link #flush()}
+ * and {@link #close()}.
+ */
+public final class RawSampleWriter implements Closeable {
+
+    static final int MAGIC = 0x42425257; // "BBRW"
+    static final int VERSION = 2;
+
+    /**
+     * Offset of the sample count in the prefix
+     */
+    static final int COUNT_POSITION = 8;
+
+    /**
+     * Upper bound on the encoded size of a single sample
+     */
+    static final int MAX_SAMPLE_BYTES = 10 + 5 + 5 + 5 + 5 + 5 + 5 + 5 + 5 + 5;
+
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long previousStart;
+    private long count;
+
+    public RawSampleWriter(Path path, RawSampleHeader header) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.previousStart = header.getBaseNanosecond();
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(headerBytes)) {
+            header.write(out);
+        }
+
+        ByteBuffer prefix = ByteBuffer.allocate(20 + headerBytes.size());
+        prefix.putInt(MAGIC);
+        prefix.putInt(VERSION);
+        prefix.putLong(0);
+        prefix.putInt(headerBytes.size());
+        prefix.put(headerBytes.toByteArray());
+        prefix.flip();
+        while (prefix.hasRemaining()) {
+            channel.write(prefix);
+        }
+    }
+
+    /**
+     * Appends the sample the cursor is positioned at
+     */
+    public void write(LatencyRecord.Cursor sample) throws IOException {
+        if (buffer.remaining() < MAX_SAMPLE_BYTES) {
+            flushBuffer();
+        }
+        long start = sample.getStartNanosecond();
+        long delta = start - previousStart;
+        previousStart = start;
+
+        putVarLong(buffer, (delta << 1) ^ (delta >> 63));
+        putVarInt(buffer, sample.getTransactionType());
+        putVarInt(buffer, sample.getLatencyMicrosecond());
+        putVarInt(buffer, sample.getQueueDelayMicrosecond());
+        putVarInt(buffer, sample.getStatus().ordinal());
+        putVarInt(buffer, sample.getWorkerId());
+        putVarInt(buffer, sample.getPhaseId());
+        putVarInt(buffer, sample.getCommitMicrosecond());
+        putVarInt(buffer, sample.getRollbackMicrosecond());
+        putVarInt(buffer, sample.getBackoffMicrosecond());
+        ++count;
+    }
+
+    /**
+     * Appends every remaining sample of the cursor
+     *
+     * @return the number of samples written
+     */
+    public long writeAll(LatencyRecord.Cursor samples) throws IOException {
+        long before = count;
+        while (samples.next()) {
+            write(samples);
+        }
+        return count - before;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes out buffered samples and updates the sample count, so that a
+     * {@link RawSampleReader} opened afterwards sees everything written so far
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        ByteBuffer countBytes = ByteBuffer.allocate(Long.BYTES).putLong(0, count);
+        channel.write(countBytes, COUNT_POSITION);
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes the value as an unsigned LEB128 varint (negative values take 5 bytes)
+     */
+    static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
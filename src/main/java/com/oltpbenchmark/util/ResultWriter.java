@@ -18,25 +18,37 @@
 package com.oltpbenchmark.util;
 
 import com.oltpbenchmark.DistributionStatistics;
+import com.oltpbenchmark.LatencyBreakdown;
 import com.oltpbenchmark.LatencyRecord;
+import com.oltpbenchmark.Outliers;
+import com.oltpbenchmark.Phase;
 import com.oltpbenchmark.Results;
-import com.oltpbenchmark.ThreadBench;
+import com.oltpbenchmark.WindowedStatistics;
 import com.oltpbenchmark.api.TransactionType;
 import com.oltpbenchmark.api.collectors.DBParameterCollector;
 import com.oltpbenchmark.api.collectors.DBParameterCollectorGen;
+import com.oltpbenchmark.jdbc.StatementStatistics;
 import com.oltpbenchmark.types.DatabaseType;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.configuration2.XMLConfiguration;
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.commons.configuration2.io.FileHandler;
 
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.IntFunction;
 
 public class ResultWriter {
 
     public static final double MILLISECONDS_FACTOR = 1e3;
 
+    /**
+     * Pacing errors are kept in nanoseconds
+     */
+    private static final double MICROSECONDS_FACTOR = 1e3;
+
 
     private static final String[] IGNORE_CONF = {
             "type",
@@ -58,6 +70,11 @@ public class ResultWriter {
     private final DatabaseType dbType;
     private final String benchType;
 
+    /**
+     * Windowed statistics cover every transaction type at once, so each window
+     * size is computed only once no matter how many CSVs are written from it
+     */
+    private final Map<Integer, WindowedStatistics> windowedStatistics = new HashMap<>();
 
     public ResultWriter(Results r, XMLConfiguration conf, CommandLine argsLine) {
         this.expConf = conf;
@@ -74,6 +91,22 @@ public class ResultWriter {
 
     }
 
+    private ResultWriter(ResultWriter parent, Results r) {
+        this.expConf = parent.expConf;
+        this.results = r;
+        this.dbType = parent.dbType;
+        this.benchType = parent.benchType;
+        this.collector = parent.collector;
+    }
+
+    /**
+     * Returns a writer for the results of a single phase, which shares the
+     * configuration and the DBMS collector of this one
+     */
+    public ResultWriter forPhase(Results phaseResults) {
+        return new ResultWriter(this, phaseResults);
+    }
+
     public void writeParams(PrintStream os) {
         String dbConf = collector.collectParameters();
         os.print(dbConf);
@@ -106,15 +139,232 @@ public class ResultWriter {
         summaryMap.put("DBMS Type", dbType);
         summaryMap.put("DBMS Version", collector.collectVersion());
         summaryMap.put("Benchmark Type", benchType);
+        if (results.isPhase()) {
+            summaryMap.put("Phase", results.getPhaseId());
+            List<Map<String, Object>> phaseConfigurations = new ArrayList<>();
+            for (Phase phase : results.getPhases()) {
+                phaseConfigurations.add(phaseConfiguration(phase));
+            }
+            summaryMap.put("Phase Configuration", phaseConfigurations);
+            summaryMap.put("Measured Time (seconds)", results.getNanoseconds() / 1e9);
+        }
+        if (results.getWarmupNanoseconds() >= 0) {
+            summaryMap.put("Warmup Time (seconds)", results.getWarmupNanoseconds() / 1e9);
+        }
+        if (results.getWarmupDetector() != null) {
+            summaryMap.put("Adaptive Warmup", results.getWarmupDetector().toMap());
+        }
         summaryMap.put("Latency Distribution", results.getDistributionStatistics().toMap());
+        summaryMap.put("Response Time Distribution", results.getResponseTimeStatistics().toMap());
+        summaryMap.put("Queue Delay Distribution", results.getQueueDelayStatistics().toMap());
+        Map<String, Object> txnDistributions = new TreeMap<>();
+        for (Map.Entry<TransactionType, LatencyHistogram> e : results.getLatencyHistograms().entrySet()) {
+            txnDistributions.put(e.getKey().getName(), DistributionStatistics.computeStatistics(e.getValue()).toMap());
+        }
+        summaryMap.put("Latency Distribution By Transaction Type", txnDistributions);
+        if (!results.getLatencyBreakdowns().isEmpty()) {
+            summaryMap.put("Latency Breakdown", results.getLatencyBreakdown().toMap());
+            Map<String, Object> txnBreakdowns = new TreeMap<>();
+            for (Map.Entry<TransactionType, LatencyBreakdown> e : results.getLatencyBreakdowns().entrySet()) {
+                txnBreakdowns.put(e.getKey().getName(), e.getValue().toMap());
+            }
+            summaryMap.put("Latency Breakdown By Transaction Type", txnBreakdowns);
+        }
         summaryMap.put("Throughput (requests/second)", results.requestsPerSecondThroughput());
         summaryMap.put("Goodput (requests/second)", results.requestsPerSecondGoodput());
+        if (!results.getBackoffHistograms().isEmpty()) {
+            summaryMap.put("Retries By Transaction Type", retries(results));
+        }
+        if (!results.getSetupTimes().isEmpty()) {
+            summaryMap.put("Connection Setup Time Distribution", DistributionStatistics.computeStatistics(results.getSetupTimes()).toMap());
+        }
+        if (!results.getConnectTimes().isEmpty()) {
+            Map<String, Object> churn = new LinkedHashMap<>();
+            churn.put("Connects", results.getConnectTimes().getCount());
+            churn.put("Connect Time Distribution", DistributionStatistics.computeStatistics(results.getConnectTimes()).toMap());
+            churn.put("Close Time Distribution", DistributionStatistics.computeStatistics(results.getDisconnectTimes()).toMap());
+            summaryMap.put("Connection Churn", churn);
+        }
+        LatencyHistogram pacingError = results.getPacingError();
+        if (!pacingError.isEmpty()) {
+            Map<String, Object> pacing = new LinkedHashMap<>();
+            pacing.put("Median Error (microseconds)", pacingError.getValueAtPercentile(0.5) / MICROSECONDS_FACTOR);
+            pacing.put("99th Percentile Error (microseconds)", pacingError.getValueAtPercentile(0.99) / MICROSECONDS_FACTOR);
+            pacing.put("99.9th Percentile Error (microseconds)", pacingError.getValueAtPercentile(0.999) / MICROSECONDS_FACTOR);
+            pacing.put("Maximum Error (microseconds)", pacingError.getMaximum() / MICROSECONDS_FACTOR);
+            pacing.put("Releases", pacingError.getCount());
+            summaryMap.put("Arrival Pacing", pacing);
+        }
         for (String field : BENCHMARK_KEY_FIELD) {
             summaryMap.put(field, expConf.getString(field));
         }
         os.println(JSONUtil.format(JSONUtil.toJSONString(summaryMap)));
     }
 
+    private static Map<String, Object> retries(Results results) {
+        Map<String, Object> m = new TreeMap<>();
+        for (Map.Entry<TransactionType, LatencyHistogram> e : results.getBackoffHistograms().entrySet()) {
+            TransactionType type = e.getKey();
+            LatencyHistogram latencies = results.getLatencyHistograms().get(type);
+            int attempts = results.getAttempts().get(type, 0);
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("Retried Transactions", e.getValue().getCount());
+            r.put("Attempts", attempts);
+            if (latencies != null && latencies.getCount() > 0) {
+                r.put("Attempts Per Transaction", (double) attempts / latencies.getCount());
+            }
+            r.put("Backoff Distribution", DistributionStatistics.computeStatistics(e.getValue()).toMap());
+            m.put(type.getName(), r);
+        }
+        return m;
+    }
+
+    private static Map<String, Object> phaseConfiguration(Phase phase) {
+        Map<String, Object> m = new TreeMap<>();
+        m.put("Benchmark", phase.getBenchmarkName());
+        m.put("Rate (requests/second)", rate(phase));
+        m.put("Arrival", phase.getArrival().name().toLowerCase());
+        m.put("Weights", new ArrayList<>(phase.getWeights()));
+        m.put("Active Terminals", phase.getActiveTerminals());
+        m.put("Time (seconds)", phase.getTime());
+        m.put("Serial", phase.isSerial());
+        return m;
+    }
+
+    private static String rate(Phase phase) {
+        if (phase.isDisabled()) {
+            return "disabled";
+        }
+        if (!phase.isRateLimited()) {
+            return "unlimited";
+        }
+        return phase.getRateProfile() != null ? phase.getRateProfile().toString() : Integer.toString(phase.getRate());
+    }
+
+    /**
+     * Writes one row per phase and workload, with the configuration of the
+     * phase next to what was measured during it
+     */
+    public void writePhases(PrintStream out) {
+        String[] header = {
+                "Phase Id",
+                "Benchmark",
+                "Rate (requests/second)",
+                "Arrival",
+                "Weights",
+                "Active Terminals",
+                "Measured Time (seconds)",
+                "Requests",
+                "Throughput (requests/second)",
+                "Goodput (requests/second)",
+                "Average Latency (millisecond)",
+                "Median Latency (millisecond)",
+                "95th Percentile Latency (millisecond)",
+                "99th Percentile Latency (millisecond)",
+                "Maximum Latency (millisecond)",
+                "95th Percentile Response Time (millisecond)",
+                "99th Percentile Response Time (millisecond)"
+        };
+        out.println(StringUtil.join(",", header));
+        for (Results phaseResults : results.getPhaseResults()) {
+            DistributionStatistics s = phaseResults.getDistributionStatistics();
+            DistributionStatistics r = phaseResults.getResponseTimeStatistics();
+            for (Phase phase : phaseResults.getPhases()) {
+                out.printf("%d,%s,%s,%s,%s,%d,%.3f,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f\n",
+                        phase.getId(),
+                        phase.getBenchmarkName(),
+                        rate(phase),
+                        phase.getArrival().name().toLowerCase(),
+                        StringUtil.join(";", phase.getWeights()),
+                        phase.getActiveTerminals(),
+                        phaseResults.getNanoseconds() / 1e9,
+                        phaseResults.getMeasuredRequests(),
+                        phaseResults.requestsPerSecondThroughput(),
+                        phaseResults.requestsPerSecondGoodput(),
+                        s.getAverage() / MILLISECONDS_FACTOR,
+                        s.getMedian() / MILLISECONDS_FACTOR,
+                        s.get95thPercentile() / MILLISECONDS_FACTOR,
+                        s.get99thPercentile() / MILLISECONDS_FACTOR,
+                        s.getMaximum() / MILLISECONDS_FACTOR,
+                        r.get95thPercentile() / MILLISECONDS_FACTOR,
+                        r.get99thPercentile() / MILLISECONDS_FACTOR);
+            }
+        }
+    }
+
+    /**
+     * The slowest measured transactions, the slowest first, with the
+     * statements they executed and their parameters
+     */
+    public void writeOutliers(PrintStream os) {
+        // Start times are System.nanoTime() values, like in the raw files
+        long epochOffsetNanoseconds = System.currentTimeMillis() * 1000000L - System.nanoTime();
+        Outliers outliers = results.getOutliers();
+        List<Map<String, Object>> transactions = new ArrayList<>();
+        for (Outliers.Outlier outlier : outliers.getSlowestFirst()) {
+            transactions.add(outlier.toMap(epochOffsetNanoseconds));
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("Transactions Kept", outliers.getCapacity());
+        m.put("Slowest Transactions", transactions);
+        os.println(JSONUtil.format(JSONUtil.toJSONString(m)));
+    }
+
+    /**
+     * One line per statement of every procedure with how often and how long
+     * it executed, and how long it took to iterate over its results
+     */
+    public void writeStatements(PrintStream out) {
+        String[] header = {
+                "Procedure",
+                "Statement",
+                "Executions",
+                "Total Execute Time (millisecond)",
+                "Average Execute Time (millisecond)",
+                "Median Execute Time (millisecond)",
+                "95th Percentile Execute Time (millisecond)",
+                "99th Percentile Execute Time (millisecond)",
+                "Maximum Execute Time (millisecond)",
+                "Result Sets",
+                "Rows",
+                "Total Fetch Time (millisecond)",
+                "99th Percentile Fetch Time (millisecond)"
+        };
+        out.println(StringUtil.join(",", header));
+        for (Map.Entry<String, Map<String, StatementStatistics.Timing>> p : results.getStatementStatistics().getTimings().entrySet()) {
+            for (Map.Entry<String, StatementStatistics.Timing> e : p.getValue().entrySet()) {
+                StatementStatistics.Timing t = e.getValue();
+                LatencyHistogram execute = t.getExecuteTimes();
+                LatencyHistogram fetch = t.getFetchTimes();
+                DistributionStatistics s = DistributionStatistics.computeStatistics(execute);
+                out.printf("%s,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%d,%.3f,%.3f\n",
+                        p.getKey(),
+                        csvField(e.getKey()),
+                        execute.getCount(),
+                        execute.isEmpty() ? 0 : execute.getMean() * execute.getCount() / MILLISECONDS_FACTOR,
+                        s.getAverage() / MILLISECONDS_FACTOR,
+                        s.getMedian() / MILLISECONDS_FACTOR,
+                        s.get95thPercentile() / MILLISECONDS_FACTOR,
+                        s.get99thPercentile() / MILLISECONDS_FACTOR,
+                        s.getMaximum() / MILLISECONDS_FACTOR,
+                        fetch.getCount(),
+                        t.getRows(),
+                        fetch.isEmpty() ? 0 : fetch.getMean() * fetch.getCount() / MILLISECONDS_FACTOR,
+                        fetch.isEmpty() ? 0 : fetch.getValueAtPercentile(0.99) / MILLISECONDS_FACTOR);
+            }
+        }
+    }
+
+    /**
+     * Quotes statements that are only known by their SQL
+     */
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"").replace('\n', ' ') + "\"";
+    }
+
     public void writeResults(int windowSizeSeconds, PrintStream out) {
         writeResults(windowSizeSeconds, out, TransactionType.INVALID);
     }
@@ -132,12 +382,38 @@ public class ResultWriter {
                 "95th Percentile Latency (millisecond)",
                 "99th Percentile Latency (millisecond)",
                 "Maximum Latency (millisecond)",
-                "tp (req/s) scaled"
+                "tp (req/s) scaled",
+                "Average Response Time (millisecond)",
+                "95th Percentile Response Time (millisecond)",
+                "99th Percentile Response Time (millisecond)",
+                "Maximum Response Time (millisecond)",
+                "Average Queue Delay (millisecond)",
+                "95th Percentile Queue Delay (millisecond)",
+                "99th Percentile Queue Delay (millisecond)",
+                "Maximum Queue Delay (millisecond)",
+                "Goodput (requests/second)",
+                "Intended Rate (requests/second)",
+                "Average Execution Time (millisecond)",
+                "99th Percentile Execution Time (millisecond)",
+                "Average Commit Time (millisecond)",
+                "99th Percentile Commit Time (millisecond)",
+                "Average Rollback Time (millisecond)",
+                "99th Percentile Rollback Time (millisecond)",
+                "Average Retry Backoff (millisecond)",
+                "99th Percentile Retry Backoff (millisecond)"
         };
         out.println(StringUtil.join(",", header));
-        int i = 0;
-        for (DistributionStatistics s : new ThreadBench.TimeBucketIterable(results.getLatencySamples(), windowSizeSeconds, txType)) {
-            out.printf("%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f\n",
+        WindowedStatistics windows = getWindowedStatistics(windowSizeSeconds);
+        for (int i = 0; i < windows.getWindowCount(); i++) {
+            DistributionStatistics s = windows.getStatistics(txType, i, WindowedStatistics.Metric.SERVICE_TIME);
+            DistributionStatistics r = windows.getStatistics(txType, i, WindowedStatistics.Metric.RESPONSE_TIME);
+            DistributionStatistics q = windows.getStatistics(txType, i, WindowedStatistics.Metric.QUEUE_DELAY);
+            DistributionStatistics e = windows.getStatistics(txType, i, WindowedStatistics.Metric.EXECUTION);
+            DistributionStatistics c = windows.getStatistics(txType, i, WindowedStatistics.Metric.COMMIT);
+            DistributionStatistics rb = windows.getStatistics(txType, i, WindowedStatistics.Metric.ROLLBACK);
+            DistributionStatistics b = windows.getStatistics(txType, i, WindowedStatistics.Metric.BACKOFF);
+            long windowStart = windows.getWindowStartNanosecond(i);
+            out.printf("%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f\n",
                     i * windowSizeSeconds,
                     (double) s.getCount() / windowSizeSeconds,
                     s.getAverage() / MILLISECONDS_FACTOR,
@@ -149,8 +425,25 @@ public class ResultWriter {
                     s.get95thPercentile() / MILLISECONDS_FACTOR,
                     s.get99thPercentile() / MILLISECONDS_FACTOR,
                     s.getMaximum() / MILLISECONDS_FACTOR,
-                    MILLISECONDS_FACTOR / s.getAverage());
-            i += 1;
+                    MILLISECONDS_FACTOR / s.getAverage(),
+                    r.getAverage() / MILLISECONDS_FACTOR,
+                    r.get95thPercentile() / MILLISECONDS_FACTOR,
+                    r.get99thPercentile() / MILLISECONDS_FACTOR,
+                    r.getMaximum() / MILLISECONDS_FACTOR,
+                    q.getAverage() / MILLISECONDS_FACTOR,
+                    q.get95thPercentile() / MILLISECONDS_FACTOR,
+                    q.get99thPercentile() / MILLISECONDS_FACTOR,
+                    q.getMaximum() / MILLISECONDS_FACTOR,
+                    (double) windows.getSuccesses(txType, i) / windowSizeSeconds,
+                    results.getIntendedRates().average(windowStart, windowStart + windowSizeSeconds * 1000000000L),
+                    e.getAverage() / MILLISECONDS_FACTOR,
+                    e.get99thPercentile() / MILLISECONDS_FACTOR,
+                    c.getAverage() / MILLISECONDS_FACTOR,
+                    c.get99thPercentile() / MILLISECONDS_FACTOR,
+                    rb.getAverage() / MILLISECONDS_FACTOR,
+                    rb.get99thPercentile() / MILLISECONDS_FACTOR,
+                    b.getAverage() / MILLISECONDS_FACTOR,
+                    b.get99thPercentile() / MILLISECONDS_FACTOR);
         }
     }
 
@@ -174,8 +467,9 @@ public class ResultWriter {
                 "Maximum Latency (microseconds)"
         };
         out.println(StringUtil.join(",", header));
-        int i = 0;
-        for (DistributionStatistics s : new ThreadBench.TimeBucketIterable(results.getLatencySamples(), windowSizeSeconds, txType)) {
+        WindowedStatistics windows = getWindowedStatistics(windowSizeSeconds);
+        for (int i = 0; i < windows.getWindowCount(); i++) {
+            DistributionStatistics s = windows.getStatistics(txType, i, WindowedStatistics.Metric.SERVICE_TIME);
             out.printf("%d,%d,%.3f,%d,%d,%d,%d,%d,%d,%d,%d,%d\n",
                     i * windowSizeSeconds,
                     s.getCount(),
@@ -189,39 +483,70 @@ public class ResultWriter {
                     (int) s.get95thPercentile(),
                     (int) s.get99thPercentile(),
                     (int) s.getMaximum());
-            i += 1;
         }
     }
 
+    private WindowedStatistics getWindowedStatistics(int windowSizeSeconds) {
+        return windowedStatistics.computeIfAbsent(windowSizeSeconds, w -> WindowedStatistics.compute(results.getLatencySamples(), w));
+    }
+
     public void writeRaw(List<TransactionType> activeTXTypes, PrintStream out) {
 
         // This is needed because nanTime does not guarantee offset... we
         // ground it (and round it) to ms from 1970-01-01 like currentTime
-        double x = ((double) System.nanoTime() / (double) 1000000000);
-        double y = ((double) System.currentTimeMillis() / (double) 1000);
-        double offset = x - y;
+        long epochOffsetNanoseconds = System.currentTimeMillis() * 1000000L - System.nanoTime();
+
+        // Important!
+        // The TxnType offsets start at 1!
+        writeRaw(results.getLatencySamples(), id -> activeTXTypes.get(id - 1).getName(), epochOffsetNanoseconds, out);
+    }
+
+    /**
+     * Writes the samples in the binary raw format, see {@link RawSampleWriter}
+     */
+    public void writeRawBinary(List<TransactionType> activeTXTypes, List<Phase> phases, Path path) throws IOException {
+        List<LatencyRecord> records = results.getLatencyRecords();
+        long baseNanosecond = records.isEmpty() ? 0 : records.get(0).getStartNanosecond();
+        RawSampleHeader header = RawSampleHeader.forRun(baseNanosecond, activeTXTypes, phases);
+        try (RawSampleWriter writer = new RawSampleWriter(path, header)) {
+            writer.writeAll(results.getLatencySamples());
+        }
+    }
 
-        // long startNs = latencySamples.get(0).startNs;
+    /**
+     * Writes samples in the raw CSV layout
+     *
+     * @param transactionNames       maps a transaction type id to its name
+     * @param epochOffsetNanoseconds added to a start time to get nanoseconds since the epoch
+     */
+    public static void writeRaw(LatencyRecord.Cursor s, IntFunction<String> transactionNames, long epochOffsetNanoseconds, PrintStream out) {
         String[] header = {
                 "Transaction Type Index",
                 "Transaction Name",
                 "Start Time (microseconds)",
                 "Latency (microseconds)",
                 "Worker Id (start number)",
-                "Phase Id (index in config file)"
+                "Phase Id (index in config file)",
+                "Queue Delay (microseconds)",
+                "Commit (microseconds)",
+                "Rollback (microseconds)",
+                "Backoff (microseconds)"
         };
         out.println(StringUtil.join(",", header));
-        for (LatencyRecord.Sample s : results.getLatencySamples()) {
+        double offset = (double) epochOffsetNanoseconds / (double) 1000000000;
+        while (s.next()) {
             double startUs = ((double) s.getStartNanosecond() / (double) 1000000000);
             String[] row = {
                     Integer.toString(s.getTransactionType()),
-                    // Important!
-                    // The TxnType offsets start at 1!
-                    activeTXTypes.get(s.getTransactionType() - 1).getName(),
-                    String.format("%10.6f", startUs - offset),
+                    transactionNames.apply(s.getTransactionType()),
+                    String.format("%10.6f", startUs + offset),
                     Integer.toString(s.getLatencyMicrosecond()),
                     Integer.toString(s.getWorkerId()),
                     Integer.toString(s.getPhaseId()),
+                    Integer.toString(s.getQueueDelayMicrosecond()),
+                    Integer.toString(s.getCommitMicrosecond()),
+                    Integer.toString(s.getRollbackMicrosecond()),
+                    Integer.toString(s.getBackoffMicrosecond()),
             };
             out.println(StringUtil.join(",", row));
         }
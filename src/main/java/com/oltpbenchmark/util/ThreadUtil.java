@@ -45,6 +45,7 @@
 package com.oltpbenchmark.util;
 
 import com.oltpbenchmark.api.LoaderThread;
+import com.oltpbenchmark.types.WorkerExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -121,6 +122,39 @@ public abstract class ThreadUtil {
 
     }
 
+    /**
+     * Creates the thread that runs a worker, a virtual thread if asked for and
+     * supported by the JVM
+     *
+     * @param executor
+     * @param worker
+     * @return the thread, not started yet
+     */
+    public static Thread newWorkerThread(WorkerExecutor executor, Runnable worker) {
+        if (executor == WorkerExecutor.VIRTUAL && VirtualThreads.FACTORY != null) {
+            return VirtualThreads.FACTORY.newThread(worker);
+        }
+        return new Thread(worker);
+    }
+
+    /**
+     * Looks up virtual threads the first time they are asked for. They only
+     * exist from Java 21 on, while BenchBase builds for Java 17.
+     */
+    private static final class VirtualThreads {
+        private static final ThreadFactory FACTORY = createFactory();
+
+        private static ThreadFactory createFactory() {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOG.warn("Virtual threads are not supported by this JVM ({}), running workers on platform threads", System.getProperty("java.version"));
+                return null;
+            }
+        }
+    }
+
     private static final ThreadFactory factory = new ThreadFactory() {
         @Override
         public Thread newThread(Runnable r) {
@@ -0,0 +1,108 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark;
+
+import com.oltpbenchmark.types.TransactionStatus;
+import junit.framework.TestCase;
+
+public class TestIntervalRecorder extends TestCase {
+
+    /**
+     * testDrain
+     */
+    public void testDrain() {
+        IntervalRecorder recorder = new IntervalRecorder();
+        recorder.recordLatency(1, 100);
+        recorder.recordOutcome(1, TransactionStatus.SUCCESS);
+        recorder.recordLatency(3, 200);
+        recorder.recordOutcome(3, TransactionStatus.RETRY);
+        recorder.recordOutcome(3, TransactionStatus.USER_ABORTED);
+
+        IntervalRecorder.Interval interval = new IntervalRecorder.Interval();
+        recorder.drainInto(interval);
+        assertEquals(4, interval.getTransactionTypeCount());
+        assertEquals(1, interval.getHistogram(1).getCount());
+        assertEquals(0, interval.getHistogram(2).getCount());
+        assertEquals(200, interval.getHistogram(3).getMaximum());
+        assertEquals(1, interval.getCount(3, TransactionStatus.USER_ABORTED));
+        assertEquals(1, interval.getCount(3, TransactionStatus.RETRY));
+
+        // The next interval starts out empty
+        interval.reset();
+        recorder.drainInto(interval);
+        assertTrue(interval.getHistogram(1).isEmpty());
+        assertEquals(0, interval.getCount(3, TransactionStatus.RETRY));
+        assertEquals(0, interval.getCount(7, TransactionStatus.SUCCESS));
+    }
+
+    /**
+     * testDrainWithOffset
+     */
+    public void testDrainWithOffset() {
+        // Two workloads that both number their transaction types from 1
+        IntervalRecorder first = new IntervalRecorder();
+        first.recordLatency(1, 100);
+        first.recordOutcome(1, TransactionStatus.SUCCESS);
+        IntervalRecorder second = new IntervalRecorder();
+        second.recordLatency(1, 5000);
+        second.recordOutcome(1, TransactionStatus.ERROR);
+
+        IntervalRecorder.Interval interval = new IntervalRecorder.Interval();
+        first.drainInto(interval, 0);
+        second.drainInto(interval, 3);
+        assertEquals(5, interval.getTransactionTypeCount());
+        assertEquals(100, interval.getHistogram(1).getMaximum());
+        assertEquals(1, interval.getHistogram(1).getCount());
+        assertEquals(5000, interval.getHistogram(4).getMaximum());
+        assertEquals(0, interval.getCount(1, TransactionStatus.ERROR));
+        assertEquals(1, interval.getCount(4, TransactionStatus.ERROR));
+        assertEquals(2, interval.getResponseTimes().getCount());
+    }
+
+    /**
+     * testConcurrentDrain
+     */
+    public void testConcurrentDrain() throws InterruptedException {
+        IntervalRecorder recorder = new IntervalRecorder();
+        int count = 2_000_000;
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                recorder.recordLatency(i % 5 + 1, i % 1000);
+                recorder.recordOutcome(i % 5 + 1, TransactionStatus.SUCCESS);
+            }
+        });
+        writer.start();
+
+        // Nothing may be lost or counted twice while intervals are swapped
+        IntervalRecorder.Interval total = new IntervalRecorder.Interval();
+        IntervalRecorder.Interval interval = new IntervalRecorder.Interval();
+        while (writer.isAlive()) {
+            recorder.drainInto(interval);
+            total.add(interval);
+            interval.reset();
+        }
+        writer.join();
+        recorder.drainInto(total);
+
+        long recorded = 0;
+        for (int id = 1; id <= 5; id++) {
+            assertEquals(total.getHistogram(id).getCount(), total.getCount(id, TransactionStatus.SUCCESS));
+            recorded += total.getHistogram(id).getCount();
+        }
+        assertEquals(count, recorded);
+    }
+}
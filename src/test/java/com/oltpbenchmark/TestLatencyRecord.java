@@ -0,0 +1,237 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark;
+
+import com.oltpbenchmark.types.TransactionStatus;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+public class TestLatencyRecord extends TestCase {
+
+    private static final long START_NS = 1_000_000_000L;
+
+    /**
+     * testBreakdown
+     */
+    public void testBreakdown() {
+        LatencyRecord record = new LatencyRecord(START_NS);
+        // 10 ms in total, 3 ms of it backing off between attempts
+        record.addLatency(1, START_NS, START_NS + 10_000_000, 1_000_000, 2_000_000, 500_000, 3_000_000, TransactionStatus.SUCCESS, 0, 1);
+
+        LatencyRecord.Cursor cursor = record.cursor();
+        assertTrue(cursor.next());
+        assertEquals(7000, cursor.getLatencyMicrosecond());
+        assertEquals(2000, cursor.getCommitMicrosecond());
+        assertEquals(500, cursor.getRollbackMicrosecond());
+        assertEquals(3000, cursor.getBackoffMicrosecond());
+        assertEquals(4500, cursor.getExecutionMicrosecond());
+        assertEquals(11000, cursor.getResponseTimeMicrosecond());
+    }
+
+    /**
+     * testCursorSpansChunks
+     */
+    public void testCursorSpansChunks() {
+        LatencyRecord record = new LatencyRecord(START_NS);
+        int count = LatencyRecord.MIN_CHUNK_SIZE * 5 + 7;
+        for (int i = 0; i < count; i++) {
+            long start = START_NS + i * 1000L;
+            record.addLatency(i % 3 + 1, start, start + (i + 1) * 1000L, 4, 2);
+        }
+        assertEquals(count, record.size());
+
+        // Iterating must not modify the record, so two passes see the same data
+        for (int pass = 0; pass < 2; pass++) {
+            LatencyRecord.Cursor cursor = record.cursor();
+            int i = 0;
+            while (cursor.next()) {
+                assertEquals(i % 3 + 1, cursor.getTransactionType());
+                assertEquals(START_NS + i * 1000L, cursor.getStartNanosecond());
+                assertEquals(i + 1, cursor.getLatencyMicrosecond());
+                assertEquals(4, cursor.getWorkerId());
+                assertEquals(2, cursor.getPhaseId());
+                i++;
+            }
+            assertEquals(count, i);
+            assertFalse(cursor.next());
+        }
+    }
+
+    /**
+     * testQueueDelay
+     */
+    public void testQueueDelay() {
+        LatencyRecord record = new LatencyRecord(START_NS);
+        record.addLatency(1, START_NS, START_NS + 3_000_000, 2_000_000, TransactionStatus.USER_ABORTED, 0, 1);
+        record.addLatency(1, START_NS + 5_000_000, START_NS + 6_000_000, 0, 1);
+
+        LatencyRecord.Cursor cursor = record.cursor();
+        assertTrue(cursor.next());
+        assertEquals(3000, cursor.getLatencyMicrosecond());
+        assertEquals(2000, cursor.getQueueDelayMicrosecond());
+        assertEquals(5000, cursor.getResponseTimeMicrosecond());
+        assertEquals(TransactionStatus.USER_ABORTED, cursor.getStatus());
+        assertTrue(cursor.next());
+        assertEquals(TransactionStatus.SUCCESS, cursor.getStatus());
+        assertEquals(0, cursor.getQueueDelayMicrosecond());
+        assertEquals(cursor.getLatencyMicrosecond(), cursor.getResponseTimeMicrosecond());
+    }
+
+    /**
+     * testEmptyRecord
+     */
+    public void testEmptyRecord() {
+        LatencyRecord record = new LatencyRecord(START_NS);
+        assertEquals(0, record.size());
+        assertFalse(record.cursor().next());
+        assertFalse(LatencyRecord.merge(List.of(record, new LatencyRecord(START_NS))).next());
+    }
+
+    /**
+     * testMergeOrdersByStartTime
+     */
+    public void testMergeOrdersByStartTime() {
+        LatencyRecord even = new LatencyRecord(START_NS);
+        LatencyRecord odd = new LatencyRecord(START_NS);
+        for (int i = 0; i < 3000; i++) {
+            LatencyRecord record = (i % 2 == 0) ? even : odd;
+            long start = START_NS + i;
+            record.addLatency(1, start, start + 1000, i % 2, 1);
+        }
+
+        LatencyRecord.Cursor cursor = LatencyRecord.merge(List.of(even, odd));
+        long last = Long.MIN_VALUE;
+        int count = 0;
+        while (cursor.next()) {
+            assertTrue(cursor.getStartNanosecond() >= last);
+            assertEquals(count % 2, cursor.getWorkerId());
+            last = cursor.getStartNanosecond();
+            count++;
+        }
+        assertEquals(3000, count);
+    }
+
+    /**
+     * testForPhase
+     */
+    public void testForPhase() {
+        LatencyRecord first = new LatencyRecord(START_NS);
+        LatencyRecord second = new LatencyRecord(START_NS);
+        for (int i = 0; i < 3000; i++) {
+            LatencyRecord record = (i % 2 == 0) ? first : second;
+            long start = START_NS + i * 1000L;
+            record.addLatency(1, start, start + 1000, i % 2, i < 1000 ? 1 : i < 2500 ? 2 : 3);
+        }
+
+        int[] expected = {0, 1000, 1500, 500, 0};
+        for (int phaseId = 1; phaseId <= 4; phaseId++) {
+            LatencyRecord.Cursor cursor = LatencyRecord.forPhase(LatencyRecord.merge(List.of(first, second)), phaseId);
+            long last = Long.MIN_VALUE;
+            int count = 0;
+            while (cursor.next()) {
+                assertEquals(phaseId, cursor.getPhaseId());
+                assertTrue(cursor.getStartNanosecond() >= last);
+                last = cursor.getStartNanosecond();
+                count++;
+            }
+            assertEquals(expected[phaseId], count);
+        }
+    }
+
+    /**
+     * testSpill
+     */
+    public void testSpill() throws IOException {
+        Path file = File.createTempFile("worker", ".raw.bin").toPath();
+        try {
+            LatencyRecord record = LatencyRecord.spillingTo(START_NS, file);
+            assertTrue(record.isSpilling());
+            int count = LatencyRecord.SPILL_CHUNK_SIZE * 3 + 11;
+            for (int i = 0; i < count; i++) {
+                long start = START_NS + i * 1000L;
+                record.addLatency(i % 3 + 1, start, start + (i + 1) * 1000L, i, TransactionStatus.SUCCESS, 4, 2);
+            }
+            assertEquals(count, record.size());
+
+            // Before sealing, the cursor sees the spilled chunks followed by
+            // the one still in memory; afterwards only the file
+            for (int pass = 0; pass < 2; pass++) {
+                LatencyRecord.Cursor cursor = record.cursor();
+                int i = 0;
+                while (cursor.next()) {
+                    assertEquals(i % 3 + 1, cursor.getTransactionType());
+                    assertEquals(START_NS + i * 1000L, cursor.getStartNanosecond());
+                    assertEquals(i + 1, cursor.getLatencyMicrosecond());
+                    assertEquals((i + 500) / 1000, cursor.getQueueDelayMicrosecond());
+                    i++;
+                }
+                assertEquals(count, i);
+                record.seal();
+            }
+            assertTrue(Files.size(file) > 0);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * testSpillWithSlowWriter
+     */
+    public void testSpillWithSlowWriter() throws IOException {
+        Path file = File.createTempFile("worker", ".raw.bin").toPath();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // A writer much slower than the worker
+            Executor slow = task -> executor.execute(() -> {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+                task.run();
+            });
+            LatencyRecord record = LatencyRecord.spillingTo(START_NS, file, slow);
+            int count = LatencyRecord.SPILL_CHUNK_SIZE * 10 + 5;
+            for (int i = 0; i < count; i++) {
+                long start = START_NS + i * 1000L;
+                record.addLatency(1, start, start + 1000L, 0, TransactionStatus.SUCCESS, 0, 1);
+            }
+
+            // The worker waited instead of queueing more chunks
+            assertEquals(2, record.getSpillChunks());
+            assertTrue(record.getSpillStalls() > 0);
+
+            record.seal();
+            LatencyRecord.Cursor cursor = record.cursor();
+            int i = 0;
+            while (cursor.next()) {
+                assertEquals(START_NS + i * 1000L, cursor.getStartNanosecond());
+                i++;
+            }
+            assertEquals(count, i);
+        } finally {
+            executor.shutdown();
+            Files.deleteIfExists(file);
+        }
+    }
+}
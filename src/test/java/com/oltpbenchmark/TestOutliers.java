@@ -0,0 +1,80 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark;
+
+import com.oltpbenchmark.api.Procedure;
+import com.oltpbenchmark.api.TransactionType;
+import com.oltpbenchmark.types.TransactionStatus;
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Random;
+
+public class TestOutliers extends TestCase {
+
+    private static final TransactionType TYPE = new TransactionType(Procedure.class, 1, false, 0, 0) {
+    };
+
+    private static Outliers.Outlier outlier(long latency, int workerId) {
+        return new Outliers.Outlier(TYPE, 0, latency, latency, 1, TransactionStatus.SUCCESS, workerId, 1, List.of());
+    }
+
+    /**
+     * testKeepsSlowest
+     */
+    public void testKeepsSlowest() {
+        Outliers outliers = new Outliers(5);
+        Random rand = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            outliers.add(outlier(rand.nextInt(1000), 0));
+        }
+        outliers.add(outlier(5000, 0));
+        assertFalse(outliers.admits(0));
+
+        List<Outliers.Outlier> slowest = outliers.getSlowestFirst();
+        assertEquals(5, slowest.size());
+        assertEquals(5000, slowest.get(0).getLatencyMicroseconds());
+        for (int i = 1; i < slowest.size(); i++) {
+            assertTrue(slowest.get(i - 1).getLatencyMicroseconds() >= slowest.get(i).getLatencyMicroseconds());
+            assertTrue(slowest.get(i).getLatencyMicroseconds() >= 990);
+        }
+    }
+
+    /**
+     * testMerge
+     */
+    public void testMerge() {
+        Outliers a = new Outliers(2);
+        a.add(outlier(10, 0));
+        a.add(outlier(30, 0));
+        Outliers b = new Outliers(2);
+        b.add(outlier(20, 1));
+        b.add(outlier(40, 1));
+
+        Outliers total = new Outliers(3);
+        total.add(a);
+        total.add(b);
+
+        List<Outliers.Outlier> slowest = total.getSlowestFirst();
+        assertEquals(3, slowest.size());
+        assertEquals(40, slowest.get(0).getLatencyMicroseconds());
+        assertEquals(1, slowest.get(0).getWorkerId());
+        assertEquals(30, slowest.get(1).getLatencyMicroseconds());
+        assertEquals(20, slowest.get(2).getLatencyMicroseconds());
+    }
+
+}
@@ -0,0 +1,81 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark;
+
+import junit.framework.TestCase;
+
+public class TestPacer extends TestCase {
+
+    /**
+     * testIntervals
+     */
+    public void testIntervals() {
+        Pacer pacer = new Pacer(42);
+        assertEquals(10_000, pacer.nextInterval(100_000, Phase.Arrival.REGULAR));
+        assertEquals(333_333_333, pacer.nextInterval(3, Phase.Arrival.REGULAR));
+
+        // Exponentially distributed with a mean of 1/rate
+        int count = 200_000;
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            long interval = pacer.nextInterval(1000, Phase.Arrival.POISSON);
+            assertTrue(interval >= 0);
+            sum += interval;
+        }
+        assertEquals(1_000_000, sum / count, 10_000);
+        assertTrue(pacer.getSpinNanoseconds() >= Pacer.MIN_SPIN_NANOSECONDS);
+        assertTrue(pacer.getSpinNanoseconds() <= Pacer.MAX_SPIN_NANOSECONDS);
+    }
+
+    /**
+     * testCatchUp
+     */
+    public void testCatchUp() {
+        Pacer pacer = new Pacer(42);
+        pacer.start(0, 1000, Phase.Arrival.REGULAR);
+        assertEquals(1_000_000, pacer.getDeadline());
+
+        // Everything due by 5.5ms is released at once, the schedule is not shifted
+        assertEquals(5, pacer.advance(5_500_000, 1000, Phase.Arrival.REGULAR));
+        assertEquals(6_000_000, pacer.getDeadline());
+        assertEquals(1, pacer.advance(5_500_000, 1000, Phase.Arrival.REGULAR));
+        assertEquals(7_000_000, pacer.getDeadline());
+    }
+
+    /**
+     * testHighRate
+     */
+    public void testHighRate() {
+        int rate = 100_000;
+        Pacer pacer = new Pacer(42);
+        long start = System.nanoTime();
+        pacer.start(start, rate, Phase.Arrival.REGULAR);
+
+        // Released arrivals must track the schedule: no drift, whatever the
+        // wake-up jitter
+        long released = 0;
+        long end = start + 200_000_000L;
+        long now;
+        do {
+            now = pacer.awaitDeadline();
+            assertTrue(pacer.getLateness() >= 0);
+            released += pacer.advance(now, rate, Phase.Arrival.REGULAR);
+        } while (now < end);
+        long expected = (now - start) / 10_000;
+        assertTrue(released + " vs " + expected, Math.abs(released - expected) <= 1);
+    }
+}
@@ -0,0 +1,97 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class TestPhase extends TestCase {
+
+    private static Phase phase(List<Double> weights, boolean serial, boolean timed) {
+        return new Phase("test", 1, timed ? 60 : 0, 0, 100, weights, true, false, serial, timed, 1, Phase.Arrival.REGULAR);
+    }
+
+    /**
+     * testChooseTransaction
+     */
+    public void testChooseTransaction() {
+        Phase phase = phase(List.of(0.0, 99.5, 0.5), false, true);
+        int[] counts = new int[4];
+        for (int i = 0; i < 100_000; i++) {
+            counts[phase.chooseTransaction()]++;
+        }
+        assertEquals(0, counts[0]);
+        assertEquals(0, counts[1]);
+        assertTrue(counts[3] > 0);
+        assertEquals(100_000, counts[2] + counts[3]);
+    }
+
+    /**
+     * testSerial
+     */
+    public void testSerial() {
+        // Queries with a weight of 0 are skipped, cold runs do not advance
+        Phase phase = phase(List.of(1.0, 0.0, 1.0), true, false);
+        assertEquals(1, phase.chooseTransaction(true));
+        assertEquals(1, phase.chooseTransaction(false));
+        assertEquals(3, phase.chooseTransaction(false));
+        assertEquals(4, phase.chooseTransaction(false));
+
+        phase.resetSerial();
+        assertEquals(1, phase.chooseTransaction(false));
+
+        // Timed serial runs loop through the queries
+        Phase timed = phase(List.of(1.0, 1.0, 1.0), true, true);
+        for (int i = 0; i < 7; i++) {
+            assertEquals(i % 3 + 1, timed.chooseTransaction(false));
+        }
+    }
+
+    /**
+     * testConcurrentSerial
+     */
+    public void testConcurrentSerial() throws InterruptedException {
+        int queries = 50_000;
+        List<Double> weights = new ArrayList<>();
+        for (int i = 0; i < queries; i++) {
+            weights.add(1.0);
+        }
+        Phase phase = phase(weights, true, false);
+
+        // Every query is handed out exactly once
+        AtomicIntegerArray seen = new AtomicIntegerArray(queries + 2);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                int query;
+                while ((query = phase.chooseTransaction(false)) <= queries) {
+                    seen.incrementAndGet(query);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int q = 1; q <= queries; q++) {
+            assertEquals("query " + q, 1, seen.get(q));
+        }
+    }
+}
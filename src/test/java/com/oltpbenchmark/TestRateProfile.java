@@ -0,0 +1,94 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TestRateProfile extends TestCase {
+
+    /**
+     * testRamp
+     */
+    public void testRamp() {
+        RateProfile ramp = RateProfile.ramp(100, 1000, 60);
+        assertEquals(100.0, ramp.getRate(0), 1e-9);
+        assertEquals(550.0, ramp.getRate(30), 1e-9);
+        assertEquals(1000.0, ramp.getRate(60), 1e-9);
+        // holds the last rate after the ramp
+        assertEquals(1000.0, ramp.getRate(600), 1e-9);
+        assertEquals("ramp 100 to 1000 over 60s", ramp.toString());
+    }
+
+    /**
+     * testSteps
+     */
+    public void testSteps() {
+        RateProfile steps = RateProfile.steps(new double[]{0, 10, 20}, new double[]{100, 500, 0});
+        assertEquals(100.0, steps.getRate(9.99), 1e-9);
+        assertEquals(500.0, steps.getRate(10), 1e-9);
+        assertEquals(500.0, steps.getRate(19), 1e-9);
+        // never below the minimum, the pacer must keep waking up
+        assertEquals(RateProfile.MIN_RATE, steps.getRate(25), 1e-9);
+
+        try {
+            RateProfile.steps(new double[]{10, 0}, new double[]{1, 2});
+            fail("offsets must not decrease");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * testSine
+     */
+    public void testSine() {
+        RateProfile sine = RateProfile.sine(500, 400, 3600);
+        assertEquals(500.0, sine.getRate(0), 1e-6);
+        assertEquals(900.0, sine.getRate(900), 1e-6);
+        assertEquals(100.0, sine.getRate(2700), 1e-6);
+        assertEquals(500.0, sine.getRate(3600), 1e-6);
+    }
+
+    /**
+     * testTrace
+     */
+    public void testTrace() throws IOException {
+        Path file = Files.createTempFile("trace", ".csv");
+        try {
+            Files.writeString(file, "offset,rate\n# morning\n0,100\n\n60, 700\n120,400\n");
+            RateProfile trace = RateProfile.loadTrace(file);
+            assertEquals(RateProfile.Shape.TRACE, trace.getShape());
+            assertEquals(400.0, trace.getRate(30), 1e-9);
+            assertEquals(550.0, trace.getRate(90), 1e-9);
+            assertEquals("trace 3 points", trace.toString());
+
+            Files.writeString(file, "0,100\n60,lots\n");
+            try {
+                RateProfile.loadTrace(file);
+                fail("invalid line");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("line 2"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark;
+
+import com.oltpbenchmark.types.TransactionStatus;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class TestSaturationSearch extends TestCase {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final List<Phase> phases = new ArrayList<>();
+
+    private SaturationSearch search(int startRate, int maxRate) {
+        Phase template = new Phase("test", 1, 60, 10, startRate, List.of(100.0), true, false, false, true, 4, Phase.Arrival.POISSON);
+        return new SaturationSearch(template, phases, 50, 0.01, startRate, maxRate, 10, 0, 0.05);
+    }
+
+    /**
+     * Runs every step against a system that completes up to {@code capacity}
+     * requests per second in 10ms, and needs 200ms beyond that
+     */
+    private static void run(SaturationSearch search, int capacity) {
+        while (search.hasNext()) {
+            Phase phase = search.next();
+            IntervalRecorder recorder = new IntervalRecorder();
+            int completed = Math.min(phase.getRate(), capacity);
+            long latency = phase.getRate() <= capacity ? 10_000 : 200_000;
+            for (int i = 0; i < completed; i++) {
+                recorder.recordLatency(1, latency, 0);
+                recorder.recordOutcome(1, TransactionStatus.SUCCESS);
+            }
+            IntervalRecorder.Interval interval = new IntervalRecorder.Interval();
+            recorder.drainInto(interval);
+            long start = System.nanoTime();
+            search.recordInterval(start, start + SECOND, interval);
+        }
+    }
+
+    /**
+     * testKnee
+     */
+    public void testKnee() {
+        SaturationSearch search = search(100, 100_000);
+        run(search, 1000);
+
+        // Ramp 100, 200, 400, 800, 1600, then bisect down to within 5%
+        int knee = search.getKnee();
+        assertTrue(Integer.toString(knee), knee <= 1000 && knee >= 1000 / 1.05);
+        List<SaturationSearch.Step> steps = search.getSteps();
+        assertEquals(100, steps.get(0).getRate());
+        assertEquals(1600, steps.get(4).getRate());
+        assertFalse(steps.get(4).isPassed());
+        assertTrue(steps.size() < SaturationSearch.MAX_STEPS);
+
+        // Every step got its own phase
+        assertEquals(steps.size(), phases.size());
+        for (int i = 0; i < phases.size(); i++) {
+            assertEquals(i + 1, phases.get(i).getId());
+            assertEquals(steps.get(i).getRate(), phases.get(i).getRate());
+            assertEquals(4, phases.get(i).getActiveTerminals());
+            assertEquals(Phase.Arrival.POISSON, phases.get(i).getArrival());
+            assertEquals(i == 0 ? 10 : 0, phases.get(i).getWarmupTime());
+        }
+
+        Map<String, Object> m = search.toMap();
+        assertEquals(knee, m.get("Knee (requests/second)"));
+        assertEquals(steps.size(), ((List<?>) m.get("Steps")).size());
+    }
+
+    /**
+     * testMaxRate
+     */
+    public void testMaxRate() {
+        SaturationSearch search = search(100, 500);
+        run(search, 1000);
+
+        // Never goes beyond the maximum, which is the knee if it passes
+        assertEquals(500, search.getKnee());
+        assertEquals(4, search.getSteps().size());
+    }
+
+    /**
+     * testNoData
+     */
+    public void testNoData() {
+        SaturationSearch search = search(100, 500);
+        search.next();
+
+        // A step without a measured interval fails
+        assertTrue(search.hasNext());
+        assertFalse(search.getSteps().get(0).isPassed());
+        assertEquals(0, search.getKnee());
+    }
+}
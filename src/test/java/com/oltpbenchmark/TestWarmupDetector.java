@@ -0,0 +1,79 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+public class TestWarmupDetector extends TestCase {
+
+    /**
+     * testCoefficientOfVariation
+     */
+    public void testCoefficientOfVariation() {
+        assertEquals(0.0, WarmupDetector.coefficientOfVariation(List.of(5.0, 5.0, 5.0)), 1e-9);
+        assertEquals(0.5, WarmupDetector.coefficientOfVariation(List.of(1.0, 3.0)), 1e-9);
+        assertEquals(0.0, WarmupDetector.coefficientOfVariation(List.of(0.0, 0.0)), 1e-9);
+        assertTrue(Double.isInfinite(WarmupDetector.coefficientOfVariation(List.of(-1.0, 1.0))));
+    }
+
+    /**
+     * testSteadyState
+     */
+    public void testSteadyState() {
+        WarmupDetector detector = new WarmupDetector(4, 0.05, 60);
+
+        // Throughput climbs while caches warm up
+        double[] throughputs = {100, 300, 600, 800, 1000, 1010, 990, 1000};
+        for (int i = 0; i < throughputs.length; i++) {
+            assertFalse("interval " + i, detector.isSteady());
+            detector.recordInterval(throughputs[i], 10);
+        }
+        assertTrue(detector.isSteady());
+
+        // Latency spikes make it unsteady again
+        detector.recordInterval(1000, 50);
+        assertFalse(detector.isSteady());
+    }
+
+    /**
+     * testIdle
+     */
+    public void testIdle() {
+        WarmupDetector detector = new WarmupDetector(2, 0.05, 60);
+        detector.recordInterval(0, 0);
+        detector.recordInterval(0, 0);
+        assertFalse(detector.isSteady());
+
+        detector.finish(60_000_000_000L, false);
+        assertEquals(60_000_000_000L, detector.getWarmupNanoseconds());
+        assertEquals(false, detector.toMap().get("Steady State Reached"));
+    }
+
+    /**
+     * testInvalid
+     */
+    public void testInvalid() {
+        try {
+            new WarmupDetector(1, 0.05, 60);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark;
+
+import com.oltpbenchmark.api.Procedure;
+import com.oltpbenchmark.api.TransactionType;
+import com.oltpbenchmark.types.TransactionStatus;
+import junit.framework.TestCase;
+
+public class TestWindowedStatistics extends TestCase {
+
+    private static final long START_NS = 1_000_000_000L;
+    private static final long SECOND_NS = 1_000_000_000L;
+
+    private static final TransactionType TYPE_A = new TransactionType(Procedure.class, 1, false, 0, 0) {
+    };
+    private static final TransactionType TYPE_B = new TransactionType(Procedure.class, 2, false, 0, 0) {
+    };
+
+    /**
+     * testWindowsAndTypes
+     */
+    public void testWindowsAndTypes() {
+        LatencyRecord record = new LatencyRecord(START_NS);
+        // Window 0: two A's (one aborted) and one B
+        record.addLatency(1, START_NS, START_NS + 1_000_000, 0, TransactionStatus.SUCCESS, 0, 1);
+        record.addLatency(2, START_NS + 10, START_NS + 10 + 3_000_000, 0, TransactionStatus.SUCCESS, 0, 1);
+        record.addLatency(1, START_NS + 20, START_NS + 20 + 2_000_000, 0, TransactionStatus.USER_ABORTED, 0, 1);
+        // Window 1 is empty, window 2 only has a B
+        record.addLatency(2, START_NS + 2 * SECOND_NS, START_NS + 2 * SECOND_NS + 5_000_000, 1_000_000, TransactionStatus.SUCCESS, 0, 1);
+
+        WindowedStatistics stats = WindowedStatistics.compute(record.cursor(), 1);
+        assertEquals(3, stats.getWindowCount());
+
+        assertEquals(3, stats.getRequests(TransactionType.INVALID, 0));
+        assertEquals(2, stats.getSuccesses(TransactionType.INVALID, 0));
+        assertEquals(2, stats.getRequests(TYPE_A, 0));
+        assertEquals(1, stats.getSuccesses(TYPE_A, 0));
+        assertEquals(1, stats.getRequests(TYPE_B, 0));
+
+        DistributionStatistics a = stats.getStatistics(TYPE_A, 0, WindowedStatistics.Metric.SERVICE_TIME);
+        assertEquals(2, a.getCount());
+        assertEquals(1000.0, a.getMinimum());
+        assertEquals(2000.0, a.getMaximum());
+        assertEquals(1500.0, a.getAverage());
+
+        for (TransactionType type : new TransactionType[]{TransactionType.INVALID, TYPE_A, TYPE_B}) {
+            assertEquals(0, stats.getRequests(type, 1));
+            assertEquals(-1.0, stats.getStatistics(type, 1, WindowedStatistics.Metric.SERVICE_TIME).getMaximum());
+        }
+
+        assertEquals(0, stats.getRequests(TYPE_A, 2));
+        assertEquals(1, stats.getRequests(TYPE_B, 2));
+        assertEquals(6000.0, stats.getStatistics(TYPE_B, 2, WindowedStatistics.Metric.RESPONSE_TIME).getMaximum());
+        assertEquals(1000.0, stats.getStatistics(TransactionType.INVALID, 2, WindowedStatistics.Metric.QUEUE_DELAY).getMaximum());
+    }
+
+    /**
+     * testManyWindows
+     */
+    public void testManyWindows() {
+        LatencyRecord record = new LatencyRecord(START_NS);
+        int windows = 500;
+        for (int i = 0; i < windows; i++) {
+            long start = START_NS + i * SECOND_NS;
+            // Type 2 only shows up in the second half
+            int type = (i < windows / 2) ? 1 : 2;
+            record.addLatency(type, start, start + (i + 1) * 1000L, 0, 1);
+        }
+
+        WindowedStatistics stats = WindowedStatistics.compute(record.cursor(), 2);
+        assertEquals(windows / 2, stats.getWindowCount());
+        for (int w = 0; w < stats.getWindowCount(); w++) {
+            assertEquals(2, stats.getRequests(TransactionType.INVALID, w));
+            assertEquals(w < windows / 4 ? 2 : 0, stats.getRequests(TYPE_A, w));
+            assertEquals(w < windows / 4 ? 0 : 2, stats.getRequests(TYPE_B, w));
+            assertEquals((double) (2 * w + 2), stats.getStatistics(TransactionType.INVALID, w, WindowedStatistics.Metric.SERVICE_TIME).getMaximum());
+        }
+    }
+
+    /**
+     * testEmpty
+     */
+    public void testEmpty() {
+        WindowedStatistics stats = WindowedStatistics.compute(new LatencyRecord(START_NS).cursor(), 1);
+        assertEquals(0, stats.getWindowCount());
+    }
+}
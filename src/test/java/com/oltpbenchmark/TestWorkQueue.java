@@ -0,0 +1,137 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestWorkQueue extends TestCase {
+
+    /**
+     * testOfferPoll
+     */
+    public void testOfferPoll() {
+        WorkQueue queue = new WorkQueue(5);
+        assertNull(queue.poll());
+
+        // Capacity is rounded up to a power of two
+        for (int i = 1; i <= 8; i++) {
+            assertTrue(queue.offer(new SubmittedProcedure(i)));
+        }
+        assertFalse(queue.offer(new SubmittedProcedure(9)));
+        assertEquals(8, queue.size());
+
+        // FIFO order, also across laps of the ring
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 1; i <= 8; i++) {
+                assertEquals(i, queue.poll().getType());
+                assertTrue(queue.offer(new SubmittedProcedure(i)));
+            }
+        }
+
+        queue.clear();
+        assertEquals(0, queue.size());
+        assertNull(queue.poll());
+    }
+
+    /**
+     * testTakeStops
+     */
+    public void testTakeStops() throws InterruptedException {
+        WorkQueue queue = new WorkQueue(16);
+        AtomicBoolean stop = new AtomicBoolean();
+        List<SubmittedProcedure> taken = new ArrayList<>();
+        Thread consumer = new Thread(() -> {
+            SubmittedProcedure work;
+            while ((work = queue.take(stop::get)) != null) {
+                taken.add(work);
+            }
+        });
+        consumer.start();
+
+        queue.offer(new SubmittedProcedure(1));
+        queue.signal();
+        while (queue.getWaiting() == 0 || queue.size() > 0) {
+            Thread.onSpinWait();
+        }
+
+        stop.set(true);
+        queue.wakeAll();
+        consumer.join(10000);
+        assertFalse(consumer.isAlive());
+        assertEquals(1, taken.size());
+    }
+
+    /**
+     * testConcurrentDispatch
+     */
+    public void testConcurrentDispatch() throws InterruptedException {
+        WorkQueue queue = new WorkQueue(64);
+        int producers = 2;
+        int consumers = 4;
+        int perProducer = 200_000;
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong count = new AtomicLong();
+        AtomicLong sum = new AtomicLong();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                SubmittedProcedure work;
+                while ((work = queue.take(stop::get)) != null) {
+                    count.incrementAndGet();
+                    sum.addAndGet(work.getType());
+                }
+            }));
+        }
+        List<Thread> producerThreads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            producerThreads.add(new Thread(() -> {
+                for (int i = 1; i <= perProducer; i++) {
+                    while (!queue.offer(new SubmittedProcedure(i))) {
+                        queue.signal();
+                        Thread.yield();
+                    }
+                    queue.signal();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        producerThreads.forEach(Thread::start);
+        for (Thread t : producerThreads) {
+            t.join();
+        }
+        while (count.get() < (long) producers * perProducer) {
+            Thread.sleep(1);
+        }
+        stop.set(true);
+        queue.wakeAll();
+        for (Thread t : threads) {
+            t.join(10000);
+            assertFalse(t.isAlive());
+        }
+
+        // Nothing lost and nothing taken twice
+        assertEquals((long) producers * perProducer, count.get());
+        assertEquals((long) producers * perProducer * (perProducer + 1) / 2, sum.get());
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,81 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+public class TestWorkerArrivals extends TestCase {
+
+    private static Phase phase(int id, int rate, int activeTerminals, Phase.Arrival arrival) {
+        return new Phase("test", id, 60, 0, rate, List.of(100.0), true, false, false, true, activeTerminals, arrival);
+    }
+
+    /**
+     * testRateShare
+     */
+    public void testRateShare() {
+        // 1000/s over 4 terminals: every worker owns 250/s, one arrival per 4ms
+        Phase phase = phase(1, 1000, 4, Phase.Arrival.REGULAR);
+        assertEquals(250.0, WorkerArrivals.getRateShare(phase, phase.getRate()));
+
+        WorkerArrivals arrivals = new WorkerArrivals(42);
+        long first = arrivals.nextDeadline(phase, phase.getRate(), 0, 100);
+        assertTrue(first >= 0 && first < 4_000_000);
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(first + i * 4_000_000L, arrivals.nextDeadline(phase, phase.getRate(), 0, 100));
+        }
+
+        // Starts over when the phase changes
+        Phase next = phase(2, 100, 1, Phase.Arrival.REGULAR);
+        long restart = arrivals.nextDeadline(next, next.getRate(), 1_000_000_000L, 100);
+        assertTrue(restart >= 1_000_000_000L && restart < 1_010_000_000L);
+    }
+
+    /**
+     * testPoisson
+     */
+    public void testPoisson() {
+        // Exponentially distributed with a mean of 1/share
+        Phase phase = phase(1, 4000, 4, Phase.Arrival.POISSON);
+        WorkerArrivals arrivals = new WorkerArrivals(42);
+        int count = 100_000;
+        long first = arrivals.nextDeadline(phase, phase.getRate(), 0, count);
+        long last = first;
+        for (int i = 0; i < count; i++) {
+            last = arrivals.nextDeadline(phase, phase.getRate(), 0, count);
+        }
+        assertEquals(1_000_000, (last - first) / (double) count, 10_000);
+    }
+
+    /**
+     * testBacklog
+     */
+    public void testBacklog() {
+        Phase phase = phase(1, 1000, 1, Phase.Arrival.REGULAR);
+        WorkerArrivals arrivals = new WorkerArrivals(42);
+        arrivals.nextDeadline(phase, phase.getRate(), 0, 10);
+
+        // One second behind, only the last 10 arrivals are still owed
+        long now = 1_000_000_000L;
+        long deadline = arrivals.nextDeadline(phase, phase.getRate(), now, 10);
+        assertEquals(now - 10_000_000L, deadline);
+        assertTrue(arrivals.getDropped() > 980);
+        assertEquals(deadline + 1_000_000L, arrivals.nextDeadline(phase, phase.getRate(), now, 10));
+    }
+}
@@ -0,0 +1,103 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark;
+
+import com.oltpbenchmark.types.State;
+import com.oltpbenchmark.types.WorkerExecutor;
+import com.oltpbenchmark.util.ThreadUtil;
+import junit.framework.TestCase;
+
+import java.util.List;
+
+public class TestWorkloadState extends TestCase {
+
+    private static Phase phase(int id, int activeTerminals) {
+        return new Phase("test", id, 60, 0, 100, List.of(100.0), false, false, false, true, activeTerminals, Phase.Arrival.REGULAR);
+    }
+
+    /**
+     * testStayAwake
+     */
+    public void testStayAwake() throws InterruptedException {
+        for (WorkerExecutor executor : WorkerExecutor.values()) {
+            WorkloadState state = new WorkloadState(new BenchmarkState(3), List.of(phase(1, 1), phase(2, 2)), 2);
+            state.switchToNextPhase();
+
+            // One of the two terminals sleeps through the first phase
+            Thread sleeper = ThreadUtil.newWorkerThread(executor, state::stayAwake);
+            sleeper.start();
+            while (sleeper.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            state.stayAwake();
+            assertTrue(sleeper.isAlive());
+
+            // and is woken up by the next one
+            state.switchToNextPhase();
+            sleeper.join(10000);
+            assertFalse(executor.name(), sleeper.isAlive());
+        }
+    }
+
+    /**
+     * testEpoch
+     */
+    public void testEpoch() {
+        BenchmarkState benchmarkState = new BenchmarkState(1);
+        Phase first = phase(1, 1);
+        WorkloadState state = new WorkloadState(benchmarkState, List.of(first), 1);
+        Epoch initial = state.getEpoch();
+        assertEquals(State.WARMUP, initial.getState());
+        assertNull(initial.getPhase());
+
+        // Phase switches and transitions publish new epochs
+        state.switchToNextPhase();
+        assertSame(first, state.getEpoch().getPhase());
+        benchmarkState.startMeasure();
+        Epoch measure = state.getEpoch();
+        assertEquals(State.MEASURE, measure.getState());
+        assertSame(first, measure.getPhase());
+        assertEquals(State.WARMUP, initial.getState());
+
+        state.switchToNextPhase();
+        assertNull(state.getEpoch().getPhase());
+        assertEquals(State.MEASURE, state.getEpoch().getState());
+    }
+
+    /**
+     * testTransitions
+     */
+    public void testTransitions() {
+        BenchmarkState benchmarkState = new BenchmarkState(1);
+        WorkloadState state = new WorkloadState(benchmarkState, List.of(phase(1, 1)), 1);
+
+        // A hot query only follows a cold one
+        benchmarkState.startHotQuery();
+        assertEquals(State.WARMUP, state.getGlobalState());
+        benchmarkState.startColdQuery();
+        benchmarkState.startHotQuery();
+        assertEquals(State.MEASURE, state.getGlobalState());
+
+        // Late workers cannot undo the end of the run
+        benchmarkState.startCoolDown();
+        assertEquals(State.EXIT, state.getGlobalState());
+        benchmarkState.startColdQuery();
+        benchmarkState.signalLatencyComplete();
+        assertEquals(State.EXIT, state.getGlobalState());
+        assertTrue(state.getEpoch().isOver());
+    }
+}
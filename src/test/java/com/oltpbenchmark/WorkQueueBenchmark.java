@@ -0,0 +1,200 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Microbenchmark of request dispatch in rate-limited phases: one producer
+ * keeps the queue topped up to RATE_QUEUE_LIMIT, like ThreadBench does, and
+ * the terminals fetch and finish requests as fast as they can. Compares the
+ * {@link WorkQueue} against the LinkedList guarded by wait/notify that
+ * WorkloadState used before.
+ * <p>
+ * Not run as part of the tests, start it with
+ * {@code java -cp <test classpath> com.oltpbenchmark.WorkQueueBenchmark [seconds] [terminals...]}
+ */
+public class WorkQueueBenchmark {
+
+    private static final int RATE_QUEUE_LIMIT = 10000;
+
+    private interface Dispatcher {
+        void add(int amount);
+
+        /**
+         * @return null once stopped
+         */
+        SubmittedProcedure fetch();
+
+        void finished();
+
+        void stop();
+    }
+
+    /**
+     * The previous implementation, every call takes the monitor
+     */
+    private static final class MonitorDispatcher implements Dispatcher {
+        private final LinkedList<SubmittedProcedure> workQueue = new LinkedList<>();
+        private int workersWaiting = 0;
+        private int workersWorking = 0;
+        private volatile boolean stopped = false;
+
+        @Override
+        public synchronized void add(int amount) {
+            int workAdded = 0;
+            for (int i = 0; i < amount && workQueue.size() <= RATE_QUEUE_LIMIT; ++i) {
+                workQueue.add(new SubmittedProcedure(1));
+                workAdded++;
+            }
+            int numToWake = Math.min(workAdded, workersWaiting);
+            while (numToWake-- > 0) {
+                this.notify();
+            }
+        }
+
+        @Override
+        public synchronized SubmittedProcedure fetch() {
+            if (workQueue.peek() == null) {
+                workersWaiting += 1;
+                while (workQueue.peek() == null) {
+                    if (stopped) {
+                        return null;
+                    }
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                workersWaiting -= 1;
+            }
+            ++workersWorking;
+            return workQueue.remove();
+        }
+
+        @Override
+        public synchronized void finished() {
+            --workersWorking;
+        }
+
+        @Override
+        public synchronized void stop() {
+            stopped = true;
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * The lock-free queue, used the way WorkloadState uses it
+     */
+    private static final class RingDispatcher implements Dispatcher {
+        private final WorkQueue workQueue = new WorkQueue(RATE_QUEUE_LIMIT + 1);
+        private final AtomicInteger workersWorking = new AtomicInteger();
+        private volatile boolean stopped = false;
+
+        @Override
+        public void add(int amount) {
+            int workAdded = 0;
+            for (int i = 0; i < amount && workQueue.size() <= RATE_QUEUE_LIMIT; ++i) {
+                if (!workQueue.offer(new SubmittedProcedure(1))) {
+                    break;
+                }
+                workAdded++;
+            }
+            if (workAdded > 0) {
+                workQueue.signal();
+            }
+        }
+
+        @Override
+        public SubmittedProcedure fetch() {
+            SubmittedProcedure work = workQueue.take(() -> stopped);
+            if (work != null) {
+                workersWorking.incrementAndGet();
+            }
+            return work;
+        }
+
+        @Override
+        public void finished() {
+            workersWorking.decrementAndGet();
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+            workQueue.wakeAll();
+        }
+    }
+
+    private static double run(Dispatcher dispatcher, int terminals, int seconds) throws InterruptedException {
+        LongAdder dispatched = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < terminals; t++) {
+            Thread thread = new Thread(() -> {
+                while (dispatcher.fetch() != null) {
+                    dispatched.increment();
+                    dispatcher.finished();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        long start = System.nanoTime();
+        long end = start + seconds * 1000000000L;
+        while (System.nanoTime() < end) {
+            dispatcher.add(1000);
+            Thread.yield();
+        }
+        long measured = dispatched.sum();
+        long elapsed = System.nanoTime() - start;
+
+        dispatcher.stop();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return measured / (elapsed / 1e9);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int[] terminals = {1, 4, 16, 64, 256};
+        if (args.length > 1) {
+            terminals = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                terminals[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        // warm up both code paths
+        run(new MonitorDispatcher(), 4, 1);
+        run(new RingDispatcher(), 4, 1);
+
+        System.out.println("Terminals,Monitor (requests/second),WorkQueue (requests/second),Speedup");
+        for (int t : terminals) {
+            double monitor = run(new MonitorDispatcher(), t, seconds);
+            double ring = run(new RingDispatcher(), t, seconds);
+            System.out.printf("%d,%.0f,%.0f,%.2f%n", t, monitor, ring, ring / monitor);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark.api;
+
+import com.oltpbenchmark.BenchmarkState;
+import com.oltpbenchmark.LatencyRecord;
+import com.oltpbenchmark.Phase;
+import com.oltpbenchmark.WorkloadConfiguration;
+import com.oltpbenchmark.types.TransactionStatus;
+import com.oltpbenchmark.util.LatencyHistogram;
+import junit.framework.TestCase;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+public class TestConnectionChurn extends TestCase {
+
+    private static final String URL = "jdbc:slowconnect:test";
+    private static final long CONNECT_MILLIS = 20;
+    private static final long CLOSE_MILLIS = 10;
+
+    public static class Noop extends Procedure {
+    }
+
+    private static class NoopWorker extends Worker<MockBenchmark> {
+        NoopWorker(MockBenchmark benchmark) {
+            super(benchmark, 0);
+        }
+
+        @Override
+        protected TransactionStatus executeWork(Connection conn, TransactionType txnType) {
+            return TransactionStatus.SUCCESS;
+        }
+    }
+
+    /**
+     * A driver that takes its time to connect and to close connections
+     */
+    private static class SlowDriver implements Driver {
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            sleep(CONNECT_MILLIS);
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "close" -> sleep(CLOSE_MILLIS);
+                    case "isClosed", "isValid" -> {
+                        return false;
+                    }
+                    case "equals" -> {
+                        return proxy == args[0];
+                    }
+                    case "hashCode" -> {
+                        return System.identityHashCode(proxy);
+                    }
+                    default -> {
+                    }
+                }
+                return null;
+            });
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:slowconnect:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+
+        private static void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * testConnectTimeIsNotLatency
+     */
+    public void testConnectTimeIsNotLatency() throws Exception {
+        Driver driver = new SlowDriver();
+        DriverManager.registerDriver(driver);
+        try {
+            WorkloadConfiguration conf = new WorkloadConfiguration();
+            conf.setBenchmarkName("mockbenchmark");
+            conf.setUrl(URL);
+            conf.setNewConnectionPerTxn(true);
+            conf.setMaxRetries(1);
+            conf.setTerminals(1);
+            TransactionType type = new TransactionType(Noop.class, 1, false, 0, 0);
+            conf.setTransTypes(new TransactionTypes(new ArrayList<>(List.of(TransactionType.INVALID, type))));
+            conf.addPhase(1, 60, 0, 0, List.of(100.0), false, false, false, true, 1, Phase.Arrival.REGULAR);
+
+            BenchmarkState state = new BenchmarkState(2);
+            conf.initializeState(state);
+            NoopWorker worker = new NoopWorker(new MockBenchmark(conf));
+            Thread thread = new Thread(worker);
+            thread.start();
+
+            conf.getWorkloadState().switchToNextPhase();
+            state.blockForStart();
+            state.startMeasure();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (worker.getRequests() < 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            state.startCoolDown();
+            thread.join(10000);
+            assertFalse(thread.isAlive());
+
+            // Every transaction connected and closed, but that time is only
+            // reported as connection churn
+            LatencyHistogram latency = worker.getLatencyHistograms().get(type);
+            assertNotNull(latency);
+            assertTrue(latency.getCount() >= 5);
+            assertTrue(latency.toString(), latency.getMaximum() < CLOSE_MILLIS * 1000);
+            assertTrue(worker.getResponseTimeHistograms().get(type).getMaximum() < CLOSE_MILLIS * 1000);
+            assertTrue(worker.getConnectHistogram().getCount() >= 5);
+            assertTrue(worker.getConnectHistogram().getMinimum() >= CONNECT_MILLIS * 1000);
+            assertTrue(worker.getDisconnectHistogram().getMinimum() >= CLOSE_MILLIS * 1000);
+
+            LatencyRecord.Cursor samples = worker.getLatencyRecords().cursor();
+            while (samples.next()) {
+                assertTrue(samples.getLatencyMicrosecond() < CLOSE_MILLIS * 1000);
+            }
+        } finally {
+            DriverManager.deregisterDriver(driver);
+        }
+    }
+
+}
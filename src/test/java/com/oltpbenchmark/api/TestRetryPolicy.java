@@ -0,0 +1,102 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark.api;
+
+import com.oltpbenchmark.types.DatabaseType;
+import junit.framework.TestCase;
+
+import java.sql.SQLException;
+import java.util.SplittableRandom;
+
+public class TestRetryPolicy extends TestCase {
+
+    /**
+     * testForDatabase
+     */
+    public void testForDatabase() throws Exception {
+        assertEquals(RetryPolicies.MYSQL, RetryPolicies.forDatabase(DatabaseType.MARIADB));
+        assertEquals(RetryPolicies.POSTGRES, RetryPolicies.forDatabase(DatabaseType.POSTGRES));
+        assertEquals(RetryPolicies.COCKROACHDB, RetryPolicies.forDatabase(DatabaseType.COCKROACHDB));
+        assertEquals(RetryPolicies.SQLSERVER, RetryPolicies.forDatabase(DatabaseType.SQLAZURE));
+        assertEquals(RetryPolicies.DEFAULT, RetryPolicies.forDatabase(null));
+    }
+
+    /**
+     * testForName
+     */
+    public void testForName() throws Exception {
+        assertEquals(RetryPolicies.NONE, RetryPolicy.forName("none", DatabaseType.POSTGRES));
+        assertEquals(RetryPolicies.COCKROACHDB, RetryPolicy.forName("CockroachDB", DatabaseType.POSTGRES));
+        assertEquals(RetryPolicies.POSTGRES, RetryPolicy.forName(null, DatabaseType.POSTGRES));
+        assertEquals(RetryPolicies.POSTGRES, RetryPolicy.forName("", DatabaseType.POSTGRES));
+    }
+
+    /**
+     * testIsRetryable
+     */
+    public void testIsRetryable() throws Exception {
+        SQLException deadlock = new SQLException("deadlock", "40001", 1213);
+        SQLException serialization = new SQLException("serialization failure", "40001", 0);
+        SQLException restart = new SQLException("restart transaction", "40001", 12);
+        SQLException victim = new SQLException("deadlock victim", "S0001", 1205);
+        SQLException syntax = new SQLException("syntax error", "42601", 0);
+
+        assertTrue(RetryPolicies.MYSQL.isRetryable(deadlock));
+        assertFalse(RetryPolicies.MYSQL.isRetryable(serialization));
+        assertTrue(RetryPolicies.POSTGRES.isRetryable(serialization));
+        assertFalse(RetryPolicies.POSTGRES.isRetryable(restart));
+        assertTrue(RetryPolicies.COCKROACHDB.isRetryable(restart));
+        assertTrue(RetryPolicies.SQLSERVER.isRetryable(victim));
+        assertTrue(RetryPolicies.DEFAULT.isRetryable(deadlock));
+        assertTrue(RetryPolicies.DEFAULT.isRetryable(serialization));
+        assertFalse(RetryPolicies.NONE.isRetryable(serialization));
+        for (RetryPolicies policy : RetryPolicies.values()) {
+            assertFalse(policy.name(), policy.isRetryable(syntax));
+        }
+    }
+
+    /**
+     * testBackoff
+     */
+    public void testBackoff() throws Exception {
+        RetryBackoff backoff = new RetryBackoff(10, 100, new SplittableRandom(42));
+        for (int i = 0; i < 1000; i++) {
+            int retry = i % 8;
+            long ceiling = Math.min(100, 10L << retry) * 1000000L;
+            long delay = backoff.nextDelay(retry);
+            assertTrue(delay >= 0);
+            assertTrue(delay <= ceiling);
+        }
+        // No overflow for large retry numbers
+        assertTrue(backoff.nextDelay(100) <= 100 * 1000000L);
+
+        assertEquals(0, new RetryBackoff(0, 1000).nextDelay(5));
+    }
+
+    /**
+     * testInvalidBackoff
+     */
+    public void testInvalidBackoff() throws Exception {
+        try {
+            new RetryBackoff(100, 10);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+    }
+
+}
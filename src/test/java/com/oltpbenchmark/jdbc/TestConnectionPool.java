@@ -0,0 +1,137 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark.jdbc;
+
+import junit.framework.TestCase;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestConnectionPool extends TestCase {
+
+    private final AtomicInteger closed = new AtomicInteger();
+    private final AtomicBoolean valid = new AtomicBoolean(true);
+
+    /**
+     * A connection that only tracks whether it was closed
+     */
+    private Connection connect() {
+        boolean[] isClosed = {false};
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "close" -> {
+                    isClosed[0] = true;
+                    closed.incrementAndGet();
+                }
+                case "isClosed" -> {
+                    return isClosed[0];
+                }
+                case "isValid" -> {
+                    return valid.get();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> {
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * testReuse
+     */
+    public void testReuse() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this::connect, 2, 0, 0);
+        Connection first = pool.acquire();
+        pool.release(first);
+        assertSame(first, pool.acquire());
+
+        Connection second = pool.acquire();
+        assertTrue(first != second);
+        pool.release(first);
+        pool.release(second);
+        assertEquals(3, pool.getAcquired());
+        assertEquals(2, pool.getOpened());
+        assertEquals(0, closed.get());
+
+        pool.close();
+        assertEquals(2, closed.get());
+    }
+
+    /**
+     * testValidation
+     */
+    public void testValidation() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this::connect, 1, 1, 0);
+        Connection first = pool.acquire();
+        pool.release(first);
+
+        // Broken idle connections are replaced
+        valid.set(false);
+        Connection second = pool.acquire();
+        assertTrue(first != second);
+        assertEquals(1, pool.getRetired());
+        assertEquals(1, closed.get());
+        pool.release(second);
+    }
+
+    /**
+     * testMaxLifetime
+     */
+    public void testMaxLifetime() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this::connect, 1, 0, 1);
+        Connection first = pool.acquire();
+        Thread.sleep(1100);
+        pool.release(first);
+        assertEquals(1, pool.getRetired());
+        assertTrue(first.isClosed());
+        assertTrue(first != pool.acquire());
+    }
+
+    /**
+     * testSize
+     */
+    public void testSize() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this::connect, 1, 0, 0);
+        Connection first = pool.acquire();
+
+        // Waits until the only connection is released
+        AtomicBoolean acquired = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            try {
+                pool.release(pool.acquire());
+                acquired.set(true);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        waiter.start();
+        Thread.sleep(100);
+        assertFalse(acquired.get());
+        pool.release(first);
+        waiter.join(10000);
+        assertTrue(acquired.get());
+        assertEquals(1, pool.getOpened());
+    }
+}
@@ -0,0 +1,172 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark.jdbc;
+
+import com.oltpbenchmark.api.SQLStmt;
+import junit.framework.TestCase;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestStatementCache extends TestCase {
+
+    private final AtomicInteger prepared = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+    private final AtomicInteger cleared = new AtomicInteger();
+    private final AtomicInteger batched = new AtomicInteger();
+    private final AtomicInteger resultSetsClosed = new AtomicInteger();
+
+    /**
+     * A statement that only counts how it is used
+     */
+    private PreparedStatement statement() {
+        prepared.incrementAndGet();
+        boolean[] isClosed = {false};
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "close" -> {
+                    isClosed[0] = true;
+                    closed.incrementAndGet();
+                }
+                case "isClosed" -> {
+                    return isClosed[0];
+                }
+                case "clearParameters" -> cleared.incrementAndGet();
+                case "addBatch" -> batched.incrementAndGet();
+                case "clearBatch" -> batched.set(0);
+                case "getResultSet" -> {
+                    return resultSet();
+                }
+                default -> {
+                }
+            }
+            return null;
+        });
+    }
+
+    private ResultSet resultSet() {
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+            if (method.getName().equals("close")) {
+                resultSetsClosed.incrementAndGet();
+            }
+            return null;
+        });
+    }
+
+    private static Connection connection() {
+        return (Connection) Proxy.newProxyInstance(TestStatementCache.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            }
+            return method.getName().equals("hashCode") ? System.identityHashCode(proxy) : null;
+        });
+    }
+
+    /**
+     * testReuse
+     */
+    public void testReuse() throws Exception {
+        StatementCache cache = new StatementCache();
+        Connection conn = connection();
+        SQLStmt stmt = new SQLStmt("SELECT 1");
+
+        for (int i = 0; i < 3; i++) {
+            try (PreparedStatement ps = cache.get(conn, stmt, null, this::statement)) {
+                assertFalse(ps.isClosed());
+            }
+        }
+        assertEquals(1, prepared.get());
+        assertEquals(0, closed.get());
+        assertEquals(2, cleared.get());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // Another dialect or generated keys are other statements
+        cache.get(conn, stmt, new int[]{1}, this::statement).close();
+        stmt.setSQL("SELECT 2");
+        cache.get(conn, stmt, null, this::statement).close();
+        assertEquals(3, prepared.get());
+        assertEquals(3, cache.size());
+    }
+
+    /**
+     * testUnexecutedBatch
+     */
+    public void testUnexecutedBatch() throws Exception {
+        StatementCache cache = new StatementCache();
+        Connection conn = connection();
+        SQLStmt stmt = new SQLStmt("INSERT INTO t VALUES (?)");
+
+        // The transaction aborts before it executes its batch
+        try (PreparedStatement ps = cache.get(conn, stmt, null, this::statement)) {
+            ps.setInt(1, 1);
+            ps.addBatch();
+            ps.setInt(1, 2);
+            ps.addBatch();
+        }
+        assertEquals(0, batched.get());
+        assertEquals(1, resultSetsClosed.get());
+
+        // The next one does not execute those rows
+        try (PreparedStatement ps = cache.get(conn, stmt, null, this::statement)) {
+            assertEquals(1, cache.getHits());
+            ps.addBatch();
+            assertEquals(1, batched.get());
+        }
+        assertEquals(0, batched.get());
+        assertEquals(1, prepared.get());
+    }
+
+    /**
+     * testInUse
+     */
+    public void testInUse() throws Exception {
+        StatementCache cache = new StatementCache();
+        Connection conn = connection();
+        SQLStmt stmt = new SQLStmt("SELECT 1");
+
+        PreparedStatement outer = cache.get(conn, stmt, null, this::statement);
+        PreparedStatement inner = cache.get(conn, stmt, null, this::statement);
+        assertTrue(outer != inner);
+        assertFalse(inner instanceof CachedPreparedStatement);
+        inner.close();
+        outer.close();
+        assertEquals(1, closed.get());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * testEviction
+     */
+    public void testEviction() throws Exception {
+        StatementCache cache = new StatementCache();
+        SQLStmt stmt = new SQLStmt("SELECT 1");
+
+        cache.get(connection(), stmt, null, this::statement).close();
+        // A new connection evicts the statements of the previous one
+        cache.get(connection(), stmt, null, this::statement).close();
+        assertEquals(2, prepared.get());
+        assertEquals(1, closed.get());
+
+        cache.clear();
+        assertEquals(2, closed.get());
+        assertEquals(0, cache.size());
+    }
+}
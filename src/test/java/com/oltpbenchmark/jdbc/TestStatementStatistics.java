@@ -0,0 +1,156 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark.jdbc;
+
+import junit.framework.TestCase;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+
+public class TestStatementStatistics extends TestCase {
+
+    /**
+     * A result set with the given number of rows
+     */
+    private static ResultSet resultSet(int rows) {
+        int[] remaining = {rows};
+        return (ResultSet) Proxy.newProxyInstance(TestStatementStatistics.class.getClassLoader(), new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+            if (method.getName().equals("next")) {
+                return remaining[0]-- > 0;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * A statement whose queries return the given number of rows
+     */
+    private static PreparedStatement statement(int rows) {
+        return (PreparedStatement) Proxy.newProxyInstance(TestStatementStatistics.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> switch (method.getName()) {
+            case "executeQuery" -> resultSet(rows);
+            case "executeUpdate" -> 1;
+            default -> null;
+        });
+    }
+
+    /**
+     * testExecuteAndFetch
+     */
+    public void testExecuteAndFetch() throws Exception {
+        StatementStatistics stats = new StatementStatistics();
+        StatementStatistics.Timing timing = stats.get("NewOrder", "stmtGetItem");
+
+        try (PreparedStatement ps = new InstrumentedPreparedStatement(statement(3), timing)) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // Read every row
+                }
+            }
+            assertEquals(1, ps.executeUpdate());
+        }
+
+        assertEquals(2, timing.getExecuteTimes().getCount());
+        assertEquals(1, timing.getFetchTimes().getCount());
+        assertEquals(3, timing.getRows());
+    }
+
+    /**
+     * testUnclosedResultSet
+     */
+    public void testUnclosedResultSet() throws Exception {
+        StatementStatistics stats = new StatementStatistics();
+        StatementStatistics.Timing timing = stats.get("Payment", "stmtGetCust");
+
+        PreparedStatement ps = new InstrumentedPreparedStatement(statement(2), timing);
+        ResultSet first = ps.executeQuery();
+        first.next();
+        // Executing again closes the first result set
+        ps.executeQuery().next();
+        ps.close();
+
+        assertEquals(2, timing.getFetchTimes().getCount());
+        assertEquals(2, timing.getRows());
+
+        // Closing the result set after its statement counts it only once
+        first.close();
+        assertEquals(2, timing.getFetchTimes().getCount());
+    }
+
+    /**
+     * testParameterLog
+     */
+    public void testParameterLog() throws Exception {
+        ParameterLog log = new ParameterLog();
+
+        try (PreparedStatement ps = new InstrumentedPreparedStatement(statement(1), null, "GetDistrict", log)) {
+            ps.setInt(1, 3);
+            ps.setString(2, "x".repeat(100));
+            ps.setNull(3, java.sql.Types.INTEGER);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+            }
+            ps.clearParameters();
+            ps.setLong(1, 7);
+            ps.executeUpdate();
+        }
+
+        List<String> statements = log.describe();
+        assertEquals(2, statements.size());
+        assertEquals("GetDistrict(3, '" + "x".repeat(ParameterLog.MAX_VALUE_LENGTH - 1) + "..., null)", statements.get(0));
+        assertEquals("GetDistrict(7)", statements.get(1));
+
+        // Bounded, the rest is only counted
+        log.clear();
+        PreparedStatement ps = new InstrumentedPreparedStatement(statement(0), null, "UpdateStock", log);
+        for (int i = 0; i < ParameterLog.MAX_STATEMENTS + 3; i++) {
+            ps.setInt(1, i);
+            ps.executeUpdate();
+        }
+        statements = log.describe();
+        assertEquals(ParameterLog.MAX_STATEMENTS + 1, statements.size());
+        assertEquals("... 3 more", statements.get(ParameterLog.MAX_STATEMENTS));
+    }
+
+    /**
+     * testMerge
+     */
+    public void testMerge() throws Exception {
+        StatementStatistics a = new StatementStatistics();
+        a.get("NewOrder", "stmtGetItem").recordExecute(2000);
+        a.get("Payment", "stmtGetCust").recordExecute(1000);
+        StatementStatistics b = new StatementStatistics();
+        b.get("NewOrder", "stmtGetItem").recordExecute(4000);
+        b.get("NewOrder", "stmtInsertOrderLine").recordExecute(1000);
+
+        StatementStatistics total = new StatementStatistics();
+        total.add(a);
+        total.add(b);
+
+        Map<String, Map<String, StatementStatistics.Timing>> timings = total.getTimings();
+        assertEquals(2, timings.size());
+        assertEquals(2, timings.get("NewOrder").size());
+        assertEquals(2, timings.get("NewOrder").get("stmtGetItem").getExecuteTimes().getCount());
+        assertEquals(3.0, timings.get("NewOrder").get("stmtGetItem").getExecuteTimes().getMean());
+
+        total.reset();
+        assertTrue(total.isEmpty());
+    }
+
+}
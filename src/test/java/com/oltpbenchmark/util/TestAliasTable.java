@@ -0,0 +1,73 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark.util;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class TestAliasTable extends TestCase {
+
+    /**
+     * testDistribution
+     */
+    public void testDistribution() {
+        // Fractional weights that integer truncation would distort
+        List<Double> weights = List.of(0.5, 0.0, 45.0, 43.0, 4.0, 4.0, 3.5);
+        AliasTable table = new AliasTable(weights);
+        assertEquals(7, table.size());
+
+        SplittableRandom random = new SplittableRandom(42);
+        int samples = 2_000_000;
+        int[] counts = new int[weights.size()];
+        for (int i = 0; i < samples; i++) {
+            counts[table.sample(random)]++;
+        }
+
+        assertEquals(0, counts[1]);
+        for (int i = 0; i < weights.size(); i++) {
+            double expected = weights.get(i) / 100.0;
+            assertEquals("index " + i, expected, counts[i] / (double) samples, 0.002);
+        }
+    }
+
+    /**
+     * testSingleWeight
+     */
+    public void testSingleWeight() {
+        AliasTable table = new AliasTable(List.of(0.0, 0.0, 7.0));
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(2, table.sample(random));
+        }
+    }
+
+    /**
+     * testInvalidWeights
+     */
+    public void testInvalidWeights() {
+        for (List<Double> weights : List.of(List.of(0.0, 0.0), List.of(50.0, -1.0), List.<Double>of())) {
+            try {
+                new AliasTable(weights);
+                fail("Accepted " + weights);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark.util;
+
+import com.oltpbenchmark.DistributionStatistics;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class TestLatencyHistogram extends TestCase {
+
+    private static final double[] PERCENTILES = {0.0, 0.25, 0.5, 0.9, 0.99, 0.999, 0.9999, 1.0};
+
+    /**
+     * testBucketBoundaries
+     */
+    public void testBucketBoundaries() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            int index = LatencyHistogram.indexOf(value);
+            long low = LatencyHistogram.lowestValueAt(index);
+            long width = LatencyHistogram.bucketWidthAt(index);
+            assertTrue(value + " below bucket " + index, value >= low);
+            assertTrue(value + " above bucket " + index, value < low + width);
+        }
+    }
+
+    /**
+     * testPercentilesWithinRelativeError
+     */
+    public void testPercentilesWithinRelativeError() {
+        Random rand = new Random(1);
+        int[] values = new int[100000];
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            // Long-tailed, like real latencies
+            values[i] = (int) (-Math.log(1 - rand.nextDouble()) * 5000);
+            h.add(values[i]);
+        }
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        assertEquals(values.length, h.getCount());
+        assertEquals(sorted[0], h.getMinimum());
+        assertEquals(sorted[sorted.length - 1], h.getMaximum());
+
+        for (double p : PERCENTILES) {
+            int index = Math.min((int) (p * sorted.length), sorted.length - 1);
+            long expected = sorted[index];
+            long actual = h.getValueAtPercentile(p);
+            assertEquals("p" + p, expected, actual, Math.max(1, expected * LatencyHistogram.RELATIVE_ERROR));
+        }
+
+        DistributionStatistics exact = DistributionStatistics.computeStatistics(values);
+        DistributionStatistics approx = DistributionStatistics.computeStatistics(h);
+        assertEquals(exact.getCount(), approx.getCount());
+        assertEquals(exact.getAverage(), approx.getAverage(), 0.001);
+        assertEquals(exact.getStandardDeviation(), approx.getStandardDeviation(), 0.01);
+        assertEquals(exact.get99_9thPercentile(), approx.get99_9thPercentile(), exact.get99_9thPercentile() * LatencyHistogram.RELATIVE_ERROR);
+    }
+
+    /**
+     * testMerge
+     */
+    public void testMerge() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        LatencyHistogram all = new LatencyHistogram();
+        for (int i = 0; i < 10000; i++) {
+            // b sees much larger values so its counts array is longer than a's
+            long value = (i % 2 == 0) ? i : i * 1000L;
+            ((i % 2 == 0) ? a : b).add(value);
+            all.add(value);
+        }
+        a.add(b);
+        assertEquals(all.getCount(), a.getCount());
+        assertEquals(all.getMinimum(), a.getMinimum());
+        assertEquals(all.getMaximum(), a.getMaximum());
+        for (double p : PERCENTILES) {
+            assertEquals(all.getValueAtPercentile(p), a.getValueAtPercentile(p));
+        }
+    }
+
+    /**
+     * testEmpty
+     */
+    public void testEmpty() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertTrue(h.isEmpty());
+        assertEquals(-1, h.getValueAtPercentile(0.5));
+        assertEquals(0, DistributionStatistics.computeStatistics(h).getCount());
+    }
+
+    /**
+     * testCountAtOrBelow
+     */
+    public void testCountAtOrBelow() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            h.add(i * 100L);
+        }
+        assertEquals(0, h.getCountAtOrBelow(99));
+        assertEquals(1000, h.getCountAtOrBelow(100000));
+        long half = h.getCountAtOrBelow(50000);
+        assertEquals(500, half, 500 * LatencyHistogram.RELATIVE_ERROR * 2);
+    }
+}
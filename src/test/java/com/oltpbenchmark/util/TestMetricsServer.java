@@ -0,0 +1,84 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark.util;
+
+import com.oltpbenchmark.types.TransactionStatus;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class TestMetricsServer extends TestCase {
+
+    private MetricsSnapshot snapshot() {
+        LatencyHistogram latencies = new LatencyHistogram();
+        latencies.add(800);
+        latencies.add(3000);
+        latencies.add(20_000_000);
+        long[] outcomes = new long[TransactionStatus.values().length];
+        outcomes[TransactionStatus.SUCCESS.ordinal()] = 3;
+        outcomes[TransactionStatus.RETRY.ordinal()] = 2;
+        return new MetricsSnapshot(1000, "MEASURE", 42.5,
+                List.of(new MetricsSnapshot.Workload("tpcc", 2, true, 500, 17)),
+                List.of(new MetricsSnapshot.Transaction("tpcc", "NewOrder", outcomes, latencies)));
+    }
+
+    /**
+     * testFormat
+     */
+    public void testFormat() {
+        String text = MetricsServer.format(snapshot());
+        assertTrue(text, text.contains("benchbase_state{state=\"MEASURE\"} 1\n"));
+        assertTrue(text, text.contains("benchbase_throughput_requests_per_second 42.5\n"));
+        assertTrue(text, text.contains("benchbase_phase{benchmark=\"tpcc\"} 2\n"));
+        assertTrue(text, text.contains("benchbase_rate_target_requests_per_second{benchmark=\"tpcc\"} 500\n"));
+        assertTrue(text, text.contains("benchbase_queue_depth{benchmark=\"tpcc\"} 17\n"));
+        assertTrue(text, text.contains("benchbase_transactions_total{benchmark=\"tpcc\",transaction=\"NewOrder\",status=\"success\"} 3\n"));
+        assertTrue(text, text.contains("benchbase_transactions_total{benchmark=\"tpcc\",transaction=\"NewOrder\",status=\"retry\"} 2\n"));
+        assertTrue(text, text.contains("benchbase_latency_seconds_bucket{benchmark=\"tpcc\",transaction=\"NewOrder\",le=\"0.0005\"} 0\n"));
+        assertTrue(text, text.contains("benchbase_latency_seconds_bucket{benchmark=\"tpcc\",transaction=\"NewOrder\",le=\"0.001\"} 1\n"));
+        assertTrue(text, text.contains("benchbase_latency_seconds_bucket{benchmark=\"tpcc\",transaction=\"NewOrder\",le=\"0.005\"} 2\n"));
+        assertTrue(text, text.contains("benchbase_latency_seconds_bucket{benchmark=\"tpcc\",transaction=\"NewOrder\",le=\"10\"} 2\n"));
+        assertTrue(text, text.contains("benchbase_latency_seconds_bucket{benchmark=\"tpcc\",transaction=\"NewOrder\",le=\"+Inf\"} 3\n"));
+        assertTrue(text, text.contains("benchbase_latency_seconds_count{benchmark=\"tpcc\",transaction=\"NewOrder\"} 3\n"));
+    }
+
+    /**
+     * testScrape
+     */
+    public void testScrape() throws IOException {
+        MetricsServer server = new MetricsServer(0);
+        server.start();
+        try {
+            server.publish(snapshot());
+            HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + "/metrics").openConnection();
+            assertEquals(200, conn.getResponseCode());
+            assertEquals(MetricsServer.CONTENT_TYPE, conn.getHeaderField("Content-Type"));
+            String body;
+            try (InputStream in = conn.getInputStream()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            assertEquals(MetricsServer.format(server.getSnapshot()), body);
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark.util;
+
+import junit.framework.TestCase;
+
+public class TestRateTimeline extends TestCase {
+
+    /**
+     * testAverage
+     */
+    public void testAverage() {
+        RateTimeline timeline = new RateTimeline();
+        assertTrue(timeline.isEmpty());
+        assertEquals(0.0, timeline.average(0, 100));
+
+        timeline.record(100, 10);
+        timeline.record(150, 10);
+        timeline.record(200, 30);
+        timeline.record(300, 0);
+
+        // nothing was intended before the first point
+        assertEquals(5.0, timeline.average(0, 200), 1e-9);
+        assertEquals(20.0, timeline.average(150, 250), 1e-9);
+        assertEquals(30.0, timeline.average(220, 280), 1e-9);
+        assertEquals(0.0, timeline.average(300, 400), 1e-9);
+
+        RateTimeline copy = new RateTimeline();
+        copy.add(timeline);
+        assertEquals(timeline.average(0, 400), copy.average(0, 400), 1e-9);
+    }
+}
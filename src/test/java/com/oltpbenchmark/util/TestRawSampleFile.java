@@ -0,0 +1,139 @@
+/******************************************************************************
+ *  Copyright 2015 by OLTPBenchmark Project                                   *
+ *                                                                            *
+ *  Licensed under the Apache License, Version 2.0 (the "License");           *
+ *  you may not use this file except in compliance with the License.          *
+ *  You may obtain a copy of the License at                                   *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ *  Unless required by applicable law or agreed to in writing, software       *
+ *  distributed under the License is distributed on an "AS IS" BASIS,         *
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ *  See the License for the specific language governing permissions and       *
+ *  limitations under the License.                                            *
+ ******************************************************************************/
+
+package com.oltpbenchmark.util;
+
+import com.oltpbenchmark.LatencyRecord;
+import com.oltpbenchmark.types.TransactionStatus;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class TestRawSampleFile extends TestCase {
+
+    private static final long START_NS = 123_456_789_000L;
+
+    private Path binary;
+    private Path csv;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        binary = File.createTempFile("samples", ".raw.bin").toPath();
+        csv = RawSampleConverter.defaultOutput(binary);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(binary);
+        Files.deleteIfExists(csv);
+        super.tearDown();
+    }
+
+    private RawSampleHeader header() {
+        return new RawSampleHeader(START_NS, 1_600_000_000_000_000_000L,
+                Map.of(1, "NewOrder", 2, "Payment"),
+                List.of(new RawSampleHeader.PhaseDescription(1, "tpcc", 60, 5, 1000, "REGULAR")));
+    }
+
+    /**
+     * testRoundTrip
+     */
+    public void testRoundTrip() throws IOException {
+        Random rand = new Random(1);
+        LatencyRecord record = new LatencyRecord(START_NS);
+        long start = START_NS;
+        int count = 100_000;
+        for (int i = 0; i < count; i++) {
+            start += rand.nextInt(1_000_000);
+            long latency = (long) (-Math.log(1 - rand.nextDouble()) * 5_000_000);
+            TransactionStatus status = TransactionStatus.values()[i % TransactionStatus.values().length];
+            long backoff = i % 10 == 0 ? rand.nextInt(1_000_000) : 0;
+            record.addLatency(i % 2 + 1, start, start + latency + backoff, rand.nextInt(10_000_000),
+                    rand.nextInt(2_000_000), i % 10 == 0 ? rand.nextInt(500_000) : 0, backoff, status, i % 16, 1);
+        }
+
+        try (RawSampleWriter writer = new RawSampleWriter(binary, header())) {
+            assertEquals(count, writer.writeAll(record.cursor()));
+        }
+        // Far smaller than the equivalent CSV
+        assertTrue(Files.size(binary) < count * 20L);
+
+        try (RawSampleReader reader = new RawSampleReader(binary)) {
+            assertEquals(count, reader.getCount());
+            assertEquals("Payment", reader.getHeader().getTransactionName(2));
+            assertEquals(1000, reader.getHeader().getPhases().get(0).getRate());
+
+            LatencyRecord.Cursor expected = record.cursor();
+            while (expected.next()) {
+                assertTrue(reader.next());
+                assertEquals(expected.getTransactionType(), reader.getTransactionType());
+                assertEquals(expected.getStartNanosecond(), reader.getStartNanosecond());
+                assertEquals(expected.getLatencyMicrosecond(), reader.getLatencyMicrosecond());
+                assertEquals(expected.getQueueDelayMicrosecond(), reader.getQueueDelayMicrosecond());
+                assertEquals(expected.getCommitMicrosecond(), reader.getCommitMicrosecond());
+                assertEquals(expected.getRollbackMicrosecond(), reader.getRollbackMicrosecond());
+                assertEquals(expected.getBackoffMicrosecond(), reader.getBackoffMicrosecond());
+                assertEquals(expected.getStatus(), reader.getStatus());
+                assertEquals(expected.getWorkerId(), reader.getWorkerId());
+                assertEquals(expected.getPhaseId(), reader.getPhaseId());
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    /**
+     * testConvertToCsv
+     */
+    public void testConvertToCsv() throws IOException {
+        LatencyRecord record = new LatencyRecord(START_NS);
+        record.addLatency(2, START_NS + 1000, START_NS + 6000, 2000, TransactionStatus.SUCCESS, 3, 1);
+        try (RawSampleWriter writer = new RawSampleWriter(binary, header())) {
+            writer.writeAll(record.cursor());
+        }
+
+        assertEquals(1, RawSampleConverter.convert(binary, csv));
+        List<String> lines = Files.readAllLines(csv);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("Transaction Type Index,"));
+        String[] row = lines.get(1).split(",");
+        assertEquals("2", row[0]);
+        assertEquals("Payment", row[1]);
+        assertEquals((START_NS + 1000 + 1_600_000_000_000_000_000L) / 1e9, Double.parseDouble(row[2]), 1e-5);
+        assertEquals("5", row[3]);
+        assertEquals("3", row[4]);
+        assertEquals("1", row[5]);
+        assertEquals("2", row[6]);
+    }
+
+    /**
+     * testNotARawFile
+     */
+    public void testNotARawFile() throws IOException {
+        Files.write(binary, new byte[64]);
+        try (RawSampleReader reader = new RawSampleReader(binary)) {
+            fail("Expected an IOException, got " + reader.getCount());
+        } catch (IOException ex) {
+            // Expected
+        }
+    }
+}